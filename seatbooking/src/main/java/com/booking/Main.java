@@ -1,27 +1,41 @@
 package com.booking;
 
+import com.booking.service.ArchivalService;
 import com.booking.service.AuthProvider;
 import com.booking.service.AuthService;
+import com.booking.service.ChangeFeedPoller;
 import com.booking.service.TrainService;
 import com.booking.service.BookingService;
 import com.booking.service.Database;
+import com.booking.service.DatabaseProvider;
+import com.booking.service.GuardedDatabase;
 import com.booking.exception.AuthException;
 import com.booking.exception.DatabaseException;
+import com.booking.repository.Repositories;
+import com.booking.util.AppConfig;
 import com.booking.util.AppUI;
 
 import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
-        Database db;
         try {
-            db = new Database();
-            AuthProvider authService = new AuthService(db);
-            TrainService trainService = new TrainService(db);
-            BookingService bookingService = new BookingService(trainService, db);
+            // "memory" runs a single instance with no database: nothing is archived or shared
+            boolean inMemory = "memory".equalsIgnoreCase(AppConfig.getString("STORAGE_ENGINE", "mysql"));
+            DatabaseProvider db = inMemory ? null : new GuardedDatabase(new Database());
+            Repositories repositories = inMemory ? Repositories.inMemory() : Repositories.jdbc(db);
+            AuthProvider authService = new AuthService(repositories.getUsers());
+            TrainService trainService = new TrainService(repositories.getTrains());
+            BookingService bookingService = new BookingService(trainService, repositories);
 
             Scanner scanner = new Scanner(System.in);
             AppUI ui = new AppUI(authService, trainService, bookingService, scanner);
+            if (!inMemory) {
+                ArchivalService archivalService = new ArchivalService(db, bookingService);
+                archivalService.start();
+                new ChangeFeedPoller(trainService, bookingService).start();
+                ui.setArchivalService(archivalService);
+            }
             ui.run();
         } catch (AuthException | DatabaseException e) {
             System.err.println("Fatal: failed to initialize application: " + e.getMessage());
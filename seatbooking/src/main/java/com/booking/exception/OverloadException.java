@@ -0,0 +1,11 @@
+package com.booking.exception;
+
+public class OverloadException extends RuntimeException {
+    public OverloadException(String message) {
+        super(message);
+    }
+
+    public OverloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
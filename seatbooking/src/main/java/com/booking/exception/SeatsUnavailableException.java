@@ -0,0 +1,20 @@
+package com.booking.exception;
+
+public class SeatsUnavailableException extends ValidationException {
+    private final int requested;
+    private final int available;
+
+    public SeatsUnavailableException(int requested, int available) {
+        super("Not enough seats available. Requested " + requested + ", available " + available);
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
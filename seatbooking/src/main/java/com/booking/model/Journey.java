@@ -0,0 +1,38 @@
+package com.booking.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class Journey {
+
+    private List<JourneyLeg> legs;
+
+    public Journey(List<JourneyLeg> legs) {
+        this.legs = Collections.unmodifiableList(new ArrayList<>(legs));
+    }
+
+    public List<JourneyLeg> getLegs() {
+        return legs;
+    }
+
+    public int getChanges() {
+        return legs.size() - 1;
+    }
+
+    public int getTotalStops() {
+        int stops = 0;
+        for (JourneyLeg leg : legs) stops += leg.getStops();
+        return stops;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < legs.size(); i++) {
+            if (i > 0) sb.append("  |  change at ").append(legs.get(i).getOrigin()).append("  |  ");
+            sb.append(legs.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.booking.model;
+
+public class JourneyLeg {
+
+    private Train train;
+    private int originIndex;
+    private int destinationIndex;
+
+    public JourneyLeg(Train train, int originIndex, int destinationIndex) {
+        this.train = train;
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
+    }
+
+    public Train getTrain() {
+        return train;
+    }
+
+    public int getOriginIndex() {
+        return originIndex;
+    }
+
+    public int getDestinationIndex() {
+        return destinationIndex;
+    }
+
+    public String getOrigin() {
+        return train.getRoute().get(originIndex);
+    }
+
+    public String getDestination() {
+        return train.getRoute().get(destinationIndex);
+    }
+
+    public int getStops() {
+        return destinationIndex - originIndex;
+    }
+
+    @Override
+    public String toString() {
+        return train.getTrainName() + " (" + train.getTrainNumber() + ") " + getOrigin() + " -> " + getDestination();
+    }
+}
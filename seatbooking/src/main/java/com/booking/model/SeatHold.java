@@ -0,0 +1,70 @@
+package com.booking.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SeatHold {
+
+    private long holdId;
+    private Train train;
+    private String travelDate;
+    private int originIndex;
+    private int destinationIndex;
+    private String heldBy;
+    private List<Seat> seats;
+    private Instant expiresAt;
+
+    public SeatHold(long holdId, Train train, String travelDate, int originIndex, int destinationIndex,
+                    String heldBy, List<Seat> seats, Instant expiresAt) {
+        this.holdId = holdId;
+        this.train = train;
+        this.travelDate = travelDate;
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
+        this.heldBy = heldBy;
+        this.seats = Collections.unmodifiableList(new ArrayList<>(seats));
+        this.expiresAt = expiresAt;
+    }
+
+    public long getHoldId() {
+        return holdId;
+    }
+
+    public Train getTrain() {
+        return train;
+    }
+
+    public String getTravelDate() {
+        return travelDate;
+    }
+
+    public int getOriginIndex() {
+        return originIndex;
+    }
+
+    public int getDestinationIndex() {
+        return destinationIndex;
+    }
+
+    public String getHeldBy() {
+        return heldBy;
+    }
+
+    public List<Seat> getSeats() {
+        return seats;
+    }
+
+    public int getSeatCount() {
+        return seats.size();
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired() {
+        return Instant.now().isAfter(expiresAt);
+    }
+}
@@ -7,13 +7,22 @@ public class Ticket {
     private Train train;
     private Seat seat;
     private String travelDate;
+    private int originIndex;
+    private int destinationIndex;
 
     public Ticket(String pnrNumber, User passenger, Train train, Seat seat, String travelDate) {
+        this(pnrNumber, passenger, train, seat, travelDate, 0, train.getLegCount());
+    }
+
+    public Ticket(String pnrNumber, User passenger, Train train, Seat seat, String travelDate,
+                  int originIndex, int destinationIndex) {
         this.pnrNumber = pnrNumber;
         this.passenger = passenger;
         this.train = train;
         this.seat = seat;
         this.travelDate = travelDate;
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
     }
 
     public String getPnrNumber() {
@@ -36,12 +45,29 @@ public class Ticket {
         return travelDate;
     }
 
+    public int getOriginIndex() {
+        return originIndex;
+    }
+
+    public int getDestinationIndex() {
+        return destinationIndex;
+    }
+
+    public String getOrigin() {
+        return train.getRoute().get(originIndex);
+    }
+
+    public String getDestination() {
+        return train.getRoute().get(destinationIndex);
+    }
+
 
     public void displayTicketDetails() {
         System.out.println("---------------------------------");
         System.out.println(" PNR Number: " + pnrNumber);
         System.out.println(" Passenger: " + passenger.getUsername());
         System.out.println(" Train: " + train.getTrainName() + " (" + train.getTrainNumber() + ")");
+        System.out.println(" Journey: " + getOrigin() + " -> " + getDestination());
         System.out.println(" Seat: " + seat.getSeatNumber());
         System.out.println(" Date: " + travelDate);
         System.out.println("---------------------------------");
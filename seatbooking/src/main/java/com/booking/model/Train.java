@@ -39,6 +39,23 @@ public class Train {
     }
 
 
+    public int indexOfSeat(String seatNumber) {
+        if (seatNumber == null) return -1;
+        if (seatNumber.length() > 1 && (seatNumber.charAt(0) == 'S' || seatNumber.charAt(0) == 's')) {
+            try {
+                int idx = Integer.parseInt(seatNumber.substring(1)) - 1;
+                if (idx >= 0 && idx < seats.size() && seats.get(idx).getSeatNumber().equalsIgnoreCase(seatNumber)) {
+                    return idx;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        for (int i = 0; i < seats.size(); i++) {
+            if (seats.get(i).getSeatNumber().equalsIgnoreCase(seatNumber)) return i;
+        }
+        return -1;
+    }
+
     public int getBookedSeatCount() {
         int count = 0;
         for (Seat s : seats) {
@@ -53,21 +70,24 @@ public class Train {
     }
 
 
-    public boolean hasStops(String startStation, String endStation) {
-        if (startStation == null || endStation == null) return false;
-        String start = startStation.trim().toLowerCase();
-        String end = endStation.trim().toLowerCase();
+    public int getLegCount() {
+        return Math.max(0, route.size() - 1);
+    }
 
-        int startIdx = -1;
-        int endIdx = -1;
+    public int indexOfStop(String station) {
+        if (station == null) return -1;
+        String target = station.trim().toLowerCase();
         for (int i = 0; i < route.size(); i++) {
             String stop = route.get(i);
-            if (stop == null) continue;
-            String norm = stop.trim().toLowerCase();
-            if (norm.equals(start) && startIdx == -1) startIdx = i;
-            if (norm.equals(end) && endIdx == -1) endIdx = i;
+            if (stop != null && stop.trim().toLowerCase().equals(target)) return i;
         }
+        return -1;
+    }
 
+    public boolean hasStops(String startStation, String endStation) {
+        if (startStation == null || endStation == null) return false;
+        int startIdx = indexOfStop(startStation);
+        int endIdx = indexOfStop(endStation);
         return startIdx != -1 && endIdx != -1 && startIdx < endIdx;
     }
 }
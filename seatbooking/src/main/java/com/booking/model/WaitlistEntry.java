@@ -0,0 +1,51 @@
+package com.booking.model;
+
+public class WaitlistEntry {
+
+    private long id;
+    private String username;
+    private String bookedBy;
+    private Train train;
+    private String travelDate;
+    private int originIndex;
+    private int destinationIndex;
+
+    public WaitlistEntry(long id, String username, String bookedBy, Train train, String travelDate,
+                         int originIndex, int destinationIndex) {
+        this.id = id;
+        this.username = username;
+        this.bookedBy = bookedBy;
+        this.train = train;
+        this.travelDate = travelDate;
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getBookedBy() {
+        return bookedBy;
+    }
+
+    public Train getTrain() {
+        return train;
+    }
+
+    public String getTravelDate() {
+        return travelDate;
+    }
+
+    public int getOriginIndex() {
+        return originIndex;
+    }
+
+    public int getDestinationIndex() {
+        return destinationIndex;
+    }
+}
@@ -0,0 +1,143 @@
+package com.booking.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Monotonically increasing change versions, taken from one AUTO_INCREMENT log table per feed
+ * ({@code change_log_tickets}, {@code change_log_trains}). Writers call {@link #next} inside the
+ * transaction that stamps the changed rows; it inserts a log row, which locks nothing but that new row,
+ * so concurrent writers never queue behind each other for a version.
+ *
+ * <p>Versions therefore commit out of order, and a reader must not look past {@link #current}: the
+ * settled watermark, kept in {@code change_sequence}, below which every version has either committed or
+ * rolled back. It advances over log rows that are visible, and over a gap in the log once the version
+ * missing there is known not to be held by an open transaction.
+ *
+ * <p>Each application instance also records in {@code change_feed_acks} the version up to which it has
+ * applied the feed, so rows that are about to disappear (archived tickets) can wait until every live
+ * instance has seen their last change.
+ */
+public final class ChangeVersions {
+
+    public static final String TICKETS = "tickets";
+    public static final String TRAINS = "trains";
+
+    // a log row this old was inserted in a statement that has long finished, so every version below it
+    // is either in the log by now, locked by the transaction that inserted it, or rolled back
+    private static final int SETTLE_MS = 1000;
+    private static final int SCAN_LIMIT = 10_000;
+    // MySQL ER_LOCK_NOWAIT
+    private static final int LOCK_NOWAIT = 3572;
+
+    private ChangeVersions() {
+    }
+
+    static String logTable(String feed) {
+        return "change_log_" + feed;
+    }
+
+    public static long next(Connection c, String feed) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + logTable(feed) + " () VALUES ()",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (!rs.next()) throw new SQLException("No version generated for change feed " + feed);
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Settled version of the feed; every row stamped at or below it is already visible, and no open
+     * transaction holds a version at or below it. Advances and stores the watermark as far as the log
+     * allows, and drops the log rows below it. Call outside a transaction.
+     */
+    public static long current(Connection c, String feed) throws SQLException {
+        long settled;
+        try (PreparedStatement ps = c.prepareStatement("SELECT version FROM change_sequence WHERE feed = ?")) {
+            ps.setString(1, feed);
+            try (ResultSet rs = ps.executeQuery()) {
+                settled = rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+        long advanced = settled;
+        String scan = "SELECT version, created_at <= NOW(3) - INTERVAL " + SETTLE_MS * 1000 + " MICROSECOND AS old "
+                + "FROM " + logTable(feed) + " WHERE version > ? ORDER BY version LIMIT " + SCAN_LIMIT;
+        try (PreparedStatement ps = c.prepareStatement(scan)) {
+            ps.setLong(1, settled);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long version = rs.getLong("version");
+                    if (version != advanced + 1 && (!rs.getBoolean("old") || inFlight(c, feed, advanced + 1, version - 1))) break;
+                    advanced = version;
+                }
+            }
+        }
+        if (advanced == settled) return settled;
+        try (PreparedStatement ps = c.prepareStatement("UPDATE change_sequence SET version = GREATEST(version, ?) WHERE feed = ?")) {
+            ps.setLong(1, advanced);
+            ps.setString(2, feed);
+            ps.executeUpdate();
+        }
+        // the row at the watermark stays, so the AUTO_INCREMENT counter can never fall back below it
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + logTable(feed) + " WHERE version < ?")) {
+            ps.setLong(1, advanced);
+            ps.executeUpdate();
+        }
+        return advanced;
+    }
+
+    /** Records that {@code instance} has applied every change of the feed up to {@code version}. */
+    public static void acknowledge(Connection c, String feed, String instance, long version) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO change_feed_acks (feed, instance, version) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE version = GREATEST(version, VALUES(version)), acked_at = CURRENT_TIMESTAMP")) {
+            ps.setString(1, feed);
+            ps.setString(2, instance);
+            ps.setLong(3, version);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Lowest version acknowledged by an instance that acknowledged within the last {@code liveSeconds};
+     * {@link Long#MAX_VALUE} if no instance is following the feed. Acknowledgements older than a day are
+     * dropped on the way, since their instances are gone.
+     */
+    public static long acknowledged(Connection c, String feed, int liveSeconds) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM change_feed_acks WHERE feed = ? AND acked_at < NOW() - INTERVAL 1 DAY")) {
+            ps.setString(1, feed);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT MIN(version) FROM change_feed_acks WHERE feed = ? AND acked_at >= NOW() - INTERVAL ? SECOND")) {
+            ps.setString(1, feed);
+            ps.setInt(2, liveSeconds);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long version = rs.getLong(1);
+                return rs.wasNull() ? Long.MAX_VALUE : version;
+            }
+        }
+    }
+
+    /**
+     * Whether an open transaction still holds a version in [from, to], i.e. its log row is locked.
+     * Versions missing without a lock were rolled back.
+     */
+    private static boolean inFlight(Connection c, String feed, long from, long to) throws SQLException {
+        String probe = "SELECT version FROM " + logTable(feed) + " WHERE version BETWEEN ? AND ? FOR SHARE NOWAIT";
+        try (PreparedStatement ps = c.prepareStatement(probe)) {
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            ps.executeQuery().close();
+            return false;
+        } catch (SQLException e) {
+            if (e.getErrorCode() == LOCK_NOWAIT) return true;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.booking.repository;
+
+/** One line of a user's booking history, e.g. a booking, cancellation or waitlist promotion. */
+public final class HistoryEntry {
+
+    private final String username;
+    private final String pnr;
+    private final String action;
+    private final String details;
+
+    public HistoryEntry(String username, String pnr, String action, String details) {
+        this.username = username;
+        this.pnr = pnr;
+        this.action = action;
+        this.details = details;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPnr() {
+        return pnr;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+}
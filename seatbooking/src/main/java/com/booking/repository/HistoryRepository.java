@@ -0,0 +1,10 @@
+package com.booking.repository;
+
+import java.util.List;
+
+/** The per-user audit trail of bookings, cancellations and promotions. */
+public interface HistoryRepository {
+
+    /** Appends the entries in one atomic step. Entries for unknown usernames are kept without a user. */
+    void record(List<HistoryEntry> entries);
+}
@@ -0,0 +1,43 @@
+package com.booking.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Idempotency keys of booking and cancel requests, with the PNRs each committed request touched. */
+public interface IdempotencyRepository {
+
+    /** The recorded outcome of a key. */
+    final class Outcome {
+        private final String operation;
+        private final List<String> pnrs;
+
+        public Outcome(String operation, List<String> pnrs) {
+            this.operation = operation;
+            this.pnrs = pnrs;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public List<String> getPnrs() {
+            return pnrs;
+        }
+    }
+
+    /**
+     * Claims the key inside the caller's transaction. If another transaction holds an uncommitted claim
+     * on it, waits for that transaction to end.
+     * @return false if the key was already claimed by a committed request
+     */
+    boolean claim(String key, String operation);
+
+    /** Records the PNRs of a claimed key, inside the transaction that claimed it. */
+    void complete(String key, List<String> pnrs);
+
+    /** @return the outcome of a committed key, or null if the key is unknown */
+    Outcome find(String key);
+
+    /** Forgets keys claimed before {@code cutoff}. @return number of keys removed */
+    int purgeBefore(Instant cutoff);
+}
@@ -0,0 +1,33 @@
+package com.booking.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** History entries grouped by username, newest last. */
+final class InMemoryHistoryRepository implements HistoryRepository {
+
+    private final InMemoryTransactions tx;
+    // lists guarded by tx's lock
+    private final Map<String, List<HistoryEntry>> byUser = new ConcurrentHashMap<>();
+
+    InMemoryHistoryRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public void record(List<HistoryEntry> entries) {
+        if (entries.isEmpty()) return;
+        tx.locked(() -> {
+            for (HistoryEntry e : entries) {
+                String key = e.getUsername() == null ? "" : e.getUsername().toLowerCase(Locale.ROOT);
+                List<HistoryEntry> list = byUser.computeIfAbsent(key, k -> new ArrayList<>());
+                list.add(e);
+                tx.undo(() -> list.remove(list.size() - 1));
+            }
+            return null;
+        });
+    }
+}
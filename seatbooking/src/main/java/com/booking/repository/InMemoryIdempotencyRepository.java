@@ -0,0 +1,64 @@
+package com.booking.repository;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class InMemoryIdempotencyRepository implements IdempotencyRepository {
+
+    private static final class Key {
+        final String operation;
+        final Instant claimedAt = Instant.now();
+        volatile List<String> pnrs = Collections.emptyList();
+
+        Key(String operation) {
+            this.operation = operation;
+        }
+    }
+
+    private final InMemoryTransactions tx;
+    private final Map<String, Key> keys = new ConcurrentHashMap<>();
+
+    InMemoryIdempotencyRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public boolean claim(String key, String operation) {
+        return tx.locked(() -> {
+            if (keys.putIfAbsent(key, new Key(operation)) != null) return false;
+            tx.undo(() -> keys.remove(key));
+            return true;
+        });
+    }
+
+    @Override
+    public void complete(String key, List<String> pnrs) {
+        tx.locked(() -> {
+            Key k = keys.get(key);
+            if (k != null) {
+                List<String> before = k.pnrs;
+                k.pnrs = List.copyOf(pnrs);
+                tx.undo(() -> k.pnrs = before);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Outcome find(String key) {
+        Key k = keys.get(key);
+        return k == null ? null : new Outcome(k.operation, k.pnrs);
+    }
+
+    @Override
+    public int purgeBefore(Instant cutoff) {
+        return tx.locked(() -> {
+            int before = keys.size();
+            keys.values().removeIf(k -> k.claimedAt.isBefore(cutoff));
+            return before - keys.size();
+        });
+    }
+}
@@ -0,0 +1,271 @@
+package com.booking.repository;
+
+import com.booking.exception.DatabaseException;
+import com.booking.model.Page;
+import com.booking.model.Train;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Tickets held in concurrent maps: by PNR, ACTIVE tickets by run (train, date), by booker, and two
+ * ordered indexes for the change feed and (creation time, PNR) listings. Records are immutable; a
+ * status change swaps the record and its index entries under the engine lock. There is no archive,
+ * so finished tickets simply stay.
+ */
+final class InMemoryTicketRepository implements TicketRepository {
+
+    private final InMemoryTransactions tx;
+    private final Map<String, TicketRecord> byPnr = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, TicketRecord>> activeByRun = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, TicketRecord>> byBooker = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<OrderKey, TicketRecord> byVersion = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<OrderKey, TicketRecord> byCreation = new ConcurrentSkipListMap<>();
+    // guarded by tx's lock
+    private long version;
+    private long lastCreated;
+
+    InMemoryTicketRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    private static String pnrKey(String pnr) {
+        return pnr.toUpperCase(Locale.ROOT);
+    }
+
+    private static String runKey(String trainNumber, String travelDate) {
+        return trainNumber.toUpperCase(Locale.ROOT) + "|" + travelDate;
+    }
+
+    private static String bookerKey(String bookedBy) {
+        return bookedBy == null ? "" : bookedBy.toLowerCase(Locale.ROOT);
+    }
+
+    private static OrderKey versionKey(TicketRecord t) {
+        return new OrderKey(t.getChangeVersion(), t.getPnr());
+    }
+
+    private static OrderKey creationKey(TicketRecord t) {
+        return new OrderKey(OrderKey.nanos(t.getCreatedAt()), t.getPnr());
+    }
+
+    /** Replaces {@code old} (null for a new ticket) with {@code now} in every index; call under the lock. */
+    private void swap(TicketRecord old, TicketRecord now) {
+        String pnr = pnrKey(now.getPnr());
+        byPnr.put(pnr, now);
+        if (old != null) {
+            byVersion.remove(versionKey(old));
+            activeByRun.getOrDefault(runKey(old.getTrainNumber(), old.getTravelDate()), Collections.emptyMap()).remove(pnr);
+        }
+        byVersion.put(versionKey(now), now);
+        byCreation.put(creationKey(now), now);
+        byBooker.computeIfAbsent(bookerKey(now.getBookedBy()), k -> new ConcurrentHashMap<>()).put(pnr, now);
+        if (TicketRecord.ACTIVE.equals(now.getStatus())) {
+            activeByRun.computeIfAbsent(runKey(now.getTrainNumber(), now.getTravelDate()), k -> new ConcurrentHashMap<>()).put(pnr, now);
+        }
+    }
+
+    private void drop(TicketRecord t) {
+        String pnr = pnrKey(t.getPnr());
+        byPnr.remove(pnr);
+        byVersion.remove(versionKey(t));
+        byCreation.remove(creationKey(t));
+        byBooker.getOrDefault(bookerKey(t.getBookedBy()), Collections.emptyMap()).remove(pnr);
+        activeByRun.getOrDefault(runKey(t.getTrainNumber(), t.getTravelDate()), Collections.emptyMap()).remove(pnr);
+    }
+
+    private List<TicketRecord> booked(String bookedBy, Predicate<TicketRecord> filter) {
+        List<TicketRecord> found = new ArrayList<>();
+        for (TicketRecord t : byBooker.getOrDefault(bookerKey(bookedBy), Collections.emptyMap()).values()) {
+            if (filter.test(t)) found.add(t);
+        }
+        return found;
+    }
+
+    @Override
+    public List<TicketRecord> findActive() {
+        List<TicketRecord> active = new ArrayList<>();
+        for (Map<String, TicketRecord> run : activeByRun.values()) active.addAll(run.values());
+        return active;
+    }
+
+    @Override
+    public List<TicketRecord> findByPnrs(List<String> pnrs) {
+        List<TicketRecord> found = new ArrayList<>();
+        for (String pnr : pnrs) {
+            TicketRecord t = byPnr.get(pnrKey(pnr));
+            if (t != null) found.add(t);
+        }
+        return found;
+    }
+
+    @Override
+    public List<TicketRecord> findUpcoming(String bookedBy, LocalDate today) {
+        String day = today.toString();
+        return booked(bookedBy, t -> TicketRecord.ACTIVE.equals(t.getStatus()) && t.getTravelDate().compareTo(day) >= 0);
+    }
+
+    @Override
+    public List<TicketRecord> findPast(String bookedBy, LocalDate today) {
+        String day = today.toString();
+        return booked(bookedBy, t -> TicketRecord.COMPLETED.equals(t.getStatus())
+                || TicketRecord.ACTIVE.equals(t.getStatus()) && t.getTravelDate().compareTo(day) < 0);
+    }
+
+    @Override
+    public List<TicketRecord> findCancelled(String bookedBy) {
+        return booked(bookedBy, t -> TicketRecord.CANCELLED.equals(t.getStatus()));
+    }
+
+    @Override
+    public Page<TicketRecord> findPage(String status, String cursor, int limit) {
+        TicketCursor after = TicketCursor.decode(cursor);
+        Map<OrderKey, TicketRecord> tail = after == null ? byCreation
+                : byCreation.tailMap(new OrderKey(OrderKey.nanos(after.createdAt), after.pnr), false);
+        List<TicketRecord> items = new ArrayList<>(limit);
+        String next = null;
+        for (TicketRecord t : tail.values()) {
+            if (!status.equals(t.getStatus())) continue;
+            if (items.size() == limit) {
+                TicketRecord last = items.get(limit - 1);
+                next = TicketCursor.encode(last.getCreatedAt(), last.getPnr());
+                break;
+            }
+            items.add(t);
+        }
+        return new Page<>(items, next);
+    }
+
+    @Override
+    public Stream<TicketRecord> streamByBooker(String bookedBy, String status) {
+        List<TicketRecord> found = booked(bookedBy, t -> status.equals(t.getStatus()));
+        found.sort((a, b) -> creationKey(a).compareTo(creationKey(b)));
+        return found.stream();
+    }
+
+    @Override
+    public long forEach(String fromDate, String toDate, String trainNumber, Consumer<TicketRecord> action) {
+        String from = fromDate == null || fromDate.isBlank() ? null : fromDate.trim();
+        String to = toDate == null || toDate.isBlank() ? null : toDate.trim();
+        String train = trainNumber == null || trainNumber.isBlank() ? null : trainNumber.trim();
+        long rows = 0;
+        for (TicketRecord t : byCreation.values()) {
+            if (from != null && t.getTravelDate().compareTo(from) < 0) continue;
+            if (to != null && t.getTravelDate().compareTo(to) > 0) continue;
+            if (train != null && !train.equalsIgnoreCase(t.getTrainNumber())) continue;
+            action.accept(t);
+            rows++;
+        }
+        return rows;
+    }
+
+    @Override
+    public Map<Train, Map<LocalDate, Integer>> countTakenSeats(Map<Train, int[]> segments, LocalDate fromDate, LocalDate toDate) {
+        Map<Train, Map<LocalDate, Integer>> taken = new LinkedHashMap<>();
+        for (Map.Entry<Train, int[]> e : segments.entrySet()) {
+            Train train = e.getKey();
+            int fromStop = e.getValue()[0];
+            int toStop = e.getValue()[1];
+            for (LocalDate d = fromDate; !d.isAfter(toDate); d = d.plusDays(1)) {
+                Map<String, TicketRecord> run = activeByRun.get(runKey(train.getTrainNumber(), d.toString()));
+                if (run == null || run.isEmpty()) continue;
+                Set<String> seats = new HashSet<>();
+                for (TicketRecord t : run.values()) {
+                    int from = t.getFromIdx() < 0 ? 0 : t.getFromIdx();
+                    int to = t.getToIdx() < 0 ? train.getLegCount() : t.getToIdx();
+                    if (from < toStop && to > fromStop) seats.add(t.getSeatNumber().toUpperCase(Locale.ROOT));
+                }
+                if (!seats.isEmpty()) taken.computeIfAbsent(train, k -> new LinkedHashMap<>()).put(d, seats.size());
+            }
+        }
+        return taken;
+    }
+
+    @Override
+    public long currentVersion() {
+        return tx.locked(() -> version);
+    }
+
+    @Override
+    public List<TicketRecord> findChangedSince(long version, String afterPnr, int limit) {
+        List<TicketRecord> changed = new ArrayList<>();
+        for (TicketRecord t : byVersion.tailMap(new OrderKey(version, afterPnr), false).values()) {
+            if (changed.size() == limit) break;
+            changed.add(t);
+        }
+        return changed;
+    }
+
+    @Override
+    public void acknowledge(String instance, long version) {
+        // a single instance owns the data; nothing is archived behind its back
+    }
+
+    @Override
+    public List<TicketRecord> lockActive(String trainNumber, String travelDate) {
+        return tx.locked(() -> new ArrayList<>(activeByRun.getOrDefault(runKey(trainNumber, travelDate), Collections.emptyMap()).values()));
+    }
+
+    @Override
+    public List<TicketRecord> lockActive(Collection<String> pnrs) {
+        return tx.locked(() -> {
+            List<TicketRecord> locked = new ArrayList<>();
+            for (String pnr : pnrs) {
+                TicketRecord t = byPnr.get(pnrKey(pnr));
+                if (t != null && TicketRecord.ACTIVE.equals(t.getStatus())) locked.add(t);
+            }
+            return locked;
+        });
+    }
+
+    @Override
+    public long nextVersion() {
+        return tx.locked(() -> ++version);
+    }
+
+    @Override
+    public void insert(List<TicketRecord> tickets, long version) {
+        tx.locked(() -> {
+            for (TicketRecord t : tickets) {
+                if (byPnr.containsKey(pnrKey(t.getPnr()))) throw new DatabaseException("Duplicate PNR " + t.getPnr());
+            }
+            for (TicketRecord t : tickets) {
+                // strictly increasing, so (creation time, PNR) keys never collide or reorder
+                long now = Math.max(OrderKey.nanos(Instant.now()), lastCreated + 1);
+                lastCreated = now;
+                TicketRecord stored = t.stored(Instant.ofEpochSecond(0, now), version);
+                swap(null, stored);
+                tx.undo(() -> drop(stored));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void markCancelled(Collection<String> pnrs, long version) {
+        tx.locked(() -> {
+            for (String pnr : pnrs) {
+                TicketRecord old = byPnr.get(pnrKey(pnr));
+                if (old == null || !TicketRecord.ACTIVE.equals(old.getStatus())) continue;
+                TicketRecord cancelled = old.withStatus(TicketRecord.CANCELLED, version);
+                swap(old, cancelled);
+                tx.undo(() -> swap(cancelled, old));
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+final class InMemoryTrainRepository implements TrainRepository {
+
+    private final InMemoryTransactions tx;
+    private final Map<String, Train> byNumber = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<OrderKey, Train> changes = new ConcurrentSkipListMap<>();
+    // guarded by tx's lock
+    private long version;
+
+    InMemoryTrainRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public List<Train> findAll() {
+        return new ArrayList<>(changes.values());
+    }
+
+    @Override
+    public boolean add(Train train) {
+        return !addAll(List.of(train)).isEmpty();
+    }
+
+    @Override
+    public List<Train> addAll(List<Train> trains) {
+        return tx.locked(() -> {
+            List<Train> added = new ArrayList<>();
+            if (trains.isEmpty()) return added;
+            long stamped = ++version;
+            for (Train train : trains) {
+                String number = train.getTrainNumber().toUpperCase();
+                if (byNumber.putIfAbsent(number, train) != null) continue;
+                OrderKey key = new OrderKey(stamped, train.getTrainNumber());
+                changes.put(key, train);
+                added.add(train);
+                tx.undo(() -> {
+                    changes.remove(key);
+                    byNumber.remove(number);
+                });
+            }
+            return added;
+        });
+    }
+
+    @Override
+    public long currentVersion() {
+        return tx.locked(() -> version);
+    }
+
+    @Override
+    public List<Versioned<Train>> findChangedSince(long version, String afterTrainNumber, int limit) {
+        List<Versioned<Train>> changed = new ArrayList<>();
+        for (Map.Entry<OrderKey, Train> e : changes.tailMap(new OrderKey(version, afterTrainNumber), false).entrySet()) {
+            if (changed.size() == limit) break;
+            changed.add(new Versioned<>(e.getValue(), e.getKey().major));
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,69 @@
+package com.booking.repository;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transactions of the in-memory engine. Writers are serialised on one engine-wide lock, which a
+ * transaction holds from start to end, so "locking" reads need no row locks of their own. Each change
+ * made inside a transaction records how to undo itself; a failed transaction replays those undo
+ * actions newest first. Plain reads do not take the lock and may observe a transaction's changes
+ * before it finishes.
+ */
+final class InMemoryTransactions implements Transactions {
+
+    private static final Logger LOGGER = Logger.getLogger(InMemoryTransactions.class.getName());
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ThreadLocal<Deque<Runnable>> undoLog = new ThreadLocal<>();
+
+    @Override
+    public <T> T inTransaction(Supplier<T> work) {
+        if (undoLog.get() != null) return work.get();
+        Deque<Runnable> log = new ArrayDeque<>();
+        lock.lock();
+        undoLog.set(log);
+        try {
+            return work.get();
+        } catch (RuntimeException | Error e) {
+            while (!log.isEmpty()) {
+                try {
+                    log.pop().run();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Rollback action failed", ex);
+                }
+            }
+            throw e;
+        } finally {
+            undoLog.remove();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onRollback(Runnable action) {
+        Deque<Runnable> log = undoLog.get();
+        if (log == null) throw new IllegalStateException("No transaction is active");
+        log.push(action);
+    }
+
+    /** Runs a change under the engine lock; changes register their undo actions with {@link #undo}. */
+    <T> T locked(Supplier<T> work) {
+        lock.lock();
+        try {
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Keeps the undo action of a change just made, if a transaction is open. Call under the lock. */
+    void undo(Runnable action) {
+        Deque<Runnable> log = undoLog.get();
+        if (log != null) log.push(action);
+    }
+}
@@ -0,0 +1,37 @@
+package com.booking.repository;
+
+import com.booking.model.Role;
+import com.booking.model.User;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class InMemoryUserRepository implements UserRepository {
+
+    private final InMemoryTransactions tx;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    InMemoryUserRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        return username == null ? null : users.get(key(username));
+    }
+
+    @Override
+    public boolean add(String username, String password, Role role) {
+        String key = key(username);
+        return tx.locked(() -> {
+            if (users.putIfAbsent(key, new User(username, password, role)) != null) return false;
+            tx.undo(() -> users.remove(key));
+            return true;
+        });
+    }
+}
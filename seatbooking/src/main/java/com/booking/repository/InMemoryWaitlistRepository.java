@@ -0,0 +1,124 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+import com.booking.model.WaitlistEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/** Only WAITING entries are kept; promoted, cancelled and expired ones are dropped. */
+final class InMemoryWaitlistRepository implements WaitlistRepository {
+
+    private final InMemoryTransactions tx;
+    private final Map<String, ConcurrentSkipListMap<Long, WaitlistEntry>> waitingByRun = new ConcurrentHashMap<>();
+    // guarded by tx's lock
+    private long lastId;
+
+    InMemoryWaitlistRepository(InMemoryTransactions tx) {
+        this.tx = tx;
+    }
+
+    private static String runKey(String trainNumber, String date) {
+        return trainNumber.toUpperCase() + "|" + date;
+    }
+
+    private static String runKey(WaitlistEntry e) {
+        return runKey(e.getTrain().getTrainNumber(), e.getTravelDate());
+    }
+
+    private ConcurrentSkipListMap<Long, WaitlistEntry> run(String key) {
+        return waitingByRun.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>());
+    }
+
+    /** Takes an entry off its run's queue; call under the lock. */
+    private boolean remove(WaitlistEntry e) {
+        ConcurrentSkipListMap<Long, WaitlistEntry> run = waitingByRun.get(runKey(e));
+        if (run == null || run.remove(e.getId()) == null) return false;
+        tx.undo(() -> run(runKey(e)).put(e.getId(), e));
+        return true;
+    }
+
+    @Override
+    public List<WaitlistEntry> findWaiting(Function<String, Train> trains) {
+        List<WaitlistEntry> waiting = new ArrayList<>();
+        for (ConcurrentSkipListMap<Long, WaitlistEntry> run : waitingByRun.values()) waiting.addAll(run.values());
+        waiting.sort(Comparator.comparingLong(WaitlistEntry::getId));
+        return waiting;
+    }
+
+    @Override
+    public List<WaitlistEntry> add(List<String> usernames, Train train, int fromStop, int toStop, String date, String bookedBy) {
+        return tx.locked(() -> {
+            List<WaitlistEntry> added = new ArrayList<>();
+            ConcurrentSkipListMap<Long, WaitlistEntry> run = run(runKey(train.getTrainNumber(), date));
+            for (String username : usernames) {
+                WaitlistEntry e = new WaitlistEntry(++lastId, username, bookedBy, train, date, fromStop, toStop);
+                run.put(e.getId(), e);
+                tx.undo(() -> run.remove(e.getId()));
+                added.add(e);
+            }
+            return added;
+        });
+    }
+
+    @Override
+    public List<WaitlistEntry> lockWaiting(Train train, String date) {
+        return tx.locked(() -> {
+            ConcurrentSkipListMap<Long, WaitlistEntry> run = waitingByRun.get(runKey(train.getTrainNumber(), date));
+            return run == null ? new ArrayList<>() : new ArrayList<>(run.values());
+        });
+    }
+
+    @Override
+    public void markPromoted(List<WaitlistEntry> promoted, List<String> pnrs) {
+        tx.locked(() -> {
+            for (WaitlistEntry e : promoted) remove(e);
+            return null;
+        });
+    }
+
+    @Override
+    public int closeAll(Train train, String date) {
+        return tx.locked(() -> {
+            ConcurrentSkipListMap<Long, WaitlistEntry> run = waitingByRun.get(runKey(train.getTrainNumber(), date));
+            if (run == null) return 0;
+            int closed = 0;
+            for (WaitlistEntry e : new ArrayList<>(run.values())) {
+                if (remove(e)) closed++;
+            }
+            return closed;
+        });
+    }
+
+    @Override
+    public int expireBefore(String today) {
+        return tx.locked(() -> {
+            int expired = 0;
+            for (Iterator<Map.Entry<String, ConcurrentSkipListMap<Long, WaitlistEntry>>> it = waitingByRun.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, ConcurrentSkipListMap<Long, WaitlistEntry>> run = it.next();
+                if (run.getKey().substring(run.getKey().indexOf('|') + 1).compareTo(today) < 0) {
+                    expired += run.getValue().size();
+                    it.remove();
+                }
+            }
+            return expired;
+        });
+    }
+
+    @Override
+    public boolean cancel(long id) {
+        return tx.locked(() -> {
+            for (ConcurrentSkipListMap<Long, WaitlistEntry> run : waitingByRun.values()) {
+                WaitlistEntry e = run.get(id);
+                if (e != null) return remove(e);
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package com.booking.repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+final class JdbcHistoryRepository implements HistoryRepository {
+
+    private final JdbcTransactions tx;
+
+    JdbcHistoryRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public void record(List<HistoryEntry> entries) {
+        if (entries.isEmpty()) return;
+        String sql = "INSERT INTO user_history(user_id, pnr, action, details) VALUES((SELECT id FROM users WHERE username = ?),?,?,?)";
+        tx.atomically("Failed to record user history", c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (HistoryEntry e : entries) {
+                    ps.setString(1, e.getUsername());
+                    ps.setString(2, e.getPnr());
+                    ps.setString(3, e.getAction());
+                    ps.setString(4, e.getDetails());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.booking.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Keys are claimed through the primary key of {@code idempotency_keys}. */
+final class JdbcIdempotencyRepository implements IdempotencyRepository {
+
+    private final JdbcTransactions tx;
+
+    JdbcIdempotencyRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public boolean claim(String key, String operation) {
+        return tx.withConnection("Failed to claim idempotency key " + key, c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO idempotency_keys(idem_key, operation) VALUES(?,?)")) {
+                ps.setString(1, key);
+                ps.setString(2, operation);
+                ps.executeUpdate();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public void complete(String key, List<String> pnrs) {
+        tx.withConnection("Failed to record idempotency key " + key, c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE idempotency_keys SET pnrs = ? WHERE idem_key = ?")) {
+                ps.setString(1, String.join(",", pnrs));
+                ps.setString(2, key);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public Outcome find(String key) {
+        return tx.withConnection("Failed to read idempotency key " + key, c -> {
+            try (PreparedStatement ps = c.prepareStatement("SELECT operation, pnrs FROM idempotency_keys WHERE idem_key = ?")) {
+                ps.setString(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    String csv = rs.getString("pnrs");
+                    List<String> pnrs = csv == null || csv.isEmpty() ? Collections.emptyList() : Arrays.asList(csv.split(","));
+                    return new Outcome(rs.getString("operation"), pnrs);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int purgeBefore(Instant cutoff) {
+        return tx.withConnection("Failed to purge idempotency keys", c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM idempotency_keys WHERE created_at < ?")) {
+                ps.setTimestamp(1, Timestamp.from(cutoff));
+                return ps.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,346 @@
+package com.booking.repository;
+
+import com.booking.exception.DatabaseException;
+import com.booking.model.Page;
+import com.booking.model.Train;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** Tickets in the {@code tickets} table, with finished ones also read from {@code tickets_archive}. */
+final class JdbcTicketRepository implements TicketRepository {
+
+    private static final int IN_CLAUSE_CHUNK = 500;
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String COLUMNS = "pnr, username, booked_by, train_number, seat_number, travel_date, status, from_idx, to_idx, created_at";
+    private static final String LIVE = "SELECT " + COLUMNS + ", change_version FROM tickets";
+    private static final String ARCHIVED = "SELECT " + COLUMNS + ", 0 AS change_version FROM tickets_archive";
+
+    private final JdbcTransactions tx;
+
+    JdbcTicketRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static java.sql.Date travelDay(String date) {
+        try {
+            return java.sql.Date.valueOf(LocalDate.parse(date));
+        } catch (DateTimeParseException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    // MySQL Connector/J only streams rows one at a time when the fetch size is Integer.MIN_VALUE.
+    private static int streamingFetchSize(Connection c) throws SQLException {
+        String driver = c.getMetaData().getDriverName();
+        return driver != null && driver.toLowerCase().contains("mysql") ? Integer.MIN_VALUE : FETCH_SIZE;
+    }
+
+    private static TicketRecord read(ResultSet rs) throws SQLException {
+        Timestamp created = rs.getTimestamp("created_at");
+        return new TicketRecord(rs.getString("pnr"), rs.getString("username"), rs.getString("booked_by"),
+                rs.getString("train_number"), rs.getString("seat_number"), rs.getString("travel_date"),
+                JdbcWaitlistRepository.stopIndex(rs, "from_idx", -1), JdbcWaitlistRepository.stopIndex(rs, "to_idx", -1),
+                rs.getString("status"), created == null ? null : created.toInstant(), rs.getLong("change_version"));
+    }
+
+    private static List<TicketRecord> query(Connection c, String sql, Object... params) throws SQLException {
+        List<TicketRecord> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows.add(read(rs));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<TicketRecord> findActive() {
+        return tx.withConnection("Failed to load active tickets", c -> query(c, LIVE + " WHERE status = 'ACTIVE'"));
+    }
+
+    @Override
+    public List<TicketRecord> findByPnrs(List<String> pnrs) {
+        if (pnrs.isEmpty()) return new ArrayList<>();
+        return tx.withConnection("Failed to load tickets by PNR", c -> {
+            List<TicketRecord> found = new ArrayList<>();
+            for (int from = 0; from < pnrs.size(); from += IN_CLAUSE_CHUNK) {
+                List<String> chunk = pnrs.subList(from, Math.min(pnrs.size(), from + IN_CLAUSE_CHUNK));
+                String where = " WHERE pnr IN (" + placeholders(chunk.size()) + ")";
+                Object[] params = new Object[chunk.size() * 2];
+                for (int i = 0; i < chunk.size(); i++) {
+                    params[i] = chunk.get(i);
+                    params[chunk.size() + i] = chunk.get(i);
+                }
+                found.addAll(query(c, LIVE + where + " UNION ALL " + ARCHIVED + where, params));
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public List<TicketRecord> findUpcoming(String bookedBy, LocalDate today) {
+        return tx.withConnection("Failed to load upcoming tickets", c -> query(c,
+                LIVE + " WHERE booked_by = ? AND status = 'ACTIVE' AND travel_day >= ?", bookedBy, java.sql.Date.valueOf(today)));
+    }
+
+    @Override
+    public List<TicketRecord> findPast(String bookedBy, LocalDate today) {
+        // completed journeys, plus active ones whose date passed before the archival job ran
+        String sql = LIVE + " WHERE booked_by = ? AND status = 'ACTIVE' AND travel_day < ?"
+                + " UNION ALL " + LIVE + " WHERE booked_by = ? AND status = 'COMPLETED'"
+                + " UNION ALL " + ARCHIVED + " WHERE booked_by = ? AND status = 'COMPLETED'";
+        return tx.withConnection("Failed to load past tickets", c -> query(c, sql,
+                bookedBy, java.sql.Date.valueOf(today), bookedBy, bookedBy));
+    }
+
+    @Override
+    public List<TicketRecord> findCancelled(String bookedBy) {
+        String sql = LIVE + " WHERE booked_by = ? AND status = 'CANCELLED'"
+                + " UNION ALL " + ARCHIVED + " WHERE booked_by = ? AND status = 'CANCELLED'";
+        return tx.withConnection("Failed to load cancelled tickets", c -> query(c, sql, bookedBy, bookedBy));
+    }
+
+    @Override
+    public Page<TicketRecord> findPage(String status, String cursor, int limit) {
+        TicketCursor after = TicketCursor.decode(cursor);
+        String sql = LIVE + " WHERE status = ?"
+                + (after != null ? " AND (created_at > ? OR (created_at = ? AND pnr > ?))" : "")
+                + " ORDER BY created_at, pnr LIMIT ?";
+        return tx.withConnection("Failed to load tickets page", c -> {
+            List<TicketRecord> rows = after == null
+                    ? query(c, sql, status, limit + 1)
+                    : query(c, sql, status, Timestamp.from(after.createdAt), Timestamp.from(after.createdAt), after.pnr, limit + 1);
+            String next = null;
+            if (rows.size() > limit) {
+                rows = rows.subList(0, limit);
+                TicketRecord last = rows.get(limit - 1);
+                next = TicketCursor.encode(last.getCreatedAt(), last.getPnr());
+            }
+            return new Page<>(rows, next);
+        });
+    }
+
+    @Override
+    public Stream<TicketRecord> streamByBooker(String bookedBy, String status) {
+        String sql = LIVE + " WHERE booked_by = ? AND status = ? ORDER BY created_at, pnr";
+        Connection c = tx.db().getConnection();
+        try {
+            PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(streamingFetchSize(c));
+            ps.setString(1, bookedBy);
+            ps.setString(2, status);
+            ResultSet rs = ps.executeQuery();
+            Spliterator<TicketRecord> rows = new Spliterators.AbstractSpliterator<TicketRecord>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super TicketRecord> action) {
+                    try {
+                        if (!rs.next()) return false;
+                        action.accept(read(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new DatabaseException("Failed to read ticket row", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try { rs.close(); } catch (SQLException ignored) { }
+                try { ps.close(); } catch (SQLException ignored) { }
+                try { c.close(); } catch (SQLException ignored) { }
+            });
+        } catch (SQLException e) {
+            try { c.close(); } catch (SQLException ignored) { }
+            throw new DatabaseException("Failed to query tickets for " + bookedBy, e);
+        }
+    }
+
+    @Override
+    public long forEach(String fromDate, String toDate, String trainNumber, Consumer<TicketRecord> action) {
+        StringBuilder filter = new StringBuilder();
+        List<String> filterParams = new ArrayList<>();
+        if (fromDate != null && !fromDate.isBlank()) {
+            filter.append(" AND travel_date >= ?");
+            filterParams.add(fromDate.trim());
+        }
+        if (toDate != null && !toDate.isBlank()) {
+            filter.append(" AND travel_date <= ?");
+            filterParams.add(toDate.trim());
+        }
+        if (trainNumber != null && !trainNumber.isBlank()) {
+            filter.append(" AND train_number = ?");
+            filterParams.add(trainNumber.trim());
+        }
+        // live and archived tickets, each branch filtered on its own indexes
+        String sql = LIVE + " WHERE 1 = 1" + filter + " UNION ALL " + ARCHIVED + " WHERE 1 = 1" + filter;
+        try (Connection c = tx.db().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(streamingFetchSize(c));
+            for (int i = 0; i < filterParams.size(); i++) {
+                ps.setString(i + 1, filterParams.get(i));
+                ps.setString(filterParams.size() + i + 1, filterParams.get(i));
+            }
+            long rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(read(rs));
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to read tickets", e);
+        }
+    }
+
+    @Override
+    public Map<Train, Map<LocalDate, Integer>> countTakenSeats(Map<Train, int[]> segments, LocalDate fromDate, LocalDate toDate) {
+        Map<Train, Map<LocalDate, Integer>> taken = new LinkedHashMap<>();
+        if (segments.isEmpty()) return taken;
+        Map<String, Train> byNumber = new HashMap<>();
+        for (Train train : segments.keySet()) byNumber.put(train.getTrainNumber().toUpperCase(), train);
+
+        StringBuilder sql = new StringBuilder("SELECT train_number, travel_day, COUNT(DISTINCT seat_number) AS taken FROM tickets "
+                + "WHERE status = 'ACTIVE' AND travel_day BETWEEN ? AND ? AND (");
+        for (int i = 0; i < segments.size(); i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append("(train_number = ? AND COALESCE(from_idx, 0) < ? AND COALESCE(to_idx, ?) > ?)");
+        }
+        sql.append(") GROUP BY train_number, travel_day");
+
+        return tx.withConnection("Failed to count booked seats", c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int p = 1;
+                ps.setDate(p++, java.sql.Date.valueOf(fromDate));
+                ps.setDate(p++, java.sql.Date.valueOf(toDate));
+                for (Map.Entry<Train, int[]> e : segments.entrySet()) {
+                    ps.setString(p++, e.getKey().getTrainNumber());
+                    ps.setInt(p++, e.getValue()[1]);
+                    ps.setInt(p++, e.getKey().getLegCount());
+                    ps.setInt(p++, e.getValue()[0]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Train train = byNumber.get(rs.getString("train_number").toUpperCase());
+                        java.sql.Date travelDay = rs.getDate("travel_day");
+                        if (train == null || travelDay == null) continue;
+                        taken.computeIfAbsent(train, k -> new LinkedHashMap<>()).put(travelDay.toLocalDate(), rs.getInt("taken"));
+                    }
+                }
+            }
+            return taken;
+        });
+    }
+
+    @Override
+    public long currentVersion() {
+        return tx.withConnection("Failed to read the tickets change version", c -> ChangeVersions.current(c, ChangeVersions.TICKETS));
+    }
+
+    @Override
+    public List<TicketRecord> findChangedSince(long version, String afterPnr, int limit) {
+        String sql = LIVE + " WHERE (change_version > ? OR (change_version = ? AND pnr > ?)) AND change_version <= ?"
+                + " ORDER BY change_version, pnr LIMIT ?";
+        return tx.withConnection("Failed to read ticket changes", c ->
+                query(c, sql, version, version, afterPnr, ChangeVersions.current(c, ChangeVersions.TICKETS), limit));
+    }
+
+    @Override
+    public void acknowledge(String instance, long version) {
+        tx.withConnection("Failed to acknowledge ticket changes", c -> {
+            ChangeVersions.acknowledge(c, ChangeVersions.TICKETS, instance, version);
+            return null;
+        });
+    }
+
+    @Override
+    public List<TicketRecord> lockActive(String trainNumber, String travelDate) {
+        return tx.withConnection("Failed to lock tickets", c -> query(c,
+                LIVE + " WHERE train_number = ? AND travel_date = ? AND status = 'ACTIVE' FOR UPDATE", trainNumber, travelDate));
+    }
+
+    @Override
+    public List<TicketRecord> lockActive(Collection<String> pnrs) {
+        List<String> all = new ArrayList<>(pnrs);
+        return tx.withConnection("Failed to lock tickets", c -> {
+            List<TicketRecord> locked = new ArrayList<>();
+            for (int from = 0; from < all.size(); from += IN_CLAUSE_CHUNK) {
+                List<String> chunk = all.subList(from, Math.min(all.size(), from + IN_CLAUSE_CHUNK));
+                locked.addAll(query(c, LIVE + " WHERE status = 'ACTIVE' AND pnr IN (" + placeholders(chunk.size()) + ") FOR UPDATE",
+                        chunk.toArray()));
+            }
+            return locked;
+        });
+    }
+
+    @Override
+    public long nextVersion() {
+        return tx.withConnection("Failed to take a tickets change version", c -> ChangeVersions.next(c, ChangeVersions.TICKETS));
+    }
+
+    @Override
+    public void insert(List<TicketRecord> tickets, long version) {
+        if (tickets.isEmpty()) return;
+        String sql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status, from_idx, to_idx, travel_day, change_version) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
+        tx.atomically("Failed to store tickets", c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (TicketRecord t : tickets) {
+                    ps.setString(1, t.getPnr());
+                    ps.setString(2, t.getUsername());
+                    ps.setString(3, t.getTrainNumber());
+                    ps.setString(4, t.getSeatNumber());
+                    ps.setString(5, t.getTravelDate());
+                    ps.setString(6, t.getBookedBy());
+                    ps.setString(7, t.getStatus());
+                    if (t.getFromIdx() >= 0) ps.setInt(8, t.getFromIdx()); else ps.setNull(8, java.sql.Types.INTEGER);
+                    if (t.getToIdx() >= 0) ps.setInt(9, t.getToIdx()); else ps.setNull(9, java.sql.Types.INTEGER);
+                    ps.setDate(10, travelDay(t.getTravelDate()));
+                    ps.setLong(11, version);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void markCancelled(Collection<String> pnrs, long version) {
+        if (pnrs.isEmpty()) return;
+        List<String> all = new ArrayList<>(pnrs);
+        tx.atomically("Failed to cancel tickets", c -> {
+            for (int from = 0; from < all.size(); from += IN_CLAUSE_CHUNK) {
+                List<String> chunk = all.subList(from, Math.min(all.size(), from + IN_CLAUSE_CHUNK));
+                String sql = "UPDATE tickets SET status = 'CANCELLED', change_version = ? WHERE status = 'ACTIVE' AND pnr IN (" + placeholders(chunk.size()) + ")";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setLong(1, version);
+                    for (int i = 0; i < chunk.size(); i++) ps.setString(i + 2, chunk.get(i));
+                    ps.executeUpdate();
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,138 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+final class JdbcTrainRepository implements TrainRepository {
+
+    private final JdbcTransactions tx;
+
+    JdbcTrainRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    private static Train readTrain(ResultSet rs) throws SQLException {
+        String routeCsv = rs.getString("route");
+        List<String> route = new ArrayList<>();
+        if (routeCsv != null && !routeCsv.isEmpty()) {
+            route = Arrays.stream(routeCsv.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .collect(Collectors.toList());
+        }
+        return new Train(rs.getString("train_number"), rs.getString("train_name"), route, rs.getInt("total_seats"));
+    }
+
+    @Override
+    public List<Train> findAll() {
+        return tx.withConnection("Failed to load trains", c -> {
+            List<Train> trains = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement("SELECT train_number, train_name, route, total_seats FROM trains");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) trains.add(readTrain(rs));
+            }
+            return trains;
+        });
+    }
+
+    @Override
+    public boolean add(Train train) {
+        String sql = "INSERT INTO trains (train_number, train_name, route, total_seats, change_version) VALUES (?, ?, ?, ?, ?)";
+        return tx.atomically("Failed to add train " + train.getTrainNumber(), c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, train.getTrainNumber());
+                ps.setString(2, train.getTrainName());
+                ps.setString(3, String.join(",", train.getRoute()));
+                ps.setInt(4, train.getSeats().size());
+                ps.setLong(5, ChangeVersions.next(c, ChangeVersions.TRAINS));
+                ps.executeUpdate();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public List<Train> addAll(List<Train> trains) {
+        List<Train> inserted = new ArrayList<>();
+        if (trains.isEmpty()) return inserted;
+        String sql = "INSERT IGNORE INTO trains (train_number, train_name, route, total_seats, change_version) VALUES (?, ?, ?, ?, ?)";
+        return tx.atomically("Failed to import train batch", c -> {
+            int[] counts;
+            long version = ChangeVersions.next(c, ChangeVersions.TRAINS);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (Train train : trains) {
+                    ps.setString(1, train.getTrainNumber());
+                    ps.setString(2, train.getTrainName());
+                    ps.setString(3, String.join(",", train.getRoute()));
+                    ps.setInt(4, train.getSeats().size());
+                    ps.setLong(5, version);
+                    ps.addBatch();
+                }
+                counts = ps.executeBatch();
+            }
+            boolean counted = true;
+            for (int count : counts) counted &= count != Statement.SUCCESS_NO_INFO;
+            if (counted) {
+                for (int i = 0; i < trains.size(); i++) {
+                    if (counts[i] > 0) inserted.add(trains.get(i));
+                }
+                return inserted;
+            }
+            // a rewritten batch reports no per-row counts; only rows this batch inserted carry its version
+            Set<String> stamped = new HashSet<>();
+            String check = "SELECT train_number FROM trains WHERE change_version = ? AND train_number IN ("
+                    + String.join(",", Collections.nCopies(trains.size(), "?")) + ")";
+            try (PreparedStatement ps = c.prepareStatement(check)) {
+                ps.setLong(1, version);
+                for (int i = 0; i < trains.size(); i++) ps.setString(i + 2, trains.get(i).getTrainNumber());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) stamped.add(rs.getString(1).toUpperCase());
+                }
+            }
+            for (Train train : trains) {
+                if (stamped.contains(train.getTrainNumber().toUpperCase())) inserted.add(train);
+            }
+            return inserted;
+        });
+    }
+
+    @Override
+    public long currentVersion() {
+        return tx.withConnection("Failed to read the trains change version", c -> ChangeVersions.current(c, ChangeVersions.TRAINS));
+    }
+
+    @Override
+    public List<Versioned<Train>> findChangedSince(long version, String afterTrainNumber, int limit) {
+        String sql = "SELECT train_number, train_name, route, total_seats, change_version FROM trains "
+                + "WHERE (change_version > ? OR (change_version = ? AND train_number > ?)) AND change_version <= ? "
+                + "ORDER BY change_version, train_number LIMIT ?";
+        return tx.withConnection("Failed to read train changes", c -> {
+            List<Versioned<Train>> changed = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setLong(1, version);
+                ps.setLong(2, version);
+                ps.setString(3, afterTrainNumber);
+                ps.setLong(4, ChangeVersions.current(c, ChangeVersions.TRAINS));
+                ps.setInt(5, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) changed.add(new Versioned<>(readTrain(rs), rs.getLong("change_version")));
+                }
+            }
+            return changed;
+        });
+    }
+}
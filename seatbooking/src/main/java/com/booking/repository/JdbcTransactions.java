@@ -0,0 +1,105 @@
+package com.booking.repository;
+
+import com.booking.exception.DatabaseException;
+import com.booking.service.DatabaseProvider;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JDBC transactions. The connection of the transaction running on a thread is bound to that thread,
+ * and the JDBC repositories use it through {@link #withConnection}; outside a transaction they borrow
+ * a connection per call.
+ */
+final class JdbcTransactions implements Transactions {
+
+    private static final Logger LOGGER = Logger.getLogger(JdbcTransactions.class.getName());
+
+    interface SqlWork<T> {
+        T run(Connection c) throws SQLException;
+    }
+
+    private static final class Scope {
+        final Connection connection;
+        final List<Runnable> rollbackActions = new ArrayList<>();
+
+        Scope(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final DatabaseProvider db;
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    JdbcTransactions(DatabaseProvider db) {
+        this.db = db;
+    }
+
+    DatabaseProvider db() {
+        return db;
+    }
+
+    @Override
+    public <T> T inTransaction(Supplier<T> work) {
+        if (current.get() != null) return work.get();
+        Connection conn = db.getConnection();
+        Scope scope = new Scope(conn);
+        current.set(scope);
+        try {
+            conn.setAutoCommit(false);
+            T result = work.get();
+            conn.commit();
+            return result;
+        } catch (SQLException e) {
+            rollback(scope);
+            throw new DatabaseException("Transaction failed", e);
+        } catch (RuntimeException | Error e) {
+            rollback(scope);
+            throw e;
+        } finally {
+            current.remove();
+            try { conn.setAutoCommit(true); conn.close(); } catch (SQLException ignored) { }
+        }
+    }
+
+    private static void rollback(Scope scope) {
+        try { scope.connection.rollback(); } catch (SQLException ignored) { }
+        for (int i = scope.rollbackActions.size() - 1; i >= 0; i--) {
+            try {
+                scope.rollbackActions.get(i).run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Rollback action failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void onRollback(Runnable action) {
+        Scope scope = current.get();
+        if (scope == null) throw new IllegalStateException("No transaction is active");
+        scope.rollbackActions.add(action);
+    }
+
+    /** Runs {@code work} on the current transaction's connection, or on a borrowed one. */
+    <T> T withConnection(String failure, SqlWork<T> work) {
+        Scope scope = current.get();
+        try {
+            if (scope != null) return work.run(scope.connection);
+            try (Connection c = db.getConnection()) {
+                return work.run(c);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException(failure, e);
+        }
+    }
+
+    /** Like {@link #withConnection}, but several statements run as one transaction. */
+    <T> T atomically(String failure, SqlWork<T> work) {
+        return inTransaction(() -> withConnection(failure, work));
+    }
+}
@@ -0,0 +1,45 @@
+package com.booking.repository;
+
+import com.booking.model.Role;
+import com.booking.model.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLIntegrityConstraintViolationException;
+
+final class JdbcUserRepository implements UserRepository {
+
+    private final JdbcTransactions tx;
+
+    JdbcUserRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        return tx.withConnection("Database error while finding user", c -> {
+            try (PreparedStatement ps = c.prepareStatement("SELECT username, password, role FROM users WHERE username = ?")) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return new User(rs.getString("username"), rs.getString("password"), Role.valueOf(rs.getString("role")));
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean add(String username, String password, Role role) {
+        return tx.withConnection("Failed to add user " + username, c -> {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO users(username, password, role) VALUES(?,?,?)")) {
+                ps.setString(1, username);
+                ps.setString(2, password);
+                ps.setString(3, role.name());
+                ps.executeUpdate();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+import com.booking.model.WaitlistEntry;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+final class JdbcWaitlistRepository implements WaitlistRepository {
+
+    private static final Logger LOGGER = Logger.getLogger(JdbcWaitlistRepository.class.getName());
+
+    private final JdbcTransactions tx;
+
+    JdbcWaitlistRepository(JdbcTransactions tx) {
+        this.tx = tx;
+    }
+
+    static int stopIndex(ResultSet rs, String column, int fallback) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? fallback : v;
+    }
+
+    @Override
+    public List<WaitlistEntry> findWaiting(Function<String, Train> trains) {
+        String sql = "SELECT id, train_number, travel_date, username, booked_by, from_idx, to_idx FROM waitlist WHERE status = 'WAITING' ORDER BY id";
+        return tx.withConnection("Failed to load the waitlist", c -> {
+            List<WaitlistEntry> waiting = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Train train = trains.apply(rs.getString("train_number"));
+                    if (train == null) {
+                        LOGGER.warning("Could not resolve train for waitlist entry " + rs.getLong("id"));
+                        continue;
+                    }
+                    waiting.add(new WaitlistEntry(rs.getLong("id"), rs.getString("username"), rs.getString("booked_by"),
+                            train, rs.getString("travel_date"),
+                            stopIndex(rs, "from_idx", 0), stopIndex(rs, "to_idx", train.getLegCount())));
+                }
+            }
+            return waiting;
+        });
+    }
+
+    @Override
+    public List<WaitlistEntry> add(List<String> usernames, Train train, int fromStop, int toStop, String date, String bookedBy) {
+        String sql = "INSERT INTO waitlist(train_number, travel_date, username, booked_by, from_idx, to_idx, status) VALUES(?,?,?,?,?,?,'WAITING')";
+        return tx.atomically("Failed to add passengers to waitlist", c -> {
+            List<WaitlistEntry> added = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (String username : usernames) {
+                    ps.setString(1, train.getTrainNumber());
+                    ps.setString(2, date);
+                    ps.setString(3, username);
+                    ps.setString(4, bookedBy);
+                    ps.setInt(5, fromStop);
+                    ps.setInt(6, toStop);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (!keys.next()) throw new SQLException("No id generated for waitlist entry");
+                        added.add(new WaitlistEntry(keys.getLong(1), username, bookedBy, train, date, fromStop, toStop));
+                    }
+                }
+            }
+            return added;
+        });
+    }
+
+    @Override
+    public List<WaitlistEntry> lockWaiting(Train train, String date) {
+        String sql = "SELECT id, username, booked_by, from_idx, to_idx FROM waitlist WHERE train_number = ? AND travel_date = ? AND status = 'WAITING' ORDER BY id FOR UPDATE";
+        return tx.withConnection("Failed to lock the waitlist", c -> {
+            List<WaitlistEntry> waiting = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, train.getTrainNumber());
+                ps.setString(2, date);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        waiting.add(new WaitlistEntry(rs.getLong("id"), rs.getString("username"), rs.getString("booked_by"),
+                                train, date, stopIndex(rs, "from_idx", 0), stopIndex(rs, "to_idx", train.getLegCount())));
+                    }
+                }
+            }
+            return waiting;
+        });
+    }
+
+    @Override
+    public void markPromoted(List<WaitlistEntry> promoted, List<String> pnrs) {
+        if (promoted.isEmpty()) return;
+        tx.atomically("Failed to mark waitlist entries promoted", c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE waitlist SET status = 'PROMOTED', promoted_pnr = ? WHERE id = ?")) {
+                for (int i = 0; i < promoted.size(); i++) {
+                    ps.setString(1, pnrs.get(i));
+                    ps.setLong(2, promoted.get(i).getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int closeAll(Train train, String date) {
+        return tx.withConnection("Failed to close the waitlist", c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE waitlist SET status = 'CANCELLED' WHERE train_number = ? AND travel_date = ? AND status = 'WAITING'")) {
+                ps.setString(1, train.getTrainNumber());
+                ps.setString(2, date);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public int expireBefore(String today) {
+        return tx.withConnection("Failed to expire past waitlist entries", c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE waitlist SET status = 'EXPIRED' WHERE status = 'WAITING' AND travel_date < ?")) {
+                ps.setString(1, today);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public boolean cancel(long id) {
+        return tx.withConnection("Failed to leave the waitlist", c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE waitlist SET status = 'CANCELLED' WHERE id = ? AND status = 'WAITING'")) {
+                ps.setLong(1, id);
+                return ps.executeUpdate() > 0;
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.booking.repository;
+
+import java.time.Instant;
+
+/** Sort key of the in-memory indexes: a number (version or creation time) then an identifier. */
+final class OrderKey implements Comparable<OrderKey> {
+
+    final long major;
+    final String minor;
+
+    OrderKey(long major, String minor) {
+        this.major = major;
+        this.minor = minor;
+    }
+
+    static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    @Override
+    public int compareTo(OrderKey o) {
+        int c = Long.compare(major, o.major);
+        return c != 0 ? c : minor.compareTo(o.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof OrderKey && compareTo((OrderKey) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(major) * 31 + minor.hashCode();
+    }
+}
@@ -0,0 +1,75 @@
+package com.booking.repository;
+
+import com.booking.service.DatabaseProvider;
+
+/**
+ * The repositories of one storage engine together with their transaction boundary. Services are
+ * wired with one of these and never see which engine is behind it.
+ */
+public final class Repositories {
+
+    private final Transactions transactions;
+    private final UserRepository users;
+    private final TrainRepository trains;
+    private final TicketRepository tickets;
+    private final HistoryRepository history;
+    private final WaitlistRepository waitlist;
+    private final IdempotencyRepository idempotency;
+
+    private Repositories(Transactions transactions, UserRepository users, TrainRepository trains, TicketRepository tickets,
+                         HistoryRepository history, WaitlistRepository waitlist, IdempotencyRepository idempotency) {
+        this.transactions = transactions;
+        this.users = users;
+        this.trains = trains;
+        this.tickets = tickets;
+        this.history = history;
+        this.waitlist = waitlist;
+        this.idempotency = idempotency;
+    }
+
+    /** Repositories over the MySQL schema; creates and migrates the schema first. */
+    public static Repositories jdbc(DatabaseProvider db) {
+        db.init();
+        JdbcTransactions tx = new JdbcTransactions(db);
+        return new Repositories(tx, new JdbcUserRepository(tx), new JdbcTrainRepository(tx), new JdbcTicketRepository(tx),
+                new JdbcHistoryRepository(tx), new JdbcWaitlistRepository(tx), new JdbcIdempotencyRepository(tx));
+    }
+
+    /**
+     * Empty repositories held entirely in this process, for a single instance with no database: kiosk
+     * mode, benchmarks and tests. Nothing survives a restart.
+     */
+    public static Repositories inMemory() {
+        InMemoryTransactions tx = new InMemoryTransactions();
+        return new Repositories(tx, new InMemoryUserRepository(tx), new InMemoryTrainRepository(tx), new InMemoryTicketRepository(tx),
+                new InMemoryHistoryRepository(tx), new InMemoryWaitlistRepository(tx), new InMemoryIdempotencyRepository(tx));
+    }
+
+    public Transactions getTransactions() {
+        return transactions;
+    }
+
+    public UserRepository getUsers() {
+        return users;
+    }
+
+    public TrainRepository getTrains() {
+        return trains;
+    }
+
+    public TicketRepository getTickets() {
+        return tickets;
+    }
+
+    public HistoryRepository getHistory() {
+        return history;
+    }
+
+    public WaitlistRepository getWaitlist() {
+        return waitlist;
+    }
+
+    public IdempotencyRepository getIdempotency() {
+        return idempotency;
+    }
+}
@@ -0,0 +1,32 @@
+package com.booking.repository;
+
+import com.booking.exception.ValidationException;
+
+import java.time.Instant;
+
+/** Position in a (creation time, PNR) ordered ticket listing, encoded as "instant|pnr". */
+final class TicketCursor {
+
+    final Instant createdAt;
+    final String pnr;
+
+    private TicketCursor(Instant createdAt, String pnr) {
+        this.createdAt = createdAt;
+        this.pnr = pnr;
+    }
+
+    static String encode(Instant createdAt, String pnr) {
+        return createdAt + "|" + pnr;
+    }
+
+    /** @return null for a null cursor (the first page) */
+    static TicketCursor decode(String cursor) {
+        if (cursor == null) return null;
+        int sep = cursor.indexOf('|');
+        try {
+            return new TicketCursor(Instant.parse(cursor.substring(0, sep)), cursor.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new ValidationException("Invalid page cursor: " + cursor, e);
+        }
+    }
+}
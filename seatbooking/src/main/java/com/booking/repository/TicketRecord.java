@@ -0,0 +1,105 @@
+package com.booking.repository;
+
+import java.time.Instant;
+
+/**
+ * A ticket row as stored, before train and seat are resolved against the catalogue. Leg indexes are
+ * -1 where the row has none (tickets booked before journeys could cover part of a route), meaning the
+ * first stop and the last stop respectively.
+ */
+public final class TicketRecord {
+
+    public static final String ACTIVE = "ACTIVE";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String COMPLETED = "COMPLETED";
+
+    private final String pnr;
+    private final String username;
+    private final String bookedBy;
+    private final String trainNumber;
+    private final String seatNumber;
+    private final String travelDate;
+    private final int fromIdx;
+    private final int toIdx;
+    private final String status;
+    private final Instant createdAt;
+    private final long changeVersion;
+
+    /** A new ticket, not yet stored; the repository sets its creation time and version. */
+    public TicketRecord(String pnr, String username, String bookedBy, String trainNumber, String seatNumber,
+                        String travelDate, int fromIdx, int toIdx, String status) {
+        this(pnr, username, bookedBy, trainNumber, seatNumber, travelDate, fromIdx, toIdx, status, null, 0L);
+    }
+
+    TicketRecord(String pnr, String username, String bookedBy, String trainNumber, String seatNumber,
+                 String travelDate, int fromIdx, int toIdx, String status, Instant createdAt, long changeVersion) {
+        this.pnr = pnr;
+        this.username = username;
+        this.bookedBy = bookedBy;
+        this.trainNumber = trainNumber;
+        this.seatNumber = seatNumber;
+        this.travelDate = travelDate;
+        this.fromIdx = fromIdx;
+        this.toIdx = toIdx;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.changeVersion = changeVersion;
+    }
+
+    TicketRecord stored(Instant createdAt, long changeVersion) {
+        return new TicketRecord(pnr, username, bookedBy, trainNumber, seatNumber, travelDate, fromIdx, toIdx,
+                status, createdAt, changeVersion);
+    }
+
+    TicketRecord withStatus(String status, long changeVersion) {
+        return new TicketRecord(pnr, username, bookedBy, trainNumber, seatNumber, travelDate, fromIdx, toIdx,
+                status, createdAt, changeVersion);
+    }
+
+    public String getPnr() {
+        return pnr;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getBookedBy() {
+        return bookedBy;
+    }
+
+    public String getTrainNumber() {
+        return trainNumber;
+    }
+
+    public String getSeatNumber() {
+        return seatNumber;
+    }
+
+    public String getTravelDate() {
+        return travelDate;
+    }
+
+    /** First leg covered, or -1 if not recorded. */
+    public int getFromIdx() {
+        return fromIdx;
+    }
+
+    /** Stop index the journey ends at, or -1 if not recorded. */
+    public int getToIdx() {
+        return toIdx;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /** When the row was stored, or null if unknown. */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+}
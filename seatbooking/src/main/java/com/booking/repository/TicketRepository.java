@@ -0,0 +1,93 @@
+package com.booking.repository;
+
+import com.booking.model.Page;
+import com.booking.model.Train;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Tickets, live and archived. Lookups by passenger match the passenger who booked ({@code booked_by}).
+ * The {@code lock...} methods, {@link #nextVersion} and the writes are meant to be combined inside
+ * {@link Transactions#inTransaction}: lock the rows a decision depends on, take a version, then write.
+ */
+public interface TicketRepository {
+
+    /** Every ACTIVE ticket. */
+    List<TicketRecord> findActive();
+
+    /** Tickets with the given PNRs in any status, live or archived, in no particular order. */
+    List<TicketRecord> findByPnrs(List<String> pnrs);
+
+    /** ACTIVE tickets booked by the passenger travelling on or after {@code today}. */
+    List<TicketRecord> findUpcoming(String bookedBy, LocalDate today);
+
+    /** Completed journeys booked by the passenger, plus ACTIVE ones dated before {@code today}. */
+    List<TicketRecord> findPast(String bookedBy, LocalDate today);
+
+    /** Cancelled tickets booked by the passenger, live or archived. */
+    List<TicketRecord> findCancelled(String bookedBy);
+
+    /**
+     * Tickets with the given status ordered by (creation time, PNR), starting after {@code cursor}
+     * (null for the first page).
+     */
+    Page<TicketRecord> findPage(String status, String cursor, int limit);
+
+    /**
+     * Tickets booked by the passenger with the given status, ordered by (creation time, PNR) and read
+     * lazily. The stream may hold storage resources and must be closed.
+     */
+    Stream<TicketRecord> streamByBooker(String bookedBy, String status);
+
+    /**
+     * Passes every live and archived ticket matching the optional filters (null or blank means no
+     * filter; dates inclusive, YYYY-MM-DD) to {@code action}, one at a time.
+     * @return number of tickets passed
+     */
+    long forEach(String fromDate, String toDate, String trainNumber, Consumer<TicketRecord> action);
+
+    /**
+     * Distinct seats held by ACTIVE tickets on each train's stretch {@code segments.get(train)} =
+     * {from stop, to stop}, per travel date between {@code fromDate} and {@code toDate}. Dates with no
+     * tickets are left out.
+     */
+    Map<Train, Map<LocalDate, Integer>> countTakenSeats(Map<Train, int[]> segments, LocalDate fromDate, LocalDate toDate);
+
+    /** Settled change version: every ticket stamped at or below it is visible, and none will appear later. */
+    long currentVersion();
+
+    /**
+     * Tickets in any status stamped after ({@code version}, {@code afterPnr}) and at or below the settled
+     * version, in (version, PNR) order.
+     */
+    List<TicketRecord> findChangedSince(long version, String afterPnr, int limit);
+
+    /**
+     * Records that the calling instance, named {@code instance}, has applied every ticket change up to
+     * {@code version}. Finished tickets are not archived before every live instance has.
+     */
+    void acknowledge(String instance, long version);
+
+    /** The ACTIVE tickets of one run, locked until the caller's transaction ends. */
+    List<TicketRecord> lockActive(String trainNumber, String travelDate);
+
+    /** The ACTIVE tickets among the PNRs, locked until the caller's transaction ends. */
+    List<TicketRecord> lockActive(Collection<String> pnrs);
+
+    /**
+     * Takes the next change version. Versions of concurrent transactions may commit out of order; the
+     * change feed only reads a version once every version below it has committed or rolled back.
+     */
+    long nextVersion();
+
+    /** Stores new tickets stamped with {@code version}. */
+    void insert(List<TicketRecord> tickets, long version);
+
+    /** Marks the ACTIVE tickets among the PNRs CANCELLED, stamped with {@code version}. */
+    void markCancelled(Collection<String> pnrs, long version);
+}
@@ -0,0 +1,32 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+
+import java.util.List;
+
+/**
+ * The train catalogue. Every write stamps the trains it stores with a new change version so other
+ * application instances can pick them up through {@link #findChangedSince}.
+ */
+public interface TrainRepository {
+
+    List<Train> findAll();
+
+    /** @return false if a train with the same number already exists */
+    boolean add(Train train);
+
+    /**
+     * Stores the trains in one atomic step, skipping train numbers that already exist.
+     * @return the trains actually stored
+     */
+    List<Train> addAll(List<Train> trains);
+
+    /** Settled change version: every train stamped at or below it is visible, and none will appear later. */
+    long currentVersion();
+
+    /**
+     * Trains stamped after ({@code version}, {@code afterTrainNumber}) and at or below the settled
+     * version, in (version, train number) order.
+     */
+    List<Versioned<Train>> findChangedSince(long version, String afterTrainNumber, int limit);
+}
@@ -0,0 +1,25 @@
+package com.booking.repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Transaction boundary shared by the repositories of one storage engine. Repository calls made inside
+ * {@link #inTransaction} on the same thread join that transaction; a call made outside one is atomic
+ * on its own. Nested calls join the outer transaction.
+ */
+public interface Transactions {
+
+    /**
+     * Runs {@code work} as one atomic unit. If it throws, or the commit fails, every repository change
+     * it made is undone, the actions registered with {@link #onRollback} run, and the exception is
+     * rethrown (storage errors as {@link com.booking.exception.DatabaseException}).
+     */
+    <T> T inTransaction(Supplier<T> work);
+
+    /**
+     * Registers an action that undoes an in-memory side effect of the current transaction should it
+     * roll back, e.g. seats claimed in a seat inventory.
+     * @throws IllegalStateException if no transaction is active on this thread
+     */
+    void onRollback(Runnable action);
+}
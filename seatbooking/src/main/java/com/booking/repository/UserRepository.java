@@ -0,0 +1,14 @@
+package com.booking.repository;
+
+import com.booking.model.Role;
+import com.booking.model.User;
+
+/** Registered users. Usernames are matched case-insensitively. */
+public interface UserRepository {
+
+    /** @return the user, or null if nobody is registered under that name */
+    User findByUsername(String username);
+
+    /** @return false if the username is already taken */
+    boolean add(String username, String password, Role role);
+}
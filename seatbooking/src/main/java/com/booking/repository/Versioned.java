@@ -0,0 +1,21 @@
+package com.booking.repository;
+
+/** A value read from a change feed together with the change version it was stamped with. */
+public final class Versioned<T> {
+
+    private final T value;
+    private final long version;
+
+    public Versioned(T value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
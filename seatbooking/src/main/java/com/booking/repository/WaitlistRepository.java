@@ -0,0 +1,38 @@
+package com.booking.repository;
+
+import com.booking.model.Train;
+import com.booking.model.WaitlistEntry;
+
+import java.util.List;
+import java.util.function.Function;
+
+/** Waitlist entries per (train, travel date), served in the order they joined. */
+public interface WaitlistRepository {
+
+    /**
+     * Every WAITING entry in joining order. Trains are looked up by number through {@code trains};
+     * entries whose train cannot be resolved are skipped.
+     */
+    List<WaitlistEntry> findWaiting(Function<String, Train> trains);
+
+    /** Adds one WAITING entry per username in one atomic step. @return the entries, in order */
+    List<WaitlistEntry> add(List<String> usernames, Train train, int fromStop, int toStop, String date, String bookedBy);
+
+    /**
+     * The WAITING entries for (train, date) in joining order, locked until the caller's transaction
+     * ends. Only meaningful inside {@link Transactions#inTransaction}.
+     */
+    List<WaitlistEntry> lockWaiting(Train train, String date);
+
+    /** Marks each entry PROMOTED to the PNR at the same position. */
+    void markPromoted(List<WaitlistEntry> promoted, List<String> pnrs);
+
+    /** Cancels every WAITING entry for (train, date). @return number of entries closed */
+    int closeAll(Train train, String date);
+
+    /** Marks WAITING entries for dates before {@code today} EXPIRED. @return number expired */
+    int expireBefore(String today);
+
+    /** Cancels one entry. @return false if it was no longer WAITING */
+    boolean cancel(long id);
+}
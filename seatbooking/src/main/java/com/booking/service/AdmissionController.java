@@ -0,0 +1,251 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.OverloadException;
+import com.booking.util.AppConfig;
+import com.booking.util.Deadline;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Admission layer in front of {@link BookingService}. Each request must get a token from the caller's
+ * bucket and a slot under the global concurrency limit of its class; otherwise it is rejected at once
+ * with an {@link OverloadException} instead of queueing on the database. The limit adapts to observed
+ * latency AIMD-style: +1/limit per fast call, x0.9 (at most once per target interval) on slow or failed
+ * calls. Bookings and reads have separate buckets and limits, so a booking rush cannot starve searches.
+ * Admitted work runs under a per-class {@link Deadline}, which caps its database waits.
+ */
+public class AdmissionController {
+
+    public enum Kind { BOOKING, READ }
+
+    private static final int MAX_TRACKED_USERS = 50_000;
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Lane booking;
+    private final Lane read;
+
+    public AdmissionController() {
+        this(new Lane(AppConfig.getInt("ADMISSION_BOOKING_BURST", 5),
+                        AppConfig.getInt("ADMISSION_BOOKING_PER_MINUTE", 30),
+                        AppConfig.getInt("ADMISSION_BOOKING_MIN_CONCURRENCY", 2),
+                        AppConfig.getInt("ADMISSION_BOOKING_MAX_CONCURRENCY", 64),
+                        AppConfig.getInt("ADMISSION_BOOKING_TARGET_MS", 250),
+                        AppConfig.getInt("ADMISSION_BOOKING_DEADLINE_MS", 10_000)),
+                new Lane(AppConfig.getInt("ADMISSION_READ_BURST", 20),
+                        AppConfig.getInt("ADMISSION_READ_PER_MINUTE", 300),
+                        AppConfig.getInt("ADMISSION_READ_MIN_CONCURRENCY", 4),
+                        AppConfig.getInt("ADMISSION_READ_MAX_CONCURRENCY", 128),
+                        AppConfig.getInt("ADMISSION_READ_TARGET_MS", 100),
+                        AppConfig.getInt("ADMISSION_READ_DEADLINE_MS", 5000)));
+    }
+
+    AdmissionController(Lane booking, Lane read) {
+        this.booking = booking;
+        this.read = read;
+    }
+
+    /** A controller that admits everything; used when admission control is not wanted. */
+    public static AdmissionController unlimited() {
+        return new AdmissionController(
+                new Lane(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE),
+                new Lane(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    private Lane lane(Kind kind) {
+        return kind == Kind.BOOKING ? booking : read;
+    }
+
+    /**
+     * Runs {@code work} if the request is admitted for {@code user} (null skips the per-user check).
+     * @throws OverloadException if the user is over their rate or the service is at its concurrency limit
+     */
+    public <T> T admit(Kind kind, String user, Supplier<T> work) {
+        Lane lane = lane(kind);
+        enter(lane, user);
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return Deadline.within(lane.deadlineMillis, work);
+        } catch (DatabaseException e) {
+            failed = true;
+            throw e;
+        } finally {
+            lane.limit.release(System.nanoTime() - start, failed);
+            lane.admitted.incrementAndGet();
+        }
+    }
+
+    /**
+     * Like {@link #admit}, for work that finishes after {@code work} returns: the slot is held, and the
+     * latency measured, until the returned future completes. Only {@code work} itself runs under the
+     * lane's {@link Deadline}; whatever completes the future must apply its own.
+     */
+    public <T> CompletableFuture<T> admitAsync(Kind kind, String user, Supplier<CompletableFuture<T>> work) {
+        Lane lane = lane(kind);
+        enter(lane, user);
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = Deadline.within(lane.deadlineMillis, work);
+        } catch (RuntimeException e) {
+            lane.limit.release(System.nanoTime() - start, e instanceof DatabaseException);
+            lane.admitted.incrementAndGet();
+            throw e;
+        }
+        result.whenComplete((r, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            lane.limit.release(System.nanoTime() - start, cause instanceof DatabaseException);
+            lane.admitted.incrementAndGet();
+        });
+        return result;
+    }
+
+    private static void enter(Lane lane, String user) {
+        if (user != null && !lane.bucket(user).tryTake()) {
+            lane.rejectedRate.incrementAndGet();
+            throw new OverloadException("Too many requests. Please wait a moment and try again.");
+        }
+        if (!lane.limit.tryAcquire()) {
+            lane.rejectedBusy.incrementAndGet();
+            throw new OverloadException("The service is busy. Please try again shortly.");
+        }
+    }
+
+    /** Time budget of each admitted request of this class. */
+    public long getDeadlineMillis(Kind kind) {
+        return lane(kind).deadlineMillis;
+    }
+
+    public int getConcurrencyLimit(Kind kind) {
+        return lane(kind).limit.currentLimit();
+    }
+
+    public int getInFlight(Kind kind) {
+        return lane(kind).limit.inFlight.get();
+    }
+
+    public long getAdmittedCount(Kind kind) {
+        return lane(kind).admitted.get();
+    }
+
+    public long getRejectedCount(Kind kind) {
+        Lane lane = lane(kind);
+        return lane.rejectedRate.get() + lane.rejectedBusy.get();
+    }
+
+    static final class Lane {
+        final int burst;
+        final double tokensPerNano;
+        final AdaptiveLimit limit;
+        final long deadlineMillis;
+        final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong rejectedRate = new AtomicLong();
+        final AtomicLong rejectedBusy = new AtomicLong();
+        final AtomicLong nextPurge = new AtomicLong(System.nanoTime());
+
+        Lane(int burst, int perMinute, int minConcurrency, int maxConcurrency, int targetLatencyMs, int deadlineMs) {
+            this.burst = Math.max(1, burst);
+            this.tokensPerNano = Math.max(1, perMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+            this.limit = new AdaptiveLimit(Math.max(1, minConcurrency), Math.max(minConcurrency, maxConcurrency),
+                    TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMs)));
+            this.deadlineMillis = Math.max(1, deadlineMs);
+        }
+
+        TokenBucket bucket(String user) {
+            if (buckets.size() > MAX_TRACKED_USERS) {
+                // one caller per interval sweeps out idle users, so a request is not O(users) under load
+                long now = System.nanoTime();
+                long due = nextPurge.get();
+                if (now - due >= 0 && nextPurge.compareAndSet(due, now + PURGE_INTERVAL_NANOS)) {
+                    buckets.values().removeIf(b -> b.isFull(now));
+                }
+            }
+            return buckets.computeIfAbsent(user.toLowerCase(), k -> new TokenBucket(burst, tokensPerNano));
+        }
+    }
+
+    static final class TokenBucket {
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double tokensPerNano) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+
+        synchronized boolean tryTake() {
+            refill(System.nanoTime());
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+    }
+
+    static final class AdaptiveLimit {
+        private final int min;
+        private final int max;
+        private final long targetNanos;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private double limit;
+        private long lastDecrease;
+
+        AdaptiveLimit(int min, int max, long targetNanos) {
+            this.min = min;
+            this.max = max;
+            this.targetNanos = targetNanos;
+            this.limit = min;
+            this.lastDecrease = System.nanoTime() - targetNanos;
+        }
+
+        synchronized int currentLimit() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            int allowed = currentLimit();
+            while (true) {
+                int cur = inFlight.get();
+                if (cur >= allowed) return false;
+                if (inFlight.compareAndSet(cur, cur + 1)) return true;
+            }
+        }
+
+        void release(long latencyNanos, boolean failed) {
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (failed || latencyNanos > targetNanos) {
+                    if (now - lastDecrease >= targetNanos) {
+                        limit = Math.max(min, limit * 0.9);
+                        lastDecrease = now;
+                    }
+                } else if (limit < max) {
+                    limit = Math.min(max, limit + 1.0 / limit);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.repository.ChangeVersions;
+import com.booking.util.AppConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the tickets table down to upcoming inventory. It first marks ACTIVE tickets whose travel date
+ * has passed as COMPLETED. It then moves COMPLETED and CANCELLED tickets, together with their
+ * user_history rows, to tickets_archive and user_history_archive. Each step runs in batches of
+ * {@value #BATCH_SIZE}, each batch in its own short transaction. The job runs once at start-up and
+ * again after every midnight, which is also when in-memory state for past dates is dropped.
+ *
+ * <p>Other instances learn that a ticket was cancelled or completed from the change feed, which only
+ * reads the live tickets table. A finished ticket is therefore moved only once its change version is at
+ * or below what every live instance has acknowledged (see {@link ChangeVersions#acknowledged}); until
+ * then it stays where the feed can see it, and a later run moves it. Instances that have not
+ * acknowledged for ARCHIVE_FEED_ACK_TTL_SECONDS (default 600) count as gone.
+ */
+public class ArchivalService implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ArchivalService.class.getName());
+    static final int BATCH_SIZE = 1000;
+
+    private static final String TICKET_COLUMNS = "pnr, username, booked_by, train_number, seat_number, travel_date, travel_day, status, from_idx, to_idx, created_at";
+    private static final String HISTORY_COLUMNS = "id, user_id, pnr, action, details, created_at";
+
+    private final DatabaseProvider db;
+    private final BookingService bookingService;
+    private final int ackTtlSeconds = Math.max(1, AppConfig.getInt("ARCHIVE_FEED_ACK_TTL_SECONDS", 600));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ticket-archival");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static class Report {
+        private int completed;
+        private int archivedTickets;
+        private int archivedHistory;
+        private int expiredWaitlist;
+
+        public int getCompleted() {
+            return completed;
+        }
+
+        public int getArchivedTickets() {
+            return archivedTickets;
+        }
+
+        public int getArchivedHistory() {
+            return archivedHistory;
+        }
+
+        public int getExpiredWaitlist() {
+            return expiredWaitlist;
+        }
+
+        @Override
+        public String toString() {
+            return "completed=" + completed + ", archivedTickets=" + archivedTickets
+                    + ", archivedHistory=" + archivedHistory + ", expiredWaitlist=" + expiredWaitlist;
+        }
+    }
+
+    public ArchivalService(DatabaseProvider db, BookingService bookingService) {
+        this.db = db;
+        this.bookingService = bookingService;
+    }
+
+    /** Runs the job now and then shortly after every midnight (local time). */
+    public void start() {
+        scheduler.execute(this::runQuietly);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().plusDays(1).atStartOfDay().plusMinutes(1);
+        scheduler.scheduleAtFixedRate(this::runQuietly, Duration.between(now, nextRun).toMillis(),
+                TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    private void runQuietly() {
+        try {
+            Report report = runOnce();
+            LOGGER.info("Ticket archival finished: " + report);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Ticket archival failed; will retry on the next run", e);
+        }
+    }
+
+    public Report runOnce() {
+        String today = LocalDate.now().toString();
+        Report report = new Report();
+        try (Connection c = this.db.getConnection()) {
+            int n;
+            do {
+                n = markCompleted(c, today);
+                report.completed += n;
+            } while (n == BATCH_SIZE);
+            long acknowledged = ChangeVersions.acknowledged(c, ChangeVersions.TICKETS, ackTtlSeconds);
+            do {
+                n = archiveBatch(c, acknowledged, report);
+            } while (n == BATCH_SIZE);
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to archive tickets", e);
+        }
+        report.expiredWaitlist = bookingService.onDayRollover(today);
+        return report;
+    }
+
+    /** Marks one batch of past ACTIVE tickets COMPLETED, stamped with a change version. @return tickets marked */
+    private static int markCompleted(Connection c, String today) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            List<String> pnrs = new ArrayList<>();
+            String pick = "SELECT pnr FROM tickets WHERE status = 'ACTIVE' AND travel_day < ? LIMIT " + BATCH_SIZE + " FOR UPDATE";
+            try (PreparedStatement ps = c.prepareStatement(pick)) {
+                ps.setDate(1, TravelDayMigration.toSqlDate(today));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) pnrs.add(rs.getString("pnr"));
+                }
+            }
+            if (pnrs.isEmpty()) {
+                c.commit();
+                return 0;
+            }
+            String sql = "UPDATE tickets SET status = 'COMPLETED', change_version = " + ChangeVersions.next(c, ChangeVersions.TICKETS)
+                    + " WHERE pnr IN (" + String.join(",", Collections.nCopies(pnrs.size(), "?")) + ")";
+            int marked = run(c, sql, pnrs);
+            c.commit();
+            return marked;
+        } catch (SQLException e) {
+            try { c.rollback(); } catch (SQLException ignored) { }
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Moves one batch of finished tickets that every live instance has seen, with their history, in a
+     * single transaction. @return tickets selected
+     */
+    private static int archiveBatch(Connection c, long acknowledged, Report report) throws SQLException {
+        c.setAutoCommit(false);
+        try {
+            List<String> pnrs = new ArrayList<>();
+            String pick = "SELECT pnr FROM tickets WHERE status IN ('COMPLETED', 'CANCELLED') AND change_version <= ? "
+                    + "ORDER BY pnr LIMIT " + BATCH_SIZE + " FOR UPDATE";
+            try (PreparedStatement ps = c.prepareStatement(pick)) {
+                ps.setLong(1, acknowledged);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) pnrs.add(rs.getString("pnr"));
+                }
+            }
+            if (pnrs.isEmpty()) {
+                c.commit();
+                return 0;
+            }
+            String in = " WHERE pnr IN (" + String.join(",", Collections.nCopies(pnrs.size(), "?")) + ")";
+            report.archivedHistory += run(c, "INSERT INTO user_history_archive (" + HISTORY_COLUMNS + ") SELECT "
+                    + HISTORY_COLUMNS + " FROM user_history" + in, pnrs);
+            run(c, "DELETE FROM user_history" + in, pnrs);
+            report.archivedTickets += run(c, "INSERT INTO tickets_archive (" + TICKET_COLUMNS + ") SELECT "
+                    + TICKET_COLUMNS + " FROM tickets" + in, pnrs);
+            run(c, "DELETE FROM tickets" + in, pnrs);
+            c.commit();
+            return pnrs.size();
+        } catch (SQLException e) {
+            try { c.rollback(); } catch (SQLException ignored) { }
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    private static int run(Connection c, String sql, List<String> pnrs) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < pnrs.size(); i++) ps.setString(i + 1, pnrs.get(i));
+            return ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
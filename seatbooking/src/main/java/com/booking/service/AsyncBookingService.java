@@ -0,0 +1,202 @@
+package com.booking.service;
+
+import com.booking.exception.OverloadException;
+import com.booking.model.SeatHold;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.model.WaitlistEntry;
+import com.booking.util.AppConfig;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking front of {@link TrainService} and {@link BookingService}. Every call runs on the
+ * configured executor and returns a {@link CompletableFuture} that completes exceptionally after the
+ * default timeout. Cancelling the future, or a timeout, keeps the underlying call from starting if it
+ * has not started yet. A call that is already running is never interrupted, since that could abort a
+ * database transaction half way; it runs to the end and its result is dropped. A booking that has
+ * committed that way stays booked; retry with the same idempotency key to read it back.
+ */
+public class AsyncBookingService implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncBookingService.class.getName());
+
+    private final TrainService trainService;
+    private final BookingService bookingService;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long timeoutMillis;
+
+    public AsyncBookingService(TrainService trainService, BookingService bookingService) {
+        this(trainService, bookingService, defaultExecutor(), true, AppConfig.getInt("ASYNC_TIMEOUT_MS", 10_000));
+    }
+
+    /** Uses the caller's executor, which the caller remains responsible for shutting down. */
+    public AsyncBookingService(TrainService trainService, BookingService bookingService, ExecutorService executor,
+                               long timeoutMillis) {
+        this(trainService, bookingService, executor, false, timeoutMillis);
+    }
+
+    private AsyncBookingService(TrainService trainService, BookingService bookingService, ExecutorService executor,
+                                boolean ownsExecutor, long timeoutMillis) {
+        this.trainService = trainService;
+        this.bookingService = bookingService;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * A virtual-thread-per-task executor when the runtime has one (Java 21+) and ASYNC_EXECUTOR is not
+     * "platform"; otherwise a fixed pool of ASYNC_THREADS daemon threads.
+     */
+    public static ExecutorService defaultExecutor() {
+        if (!"platform".equalsIgnoreCase(AppConfig.getString("ASYNC_EXECUTOR", "virtual"))) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.fine("Virtual threads not available, using a platform thread pool");
+            }
+        }
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, AppConfig.getInt("ASYNC_THREADS", 16)), r -> {
+            Thread t = new Thread(r, "booking-async-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // claimed by whichever comes first: the task starting, or the caller giving up
+        AtomicBoolean started = new AtomicBoolean();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) return;
+                try {
+                    result.complete(work.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new OverloadException("The service is shutting down or busy. Please try again."));
+            return result;
+        }
+        result.whenComplete((r, e) -> {
+            if (e != null && started.compareAndSet(false, true)) task.cancel(false);
+        });
+        return timeoutMillis > 0 ? result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : result;
+    }
+
+    public CompletableFuture<List<Train>> searchTrainsAsync(String startStation, String endStation) {
+        return submit(() -> trainService.searchTrains(startStation, endStation));
+    }
+
+    public CompletableFuture<Optional<Train>> findTrainAsync(String trainNumber) {
+        return submit(() -> Optional.ofNullable(trainService.findTrain(trainNumber)));
+    }
+
+    public CompletableFuture<Map<Train, Integer>> searchTrainsWithAvailabilityAsync(String startStation, String endStation,
+                                                                                   String date) {
+        return submit(() -> bookingService.searchTrainsWithAvailability(startStation, endStation, date));
+    }
+
+    /** Runs the availability search for each date concurrently; the result keeps the order of {@code dates}. */
+    public CompletableFuture<Map<String, Map<Train, Integer>>> searchAcrossDatesAsync(String startStation, String endStation,
+                                                                                     List<String> dates) {
+        List<CompletableFuture<Map<Train, Integer>>> perDate = new ArrayList<>();
+        for (String date : dates) perDate.add(searchTrainsWithAvailabilityAsync(startStation, endStation, date));
+        CompletableFuture<Map<String, Map<Train, Integer>>> all = CompletableFuture
+                .allOf(perDate.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    Map<String, Map<Train, Integer>> result = new LinkedHashMap<>();
+                    for (int i = 0; i < dates.size(); i++) result.put(dates.get(i), perDate.get(i).join());
+                    return result;
+                });
+        all.whenComplete((r, e) -> {
+            if (e != null) perDate.forEach(f -> f.cancel(true));
+        });
+        return all;
+    }
+
+    public CompletableFuture<Map<Train, Map<LocalDate, Integer>>> getAvailabilityCalendarAsync(String startStation,
+                                                                                            String endStation,
+                                                                                            LocalDate startDate, int days) {
+        return submit(() -> bookingService.getAvailabilityCalendar(startStation, endStation, startDate, days));
+    }
+
+    /**
+     * Books through the group-commit coordinator, so concurrent bookings for the same train and date
+     * share one transaction. A booking whose future is cancelled or times out before its batch is
+     * written is dropped from the batch.
+     */
+    public CompletableFuture<List<Ticket>> bookAsync(List<String> usernames, Train train, int fromStop, int toStop,
+                                                     String date, String bookedBy, String idempotencyKey) {
+        CompletableFuture<List<Ticket>> result = bookingService.createTicketsGrouped(usernames, train, fromStop, toStop,
+                date, bookedBy, idempotencyKey);
+        return timeoutMillis > 0 ? result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : result;
+    }
+
+    public CompletableFuture<SeatHold> holdSeatsAsync(Train train, int count, int fromStop, int toStop, String date,
+                                                      String heldBy) {
+        return submit(() -> bookingService.holdSeats(train, count, fromStop, toStop, date, heldBy));
+    }
+
+    public CompletableFuture<List<Ticket>> confirmHoldAsync(SeatHold hold, List<String> usernames, String idempotencyKey) {
+        return submit(() -> bookingService.confirmHold(hold, usernames, idempotencyKey));
+    }
+
+    public CompletableFuture<List<Ticket>> cancelAsync(Collection<String> pnrs, String idempotencyKey) {
+        return submit(() -> bookingService.cancelTickets(pnrs, idempotencyKey));
+    }
+
+    public CompletableFuture<List<WaitlistEntry>> joinWaitlistAsync(List<String> usernames, Train train, int fromStop,
+                                                                    int toStop, String date, String bookedBy) {
+        return submit(() -> bookingService.joinWaitlist(usernames, train, fromStop, toStop, date, bookedBy));
+    }
+
+    public CompletableFuture<Optional<Ticket>> findTicketByPnrAsync(String pnr) {
+        return submit(() -> Optional.ofNullable(bookingService.findTicketByPnr(pnr)));
+    }
+
+    public CompletableFuture<List<Ticket>> findTicketsByPassengerAsync(User passenger) {
+        return submit(() -> bookingService.findTicketsByPassenger(passenger));
+    }
+
+    public CompletableFuture<List<Ticket>> findPastTicketsByPassengerAsync(User passenger) {
+        return submit(() -> bookingService.findPastTicketsByPassenger(passenger));
+    }
+
+    public CompletableFuture<List<Ticket>> findCancelledTicketsByPassengerAsync(User passenger) {
+        return submit(() -> bookingService.findCancelledTicketsByPassenger(passenger));
+    }
+
+    public CompletableFuture<List<WaitlistEntry>> findWaitlistByPassengerAsync(User passenger) {
+        return submit(() -> bookingService.findWaitlistByPassenger(passenger));
+    }
+
+    @Override
+    public void close() {
+        // running calls finish rather than being interrupted mid-transaction
+        if (ownsExecutor) executor.shutdown();
+    }
+}
@@ -1,41 +1,112 @@
 package com.booking.service;
 
+import com.booking.exception.DatabaseException;
+import com.booking.exception.SeatsUnavailableException;
 import com.booking.exception.ValidationException;
 import com.booking.model.Ticket;
 import com.booking.model.User;
 import com.booking.model.Train;
 import com.booking.model.Seat;
-import com.booking.model.Role;
+import com.booking.model.Page;
+import com.booking.model.SeatHold;
+import com.booking.model.WaitlistEntry;
+import com.booking.repository.HistoryEntry;
+import com.booking.repository.HistoryRepository;
+import com.booking.repository.Repositories;
+import com.booking.repository.TicketRecord;
+import com.booking.repository.TicketRepository;
+import com.booking.repository.Transactions;
+import com.booking.util.AppConfig;
+import com.booking.util.HashedTimingWheel;
 import com.booking.util.InputValidator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import com.booking.util.PnrGenerator;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 
 public class BookingService {
 
-    private List<Ticket> allTickets;
+    private final TrainOrdinals trainOrdinals = new TrainOrdinals();
+    private final TicketStore tickets = new TicketStore(trainOrdinals);
     private TrainService trainService;
-    private final DatabaseProvider db;
+    private final Transactions transactions;
+    private final TicketRepository ticketRepository;
+    private final HistoryRepository history;
+    private final WaitlistService waitlistService;
+    private final InventoryStore inventoryStore = new InventoryStore(trainOrdinals, AppConfig.getInt("INVENTORY_CHUNK_MB", 16) << 20);
+    private final IdempotencyStore idempotency;
+    private final AdmissionController admission;
+    private final TransactionRetry retry = new TransactionRetry();
+    private final GroupCommitCoordinator groupCommit = new GroupCommitCoordinator(this::writeBatch,
+            AppConfig.getInt("GROUP_COMMIT_WINDOW_MS", 2), AppConfig.getInt("GROUP_COMMIT_MAX_BATCH", 64),
+            AppConfig.getInt("GROUP_COMMIT_THREADS", 4));
+    private final SurgeMode surgeMode = new SurgeMode(this);
+    private final Map<Long, ActiveHold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong holdIds = new AtomicLong();
+    private final HashedTimingWheel holdTimer = new HashedTimingWheel("seat-hold-expiry", 100, 512);
+    private final int holdTtlSeconds = Math.max(1, AppConfig.getInt("SEAT_HOLD_TTL_SECONDS", 300));
+    private final SearchCache searchCache = new SearchCache(AppConfig.getInt("SEARCH_CACHE_SIZE", 10_000),
+            AppConfig.getInt("SEARCH_CACHE_TTL_MS", 2000));
+
+    // change feed watermark: last (change_version, pnr) applied, plus versions this instance wrote itself
+    private long feedVersion;
+    // names this process in the change-feed acknowledgements
+    private final String instanceId = UUID.randomUUID().toString();
+    private String feedPnr = "";
+    private final ConcurrentSkipListSet<Long> localVersions = new ConcurrentSkipListSet<>();
+
+    private static final String OP_BOOK = "BOOK";
+    private static final String OP_CANCEL = "CANCEL";
+
+    public BookingService(TrainService trainService, Repositories repositories) {
+        this(trainService, repositories, new WaitlistService(trainService, repositories.getWaitlist()));
+    }
 
-    public BookingService(TrainService trainService, DatabaseProvider db) {
-        this.allTickets = new ArrayList<>();
-        this.trainService = trainService;
-        this.db = db;
+    public BookingService(TrainService trainService, Repositories repositories, WaitlistService waitlistService) {
+        this(trainService, repositories, waitlistService, new AdmissionController());
+    }
 
+    public BookingService(TrainService trainService, Repositories repositories, WaitlistService waitlistService,
+                          AdmissionController admission) {
+        this.trainService = trainService;
+        this.transactions = repositories.getTransactions();
+        this.ticketRepository = repositories.getTickets();
+        this.history = repositories.getHistory();
+        this.waitlistService = waitlistService;
+        this.admission = admission;
+
+        this.idempotency = new IdempotencyStore(repositories.getIdempotency());
+        trainService.addTrainListener(searchCache::invalidateRoutes);
         try {
-            this.db.init();
-        } catch (com.booking.exception.DatabaseException e) {
-            throw e;
+            feedVersion = ticketRepository.currentVersion();
+            // tickets finished after this point stay in place until this instance has polled past them
+            ticketRepository.acknowledge(instanceId, feedVersion);
+        } catch (DatabaseException e) {
+            System.out.println("Warning: could not read the tickets change version: " + e.getMessage());
         }
-        loadActiveTicketsFromDb();
+        loadActiveTickets();
     }
 
     public Ticket createTicket(User passenger, Train train, Seat seat, String date) {
@@ -45,574 +116,939 @@ public class BookingService {
         if (!InputValidator.isNotPastDate(date)) {
             throw new ValidationException("Travel date cannot be before today.");
         }
+        SeatInventory inventory = inventoryFor(train, date);
+        int seatIdx = train.indexOfSeat(seat.getSeatNumber());
+        if (!inventory.occupy(seatIdx)) {
+            throw new ValidationException("Seat " + seat.getSeatNumber() + " is not available on " + date + ".");
+        }
+        searchCache.invalidate(train, date);
         String pnr = PnrGenerator.generate();
-        String sql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status) VALUES(?,?,?,?,?,?,?)";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, pnr);
-            ps.setString(2, passenger.getUsername());
-            ps.setString(3, train.getTrainNumber());
-            ps.setString(4, seat.getSeatNumber());
-            ps.setString(5, date);
-            ps.setString(6, passenger.getUsername());
-            ps.setString(7, "ACTIVE");
-            ps.executeUpdate();
-
-            Ticket newTicket = new Ticket(pnr, passenger, train, seat, date);
-            this.allTickets.add(newTicket);
-            seat.book();
-
-            String findId = "SELECT id FROM users WHERE username = ?";
-            Integer userId = null;
-            try (Connection conn2 = this.db.getConnection(); PreparedStatement ps2 = conn2.prepareStatement(findId)) {
-                ps2.setString(1, passenger.getUsername());
-                try (ResultSet rs2 = ps2.executeQuery()) {
-                    if (rs2.next()) userId = rs2.getInt("id");
-                }
-            } catch (SQLException | com.booking.exception.DatabaseException e) {
-            }
-
-            String insertHistory = "INSERT INTO user_history(user_id, pnr, username, action, details) VALUES(?,?,?,?,?)";
-            try (Connection conn3 = this.db.getConnection(); PreparedStatement ps3 = conn3.prepareStatement(insertHistory)) {
-                if (userId != null) ps3.setInt(1, userId); else ps3.setNull(1, java.sql.Types.INTEGER);
-                ps3.setString(2, pnr);
-                ps3.setString(3, passenger.getUsername());
-                ps3.setString(4, "BOOK");
-                ps3.setString(5, "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber());
-                ps3.executeUpdate();
-            } catch (SQLException | com.booking.exception.DatabaseException e) {
-                try {
-                    String legacy = "INSERT INTO user_history(username, action, details) VALUES(?,?,?)";
-                    try (Connection c2 = this.db.getConnection(); PreparedStatement ps2 = c2.prepareStatement(legacy)) {
-                        ps2.setString(1, passenger.getUsername());
-                        ps2.setString(2, "BOOK");
-                        ps2.setString(3, "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber());
-                        ps2.executeUpdate();
-                    }
-                } catch (SQLException | com.booking.exception.DatabaseException ex) {
-                }
-            }
-
-            return newTicket;
-        } catch (com.booking.exception.DatabaseException | SQLException e) {
-            System.out.println("Error creating ticket in DB: " + e.getMessage());
+        String username = passenger.getUsername();
+        try {
+            TicketRecord record = new TicketRecord(pnr, username, username, train.getTrainNumber(), seat.getSeatNumber(),
+                    date, -1, -1, TicketRecord.ACTIVE);
+            transactions.inTransaction(() -> {
+                ticketRepository.insert(Collections.singletonList(record), nextTicketVersion());
+                return null;
+            });
+        } catch (DatabaseException e) {
+            inventory.release(seatIdx);
+            searchCache.invalidate(train, date);
+            System.out.println("Error creating ticket: " + e.getMessage());
             return null;
         }
+
+        Ticket newTicket = new Ticket(pnr, passenger, train, seat, date);
+        this.tickets.add(newTicket);
+        seat.book();
+        try {
+            history.record(Collections.singletonList(new HistoryEntry(username, pnr, "BOOK",
+                    "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber())));
+        } catch (DatabaseException e) {
+            // the ticket stands even if its history line is lost
+        }
+        return newTicket;
     }
 
     public List<Ticket> createTickets(User passenger, Train train, int numSeats, String date) {
-        List<Ticket> created = new ArrayList<>();
         if (numSeats <= 0) throw new ValidationException("Number of seats to book must be at least 1.");
+        return createTicketsForUsernames(Collections.nCopies(numSeats, passenger.getUsername()), train, date,
+                passenger.getUsername());
+    }
+
+    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, String date, String bookedBy) {
+        return createTicketsForUsernames(usernames, train, 0, train.getLegCount(), date, bookedBy);
+    }
+
+    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, int fromStop, int toStop,
+                                                  String date, String bookedBy) {
+        return createTicketsForUsernames(usernames, train, fromStop, toStop, date, bookedBy, null);
+    }
 
-        Connection conn = null;
+    /**
+     * Books seats for the given passengers and waits for the tickets; see {@link #createTicketsGrouped}.
+     * When {@code idempotencyKey} is not null, a repeated call with the same key returns the tickets
+     * created by the first successful call instead of booking again. Waits at most the booking time
+     * budget; a booking still being written then may yet commit, which a retry with the same key shows.
+     */
+    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, int fromStop, int toStop,
+                                                  String date, String bookedBy, String idempotencyKey) {
+        CompletableFuture<List<Ticket>> pending = createTicketsGrouped(usernames, train, fromStop, toStop, date, bookedBy,
+                idempotencyKey);
         try {
-            conn = this.db.getConnection();
-            conn.setAutoCommit(false);
-
-            String lockSql = "SELECT seat_number FROM tickets WHERE train_number = ? AND status = 'ACTIVE' FOR UPDATE";
-            List<String> activeSeatNumbers = new ArrayList<>();
-            try (PreparedStatement psLock = conn.prepareStatement(lockSql)) {
-                psLock.setString(1, train.getTrainNumber());
-                try (ResultSet rs = psLock.executeQuery()) {
-                    while (rs.next()) activeSeatNumbers.add(rs.getString("seat_number"));
-                }
-            }
+            return pending.get(admission.getDeadlineMillis(AdmissionController.Kind.BOOKING), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new DatabaseException("Failed to create tickets", e.getCause());
+        } catch (TimeoutException e) {
+            throw new DatabaseException("Timed out waiting for the booking to be written. Please check your tickets before trying again.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for the booking to be written", e);
+        }
+    }
 
-            List<Seat> availableSeats = new ArrayList<>();
-            for (Seat s : train.getSeats()) {
-                if (!activeSeatNumbers.contains(s.getSeatNumber())) availableSeats.add(s);
+    /**
+     * Books seats for the given passengers without waiting. Every new booking takes this path: it is
+     * queued with concurrent bookings for the same train and date and written together with them in one
+     * transaction (see {@link GroupCommitCoordinator}). The future completes with this request's tickets,
+     * or exceptionally with its own rejection, e.g. {@link SeatsUnavailableException}.
+     */
+    public CompletableFuture<List<Ticket>> createTicketsGrouped(List<String> usernames, Train train, int fromStop, int toStop,
+                                                               String date, String bookedBy, String idempotencyKey) {
+        try {
+            if (date == null || !InputValidator.isValidDate(date)) {
+                throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
             }
+            if (usernames == null || usernames.isEmpty()) throw new ValidationException("No usernames provided");
+            validateSegment(train, fromStop, toStop);
+            // the booking holds its admission slot until its batch has been written
+            return admission.admitAsync(AdmissionController.Kind.BOOKING, bookedBy, () -> {
+                List<Ticket> done = bookedEarlier(idempotencyKey);
+                if (done != null) return CompletableFuture.completedFuture(done);
+                List<String> names = new ArrayList<>(usernames);
+                SurgeMode.Surge surge = surgeMode.find(train, date);
+                if (surge == null) {
+                    return groupCommit.submit(train, date,
+                            new GroupCommitCoordinator.Request(names, fromStop, toStop, bookedBy, idempotencyKey));
+                }
+                return surge.book(train, fromStop, toStop, names.size(), () -> groupCommit.submit(train, date,
+                        new GroupCommitCoordinator.Request(names, fromStop, toStop, bookedBy, idempotencyKey)));
+            });
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            if (availableSeats.size() < numSeats) {
-                conn.rollback();
-                throw new ValidationException("Not enough seats available. Requested " + numSeats + ", available " + availableSeats.size());
-            }
+    /** Tickets of an earlier successful booking with this idempotency key; null if there is none or no key. */
+    private List<Ticket> bookedEarlier(String idempotencyKey) {
+        if (idempotencyKey == null) return null;
+        IdempotencyStore.validateKey(idempotencyKey);
+        List<String> done = idempotency.cached(idempotencyKey, OP_BOOK);
+        return done == null ? null : loadTicketsByPnr(done);
+    }
 
-            Integer userId = null;
-            String findId = "SELECT id FROM users WHERE username = ?";
-            try (PreparedStatement psFind = conn.prepareStatement(findId)) {
-                psFind.setString(1, passenger.getUsername());
-                try (ResultSet rs = psFind.executeQuery()) {
-                    if (rs.next()) userId = rs.getInt("id");
-                }
-            } catch (SQLException ignored) {
-            }
+    /** A hold that has not been confirmed, released or expired yet, with its pending expiry. */
+    private static final class ActiveHold {
+        final SeatHold hold;
+        final HashedTimingWheel.Timeout expiry;
 
-            String insertTicketSql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, status) VALUES(?,?,?,?,?,?)";
-            String insertHistorySql = "INSERT INTO user_history(user_id, pnr, action, details) VALUES(?,?,?,?)";
-
-            try (PreparedStatement psTicket = conn.prepareStatement(insertTicketSql);
-                 PreparedStatement psHistory = conn.prepareStatement(insertHistorySql)) {
-
-                for (int i = 0; i < numSeats; i++) {
-                    Seat seatToBook = availableSeats.get(i);
-                    String pnr = PnrGenerator.generate();
-
-                    psTicket.setString(1, pnr);
-                    psTicket.setString(2, passenger.getUsername());
-                    psTicket.setString(3, train.getTrainNumber());
-                    psTicket.setString(4, seatToBook.getSeatNumber());
-                    psTicket.setString(5, date);
-                    psTicket.setString(6, "ACTIVE");
-                    psTicket.executeUpdate();
-
-                    try {
-                        if (userId != null) psHistory.setInt(1, userId); else psHistory.setNull(1, java.sql.Types.INTEGER);
-                        psHistory.setString(2, pnr);
-                        psHistory.setString(3, "BOOK");
-                        psHistory.setString(4, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber());
-                        psHistory.executeUpdate();
-                    } catch (SQLException he) {
-                        try (PreparedStatement psLegacy = conn.prepareStatement("INSERT INTO user_history(username, action, details) VALUES(?,?,?)")) {
-                            psLegacy.setString(1, passenger.getUsername());
-                            psLegacy.setString(2, "BOOK");
-                            psLegacy.setString(3, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber());
-                            psLegacy.executeUpdate();
-                        } catch (SQLException ignored) {
-                        }
-                    }
+        ActiveHold(SeatHold hold, HashedTimingWheel.Timeout expiry) {
+            this.hold = hold;
+            this.expiry = expiry;
+        }
+    }
 
-                    User u = new User(passenger.getUsername(), "", Role.PASSENGER);
-                    Ticket t = new Ticket(pnr, u, train, seatToBook, date);
-                    created.add(t);
-                }
-            }
+    /**
+     * Reserves {@code count} seats in memory for SEAT_HOLD_TTL_SECONDS while the passenger finishes the
+     * booking. Held seats are not offered to anyone else; if the hold is neither confirmed nor released
+     * in time the seats are freed automatically.
+     * @throws SeatsUnavailableException if fewer than {@code count} seats are free
+     */
+    public SeatHold holdSeats(Train train, int count, int fromStop, int toStop, String date, String heldBy) {
+        if (date == null || !InputValidator.isValidDate(date)) {
+            throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
+        }
+        if (count <= 0) throw new ValidationException("Number of seats to hold must be at least 1.");
+        validateSegment(train, fromStop, toStop);
+        return admission.admit(AdmissionController.Kind.BOOKING, heldBy, () -> {
+            SeatInventory inventory = inventoryFor(train, date);
+            long holdId = holdIds.incrementAndGet();
+            int[] seats = inventory.hold(holdId, count, fromStop, toStop);
+            if (seats == null) throw new SeatsUnavailableException(count, inventory.getAvailableCount(fromStop, toStop));
+            searchCache.invalidate(train, date);
+            List<Seat> held = new ArrayList<>(seats.length);
+            for (int seat : seats) held.add(train.getSeats().get(seat));
+            SeatHold hold = new SeatHold(holdId, train, date, fromStop, toStop, heldBy, held,
+                    Instant.now().plusSeconds(holdTtlSeconds));
+            HashedTimingWheel.Timeout expiry = holdTimer.schedule(() -> expireHold(holdId), holdTtlSeconds, TimeUnit.SECONDS);
+            holds.put(holdId, new ActiveHold(hold, expiry));
+            return hold;
+        });
+    }
 
-            conn.commit();
+    private void expireHold(long holdId) {
+        ActiveHold active = holds.remove(holdId);
+        if (active == null) return;
+        inventoryFor(active.hold.getTrain(), active.hold.getTravelDate()).releaseHold(holdId);
+        searchCache.invalidate(active.hold.getTrain(), active.hold.getTravelDate());
+    }
 
-            for (Ticket t : created) {
-                for (Seat s : train.getSeats()) {
-                    if (s.getSeatNumber().equalsIgnoreCase(t.getSeat().getSeatNumber())) {
-                        s.book();
-                        break;
-                    }
-                }
-                this.allTickets.add(t);
-            }
+    /** Gives held seats back before the hold expires. @return false if the hold was no longer active */
+    public boolean releaseHold(SeatHold hold) {
+        ActiveHold active = holds.remove(hold.getHoldId());
+        if (active == null) return false;
+        active.expiry.cancel();
+        inventoryFor(hold.getTrain(), hold.getTravelDate()).releaseHold(hold.getHoldId());
+        searchCache.invalidate(hold.getTrain(), hold.getTravelDate());
+        return true;
+    }
 
-            return created;
-        } catch (SQLException | com.booking.exception.DatabaseException e) {
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-            }
-            throw new com.booking.exception.DatabaseException("Failed to create tickets transactionally", e);
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException ignored) {
-                }
-            }
+    /**
+     * Turns a hold into tickets, one per username, on exactly the held seats. A failed database write
+     * keeps the hold so the call can be retried (with the same idempotency key) until it expires.
+     * @throws ValidationException if the hold has expired or was already used
+     */
+    public List<Ticket> confirmHold(SeatHold hold, List<String> usernames, String idempotencyKey) {
+        if (usernames == null || usernames.size() != hold.getSeatCount()) {
+            throw new ValidationException("Expected " + hold.getSeatCount() + " passenger(s) for this hold.");
         }
+        return admission.admit(AdmissionController.Kind.BOOKING, hold.getHeldBy(), () -> {
+            // a failed attempt puts the hold back, so each attempt checks it out again
+            return retry.execute(OP_BOOK, () -> {
+                List<Ticket> done = bookedEarlier(idempotencyKey);
+                if (done != null) return done;
+                ActiveHold active = holds.remove(hold.getHoldId());
+                if (active == null) throw new ValidationException("Your seat hold has expired. Please start the booking again.");
+                return bookHeldSeats(usernames, idempotencyKey, active);
+            });
+        });
     }
 
-    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, String date, String bookedBy) {
+    /**
+     * Books a checked-out hold's seats inside one transaction; the hold is consumed on success. Held seats
+     * are already reserved in memory, so there is nothing for group commit to allocate.
+     */
+    private List<Ticket> bookHeldSeats(List<String> usernames, String idempotencyKey, ActiveHold active) {
+        Train train = active.hold.getTrain();
+        int fromStop = active.hold.getOriginIndex();
+        int toStop = active.hold.getDestinationIndex();
+        String date = active.hold.getTravelDate();
+        String bookedBy = active.hold.getHeldBy();
         if (usernames == null || usernames.isEmpty()) throw new ValidationException("No usernames provided");
+        validateSegment(train, fromStop, toStop);
         int numSeats = usernames.size();
-        List<Ticket> created = new ArrayList<>();
+        SeatInventory inventory = inventoryFor(train, date);
 
-        Connection conn = null;
+        List<Ticket> created;
         try {
-            conn = this.db.getConnection();
-            conn.setAutoCommit(false);
-
-            String lockSql = "SELECT seat_number FROM tickets WHERE train_number = ? AND status = 'ACTIVE' FOR UPDATE";
-            List<String> activeSeatNumbers = new ArrayList<>();
-            try (PreparedStatement psLock = conn.prepareStatement(lockSql)) {
-                psLock.setString(1, train.getTrainNumber());
-                try (ResultSet rs = psLock.executeQuery()) {
-                    while (rs.next()) activeSeatNumbers.add(rs.getString("seat_number"));
-                }
-            }
+            created = transactions.inTransaction(() -> {
+                transactions.onRollback(() -> restoreHold(active, inventory));
+                if (idempotencyKey != null && !idempotency.claim(idempotencyKey, OP_BOOK)) return null;
+
+                List<SeatInventory.Occupancy> activeSeats = lockOccupancy(train, date);
+                inventory.syncWith(activeSeats);
+                int[] chosen = inventory.heldSeats(active.hold.getHoldId(), activeSeats);
+                if (chosen == null) throw new SeatsUnavailableException(numSeats, inventory.getAvailableCount(fromStop, toStop));
+
+                List<TicketRecord> records = new ArrayList<>(numSeats);
+                List<HistoryEntry> entries = new ArrayList<>(numSeats);
+                List<Ticket> booked = newTickets(usernames, train, chosen, fromStop, toStop, date, bookedBy, records, entries);
+                ticketRepository.insert(records, nextTicketVersion());
+                history.record(entries);
+
+                if (idempotencyKey != null) idempotency.complete(idempotencyKey, pnrsOf(booked));
+                return booked;
+            });
+        } catch (SeatsUnavailableException e) {
+            // the held seats were taken by another instance, so the hold cannot be honoured any more
+            releaseHold(active.hold);
+            throw e;
+        } catch (DatabaseException e) {
+            throw new DatabaseException("Failed to create tickets transactionally", e);
+        }
 
-            List<Seat> availableSeats = new ArrayList<>();
-            for (Seat s : train.getSeats()) {
-                if (!activeSeatNumbers.contains(s.getSeatNumber())) availableSeats.add(s);
-            }
+        if (created == null) {
+            active.expiry.cancel();
+            inventory.releaseHold(active.hold.getHoldId());
+            searchCache.invalidate(train, date);
+            return loadTicketsByPnr(idempotency.load(idempotencyKey, OP_BOOK));
+        }
+        if (idempotencyKey != null) idempotency.remember(idempotencyKey, OP_BOOK, pnrsOf(created));
+        active.expiry.cancel();
+        inventory.convertHold(active.hold.getHoldId());
+        for (Ticket t : created) {
+            t.getSeat().book();
+            this.tickets.add(t);
+        }
+        searchCache.invalidate(train, date);
+        return created;
+    }
+
+    /** Puts a hold checked out by a failed confirmation back, unless it expired in the meantime. */
+    private void restoreHold(ActiveHold active, SeatInventory inventory) {
+        long holdId = active.hold.getHoldId();
+        holds.put(holdId, active);
+        // the expiry may have fired while the hold was checked out
+        if (active.expiry.isExpired() && holds.remove(holdId, active)) inventory.releaseHold(holdId);
+        searchCache.invalidate(active.hold.getTrain(), active.hold.getTravelDate());
+    }
 
-            if (availableSeats.size() < numSeats) {
-                conn.rollback();
-                throw new ValidationException("Not enough seats available. Requested " + numSeats + ", available " + availableSeats.size());
+    /** The ACTIVE tickets of a run as seat occupancy, locked until the current transaction ends. */
+    private List<SeatInventory.Occupancy> lockOccupancy(Train train, String date) {
+        List<SeatInventory.Occupancy> occupied = new ArrayList<>();
+        for (TicketRecord r : ticketRepository.lockActive(train.getTrainNumber(), date)) {
+            int idx = train.indexOfSeat(r.getSeatNumber());
+            if (idx >= 0) {
+                occupied.add(new SeatInventory.Occupancy(idx, r.getFromIdx() < 0 ? 0 : r.getFromIdx(),
+                        r.getToIdx() < 0 ? train.getLegCount() : r.getToIdx()));
             }
+        }
+        return occupied;
+    }
 
-          String insertTicketSql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status) VALUES(?,?,?,?,?,?,?)";
-            String insertHistorySql = "INSERT INTO user_history(user_id, pnr, action, details) VALUES(?,?,?,?)";
-
-          try (PreparedStatement psTicket = conn.prepareStatement(insertTicketSql);
-              PreparedStatement psHistory = conn.prepareStatement(insertHistorySql);
-              PreparedStatement psFind = conn.prepareStatement("SELECT id FROM users WHERE username = ?")) {
-
-                for (int i = 0; i < numSeats; i++) {
-                    String username = usernames.get(i);
-                    if (username == null || username.isBlank()) username = "";
-                    String pnr = PnrGenerator.generate();
-                    Seat seatToBook = availableSeats.get(i);
-
-                    psTicket.setString(1, pnr);
-                    psTicket.setString(2, username);
-                    psTicket.setString(3, train.getTrainNumber());
-                    psTicket.setString(4, seatToBook.getSeatNumber());
-                    psTicket.setString(5, date);
-                    psTicket.setString(6, bookedBy);
-                    psTicket.setString(7, "ACTIVE");
-                    psTicket.executeUpdate();
-
-                    Integer userId = null;
-                    try {
-                        psFind.setString(1, username);
-                        try (ResultSet rs = psFind.executeQuery()) {
-                            if (rs.next()) userId = rs.getInt("id");
-                        }
-                    } catch (SQLException ignored) {
-                    }
+    /** Tickets on the chosen seats, one per username; their records and history lines are added to the lists. */
+    private List<Ticket> newTickets(List<String> usernames, Train train, int[] chosen, int fromStop, int toStop, String date,
+                                    String bookedBy, List<TicketRecord> records, List<HistoryEntry> entries) {
+        List<Ticket> booked = new ArrayList<>(usernames.size());
+        for (int i = 0; i < usernames.size(); i++) {
+            String username = usernames.get(i);
+            if (username == null || username.isBlank()) username = "";
+            String pnr = PnrGenerator.generate();
+            Seat seatToBook = train.getSeats().get(chosen[i]);
+            records.add(new TicketRecord(pnr, username, bookedBy, train.getTrainNumber(), seatToBook.getSeatNumber(),
+                    date, fromStop, toStop, TicketRecord.ACTIVE));
+            entries.add(new HistoryEntry(username, pnr, "BOOK",
+                    "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + username));
+            booked.add(new Ticket(pnr, tickets.passenger(username), train, seatToBook, date, fromStop, toStop));
+        }
+        return booked;
+    }
 
-                    try {
-                        if (userId != null) psHistory.setInt(1, userId); else psHistory.setNull(1, java.sql.Types.INTEGER);
-                        psHistory.setString(2, pnr);
-                        psHistory.setString(3, "BOOK");
-                        psHistory.setString(4, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + username);
-                        psHistory.executeUpdate();
-                    } catch (SQLException he) {
-                        try (PreparedStatement psLegacy = conn.prepareStatement("INSERT INTO user_history(username, action, details) VALUES(?,?,?)")) {
-                            psLegacy.setString(1, username);
-                            psLegacy.setString(2, "BOOK");
-                            psLegacy.setString(3, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + username);
-                            psLegacy.executeUpdate();
-                        } catch (SQLException ignored) {
-                        }
+    /** What one request of a group-commit batch came to inside the transaction. */
+    private static final class BatchOutcome {
+        List<Ticket> tickets;
+        RuntimeException rejection;
+        // the key belongs to a request that committed earlier; answer with its tickets
+        boolean alreadyClaimed;
+    }
+
+    /**
+     * Writes one group-commit batch: seats for every request are allocated in memory against the locked
+     * run, and all tickets are stored in a single transaction. A request that cannot get its seats is
+     * rejected on its own; a failed transaction fails the whole batch. Requests whose caller has already
+     * given up (cancelled or timed out) are skipped.
+     */
+    private void writeBatch(Train train, String date, List<GroupCommitCoordinator.Request> queued) {
+        List<GroupCommitCoordinator.Request> batch = new ArrayList<>(queued.size());
+        for (GroupCommitCoordinator.Request r : queued) {
+            if (!r.result.isDone()) batch.add(r);
+        }
+        if (batch.isEmpty()) return;
+        SeatInventory inventory = inventoryFor(train, date);
+
+        List<BatchOutcome> outcomes;
+        try {
+            outcomes = retry.execute(OP_BOOK, () -> transactions.inTransaction(() -> {
+                transactions.onRollback(() -> searchCache.invalidate(train, date));
+                inventory.syncWith(lockOccupancy(train, date));
+                List<BatchOutcome> result = new ArrayList<>(batch.size());
+                List<TicketRecord> records = new ArrayList<>();
+                List<HistoryEntry> entries = new ArrayList<>();
+                for (GroupCommitCoordinator.Request r : batch) {
+                    BatchOutcome outcome = new BatchOutcome();
+                    result.add(outcome);
+                    int[] chosen = inventory.allocate(r.usernames.size(), r.fromStop, r.toStop);
+                    if (chosen == null) {
+                        outcome.rejection = new SeatsUnavailableException(r.usernames.size(),
+                                inventory.getAvailableCount(r.fromStop, r.toStop));
+                        continue;
                     }
+                    // claimed only once seats are found, so a rejected request leaves no claim behind
+                    if (r.idempotencyKey != null && !idempotency.claim(r.idempotencyKey, OP_BOOK)) {
+                        for (int seat : chosen) inventory.release(seat, r.fromStop, r.toStop);
+                        outcome.alreadyClaimed = true;
+                        continue;
+                    }
+                    transactions.onRollback(() -> {
+                        for (int seat : chosen) inventory.release(seat, r.fromStop, r.toStop);
+                    });
+                    outcome.tickets = newTickets(r.usernames, train, chosen, r.fromStop, r.toStop, date, r.bookedBy,
+                            records, entries);
+                }
+                if (!records.isEmpty()) {
+                    ticketRepository.insert(records, nextTicketVersion());
+                    history.record(entries);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    String key = batch.get(i).idempotencyKey;
+                    if (key != null && result.get(i).tickets != null) idempotency.complete(key, pnrsOf(result.get(i).tickets));
+                }
+                return result;
+            }));
+        } catch (DatabaseException e) {
+            throw new DatabaseException("Failed to create tickets transactionally", e);
+        }
 
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket t = new Ticket(pnr, u, train, seatToBook, date);
-                    created.add(t);
+        for (int i = 0; i < batch.size(); i++) {
+            GroupCommitCoordinator.Request r = batch.get(i);
+            BatchOutcome outcome = outcomes.get(i);
+            if (outcome.rejection != null) {
+                r.result.completeExceptionally(outcome.rejection);
+            } else if (outcome.alreadyClaimed) {
+                try {
+                    r.result.complete(loadTicketsByPnr(idempotency.load(r.idempotencyKey, OP_BOOK)));
+                } catch (RuntimeException e) {
+                    r.result.completeExceptionally(e);
                 }
+            } else {
+                if (r.idempotencyKey != null) idempotency.remember(r.idempotencyKey, OP_BOOK, pnrsOf(outcome.tickets));
+                for (Ticket t : outcome.tickets) {
+                    t.getSeat().book();
+                    this.tickets.add(t);
+                }
+                r.result.complete(outcome.tickets);
             }
+        }
+        searchCache.invalidate(train, date);
+    }
 
-            conn.commit();
+    private static List<String> pnrsOf(List<Ticket> tickets) {
+        List<String> pnrs = new ArrayList<>(tickets.size());
+        for (Ticket t : tickets) pnrs.add(t.getPnrNumber());
+        return pnrs;
+    }
 
-            for (Ticket t : created) {
-                for (Seat s : train.getSeats()) {
-                    if (s.getSeatNumber().equalsIgnoreCase(t.getSeat().getSeatNumber())) {
-                        s.book();
-                        break;
-                    }
-                }
-                this.allTickets.add(t);
+    private static String inventoryKey(Train train, String date) {
+        return train.getTrainNumber().toUpperCase() + "|" + date;
+    }
+
+    SeatInventory inventoryFor(Train train, String date) {
+        return inventoryStore.get(train, date);
+    }
+
+    public int getAvailableSeatCount(Train train, String date) {
+        return inventoryFor(train, date).getAvailableCount();
+    }
+
+    public int getAvailableSeatCount(Train train, String date, int fromStop, int toStop) {
+        return inventoryFor(train, date).getAvailableCount(fromStop, toStop);
+    }
+
+    /**
+     * Direct trains between two stations together with the number of seats free on that stretch of
+     * each train's route for the given date.
+     */
+    public Map<Train, Integer> searchTrainsWithAvailability(String startStation, String endStation, String date) {
+        if (startStation == null || endStation == null) return Collections.emptyMap();
+        return searchCache.get(startStation, endStation, date, () -> admission.admit(AdmissionController.Kind.READ,
+                null, () -> searchWithAvailability(startStation, endStation, date)));
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public TransactionRetry getTransactionRetry() {
+        return retry;
+    }
+
+    public GroupCommitCoordinator getGroupCommit() {
+        return groupCommit;
+    }
+
+    public SurgeMode getSurgeMode() {
+        return surgeMode;
+    }
+
+    /**
+     * Gets a run ready for a rush of bookings: creates its seat inventory and reconciles it with the
+     * stored tickets, which also checks that storage answers.
+     */
+    void prewarm(Train train, String date) {
+        SeatInventory inventory = inventoryFor(train, date);
+        transactions.inTransaction(() -> {
+            inventory.syncWith(lockOccupancy(train, date));
+            return null;
+        });
+        searchCache.invalidate(train, date);
+    }
+
+    private Map<Train, Integer> searchWithAvailability(String startStation, String endStation, String date) {
+        Map<Train, Integer> result = new LinkedHashMap<>();
+        for (Train train : trainService.searchTrains(startStation, endStation)) {
+            int from = train.indexOfStop(startStation);
+            int to = train.indexOfStop(endStation);
+            result.put(train, getAvailableSeatCount(train, date, from, to));
+        }
+        return result;
+    }
+
+    public Map<LocalDate, Integer> getAvailabilityCalendar(Train train, int fromStop, int toStop, LocalDate startDate, int days) {
+        validateSegment(train, fromStop, toStop);
+        Map<Train, int[]> segments = new LinkedHashMap<>();
+        segments.put(train, new int[] {fromStop, toStop});
+        return admission.admit(AdmissionController.Kind.READ, null,
+                () -> loadAvailabilityCalendar(segments, startDate, days)).get(train);
+    }
+
+    /**
+     * Available-seat counts for every direct train between two stations over {@code days} consecutive
+     * dates starting at {@code startDate}, computed with one grouped lookup.
+     */
+    public Map<Train, Map<LocalDate, Integer>> getAvailabilityCalendar(String startStation, String endStation,
+                                                                      LocalDate startDate, int days) {
+        Map<Train, int[]> segments = new LinkedHashMap<>();
+        for (Train train : trainService.searchTrains(startStation, endStation)) {
+            segments.put(train, new int[] {train.indexOfStop(startStation), train.indexOfStop(endStation)});
+        }
+        return admission.admit(AdmissionController.Kind.READ, null,
+                () -> loadAvailabilityCalendar(segments, startDate, days));
+    }
+
+    private Map<Train, Map<LocalDate, Integer>> loadAvailabilityCalendar(Map<Train, int[]> segments, LocalDate startDate, int days) {
+        if (days <= 0) throw new ValidationException("Number of days must be at least 1.");
+        LocalDate endDate = startDate.plusDays(days - 1L);
+        Map<Train, Map<LocalDate, Integer>> calendar = new LinkedHashMap<>();
+        for (Train train : segments.keySet()) {
+            Map<LocalDate, Integer> perDate = new LinkedHashMap<>();
+            for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
+                perDate.put(d, train.getSeats().size());
             }
+            calendar.put(train, perDate);
+        }
+        if (segments.isEmpty()) return calendar;
 
-            return created;
-        } catch (SQLException | com.booking.exception.DatabaseException e) {
-            try { if (conn != null) conn.rollback(); } catch (SQLException ex) { }
-            throw new com.booking.exception.DatabaseException("Failed to create tickets transactionally", e);
-        } finally {
-            if (conn != null) {
-                try { conn.setAutoCommit(true); conn.close(); } catch (SQLException ignored) { }
+        try {
+            for (Map.Entry<Train, Map<LocalDate, Integer>> e : ticketRepository.countTakenSeats(segments, startDate, endDate).entrySet()) {
+                Map<LocalDate, Integer> perDate = calendar.get(e.getKey());
+                if (perDate == null) continue;
+                e.getValue().forEach((d, taken) -> perDate.computeIfPresent(d, (k, total) -> Math.max(0, total - taken)));
             }
+        } catch (DatabaseException e) {
+            System.out.println("Error loading availability calendar: " + e.getMessage());
+        }
+        return calendar;
+    }
+
+    private static void validateSegment(Train train, int fromStop, int toStop) {
+        if (fromStop < 0 || toStop > train.getLegCount() || fromStop >= toStop) {
+            throw new ValidationException("Invalid journey on train " + train.getTrainNumber() + ": stops " + fromStop + " to " + toStop);
         }
     }
-public List<Ticket> findTicketsByPassenger(User passenger) {
-    List<Ticket> passengerTickets = new ArrayList<>();
-    String sqlBookedBy = "SELECT pnr, train_number, seat_number, travel_date, username, status FROM tickets WHERE booked_by = ? AND status = 'ACTIVE'";
 
-    try (Connection c = this.db.getConnection()) {
-        boolean usedBookedBy = true;
-        PreparedStatement ps;
+    public List<Ticket> findTicketsByPassenger(User passenger) {
+        return admission.admit(AdmissionController.Kind.READ, passenger.getUsername(),
+                () -> queryTicketsByPassenger(passenger));
+    }
+
+    private List<Ticket> queryTicketsByPassenger(User passenger) {
         try {
-            ps = c.prepareStatement(sqlBookedBy);
-            ps.setString(1, passenger.getUsername());
-        } catch (SQLException se) {
-            usedBookedBy = false;
-            String sql = "SELECT pnr, train_number, seat_number, travel_date, status FROM tickets WHERE username = ? AND status = 'ACTIVE'";
-            ps = c.prepareStatement(sql);
-            ps.setString(1, passenger.getUsername());
-        }
-
-        try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-                String username = usedBookedBy ? rs.getString("username") : passenger.getUsername();
-                String status = rs.getString("status");
-
-                LocalDate travel = null;
-                if (travelDate != null && travelDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    try {
-                        travel = LocalDate.parse(travelDate, DateTimeFormatter.ISO_LOCAL_DATE);
-                    } catch (DateTimeParseException ex) {
-                        System.out.println("[WARN] Skipping malformed date for ticket " + pnr + ": " + travelDate);
-                        continue;
-                    }
-                } else {
-                    System.out.println("[WARN] Ignoring invalid travel_date for ticket " + pnr + ": " + travelDate);
-                    continue;
-                }
+            return hydrateAll(ticketRepository.findUpcoming(passenger.getUsername(), LocalDate.now()), "active ticket");
+        } catch (DatabaseException e) {
+            System.out.println("Error loading active tickets: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-                if (travel.isBefore(LocalDate.now())) {
-                    continue;
-                }
+    public Ticket findTicketByPnr(String pnr) {
+        return pnr == null ? null : tickets.get(pnr);
+    }
 
-                Train foundTrain = null;
-                Seat foundSeat = null;
-                for (Train t : trainService.getAllTrains()) {
-                    if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                        foundTrain = t;
-                        for (Seat s : t.getSeats()) {
-                            if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                foundSeat = s;
-                                break;
-                            }
-                        }
-                        break;
-                    }
-                }
+    public boolean cancelTicket(Ticket ticket) {
+        try {
+            return !cancelTickets(Collections.singletonList(ticket.getPnrNumber())).isEmpty();
+        } catch (DatabaseException e) {
+            System.out.println("Error cancelling ticket in DB: " + e.getMessage());
+            return false;
+        }
+    }
 
-                if (foundTrain != null && foundSeat != null && "ACTIVE".equalsIgnoreCase(status)) {
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                    passengerTickets.add(tkt);
-                } else {
-                    System.out.println("Warning: Could not resolve train/seat for active ticket " + pnr);
-                }
-            }
+    /**
+     * Cancels every ACTIVE ticket among the given PNRs in one transaction and hands freed seats to
+     * waitlisted passengers. Unknown or already cancelled PNRs are ignored.
+     * @return the tickets that were cancelled
+     */
+    public List<Ticket> cancelTickets(Collection<String> pnrs) {
+        return cancelTickets(pnrs, null);
+    }
+
+    /**
+     * Like {@link #cancelTickets(Collection)}; a repeated call with the same non-null idempotency key
+     * returns the tickets cancelled by the first call without touching the database again.
+     */
+    public List<Ticket> cancelTickets(Collection<String> pnrs, String idempotencyKey) {
+        if (pnrs == null || pnrs.isEmpty()) return Collections.emptyList();
+        return admission.admit(AdmissionController.Kind.BOOKING, null, () -> cancelByPnr(pnrs, idempotencyKey));
+    }
+
+    private List<Ticket> cancelByPnr(Collection<String> pnrs, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            IdempotencyStore.validateKey(idempotencyKey);
+            List<String> done = idempotency.cached(idempotencyKey, OP_CANCEL);
+            if (done != null) return loadTicketsByPnr(done);
         }
-    } catch (SQLException | com.booking.exception.DatabaseException e) {
-        System.out.println("Error loading active tickets from DB: " + e.getMessage());
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(pnrs));
+        return retry.execute(OP_CANCEL, () -> runCancellation(() -> hydrateAll(ticketRepository.lockActive(unique), "ticket"),
+                true, idempotencyKey));
     }
 
-    return passengerTickets;
-}
+    /**
+     * Cancels all bookings for a train on one date, e.g. when the run is withdrawn. Waiting passengers
+     * for that date are taken off the waitlist instead of being promoted.
+     * @return number of tickets cancelled
+     */
+    public int cancelAllBookings(Train train, String date) {
+        if (date == null || !InputValidator.isValidDate(date)) {
+            throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
+        }
+        List<Ticket> cancelled = retry.execute(OP_CANCEL, () -> runCancellation(() -> {
+            waitlistService.closeAll(train, date);
+            return hydrateAll(ticketRepository.lockActive(train.getTrainNumber(), date), "ticket");
+        }, false, null));
+        waitlistService.onClosed(train, date);
+        return cancelled.size();
+    }
+
+    /** Tickets (any status) for the given PNRs, in the given order. */
+    private List<Ticket> loadTicketsByPnr(List<String> pnrs) {
+        List<Ticket> result = new ArrayList<>();
+        if (pnrs == null || pnrs.isEmpty()) return result;
+        Map<String, Ticket> byPnr = new HashMap<>();
+        for (Ticket t : hydrateAll(ticketRepository.findByPnrs(pnrs), "ticket")) byPnr.put(t.getPnrNumber().toUpperCase(), t);
+        for (String pnr : pnrs) {
+            Ticket t = byPnr.get(pnr.toUpperCase());
+            if (t != null) result.add(t);
+        }
+        return result;
+    }
 
+    /**
+     * Waitlist fit for the seats released by one cancellation. A journey fits a released ticket's seat if
+     * the seat is free on it once that ticket is gone, and it does not overlap a journey already promoted
+     * onto the same seat in this pass; the inventory only learns about those after the commit.
+     */
+    private static final class ReleasedSeats implements WaitlistService.SeatFit {
+        private final Train train;
+        private final SeatInventory inventory;
+        private final List<Ticket> released;
+        private final Map<Integer, List<int[]>> pickedBySeat = new HashMap<>();
+
+        ReleasedSeats(Train train, SeatInventory inventory, List<Ticket> released) {
+            this.train = train;
+            this.inventory = inventory;
+            this.released = released;
+        }
 
-    public Ticket findTicketByPnr(String pnr) {
-        for (Ticket ticket : allTickets) {
-            if (ticket.getPnrNumber().equalsIgnoreCase(pnr)) {
-                return ticket;
+        private int seatOf(int releasedIndex) {
+            return train.indexOfSeat(released.get(releasedIndex).getSeat().getSeatNumber());
+        }
+
+        @Override
+        public boolean fits(int releasedIndex, int fromStop, int toStop) {
+            Ticket r = released.get(releasedIndex);
+            int seat = seatOf(releasedIndex);
+            for (int[] p : pickedBySeat.getOrDefault(seat, Collections.emptyList())) {
+                if (fromStop < p[1] && p[0] < toStop) return false;
             }
+            return inventory.isFreeAfterRelease(seat, fromStop, toStop, r.getOriginIndex(), r.getDestinationIndex());
+        }
+
+        @Override
+        public void picked(int releasedIndex, int fromStop, int toStop) {
+            pickedBySeat.computeIfAbsent(seatOf(releasedIndex), k -> new ArrayList<>()).add(new int[]{fromStop, toStop});
         }
-        return null;
     }
 
-    public boolean cancelTicket(Ticket ticket) {
-        String sql = "UPDATE tickets SET status = 'CANCELLED' WHERE pnr = ?";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, ticket.getPnrNumber());
-            int updated = ps.executeUpdate();
-            if (updated > 0) {
-                try {
-                    ticket.getSeat().unbook();
-                } catch (Exception ignore) {
+    private List<Ticket> runCancellation(Supplier<List<Ticket>> locker, boolean promoteWaitlist, String idempotencyKey) {
+        Map<String, List<Ticket>> byRun = new LinkedHashMap<>();
+        List<Ticket> promotedTickets = new ArrayList<>();
+        List<WaitlistEntry> promotedEntries = new ArrayList<>();
+
+        List<Ticket> cancelled;
+        try {
+            cancelled = transactions.inTransaction(() -> {
+                if (idempotencyKey != null && !idempotency.claim(idempotencyKey, OP_CANCEL)) return null;
+
+                List<Ticket> locked = locker.get();
+                if (locked.isEmpty()) {
+                    if (idempotencyKey != null) idempotency.complete(idempotencyKey, Collections.emptyList());
+                    return locked;
                 }
-                try {
-                    this.allTickets.remove(ticket);
-                } catch (Exception ignore) {
+
+                List<HistoryEntry> entries = new ArrayList<>();
+                for (Ticket t : locked) {
+                    entries.add(new HistoryEntry(t.getPassenger().getUsername(), t.getPnrNumber(), "CANCEL", "Cancelled ticket PNR " + t.getPnrNumber()));
+                    byRun.computeIfAbsent(inventoryKey(t.getTrain(), t.getTravelDate()), k -> new ArrayList<>()).add(t);
                 }
-                String findId = "SELECT id FROM users WHERE username = ?";
-                Integer userId = null;
-                try (Connection conn2 = this.db.getConnection(); PreparedStatement ps2 = conn2.prepareStatement(findId)) {
-                    ps2.setString(1, ticket.getPassenger().getUsername());
-                    try (ResultSet rs2 = ps2.executeQuery()) {
-                        if (rs2.next()) userId = rs2.getInt("id");
+
+                List<TicketRecord> promotedRecords = new ArrayList<>();
+                List<String> promotedPnrs = new ArrayList<>();
+                if (promoteWaitlist) {
+                    for (List<Ticket> released : byRun.values()) {
+                        Train train = released.get(0).getTrain();
+                        String date = released.get(0).getTravelDate();
+                        SeatInventory inventory = inventoryFor(train, date);
+                        List<WaitlistEntry> picks = waitlistService.selectForRelease(train, date, released.size(),
+                                new ReleasedSeats(train, inventory, released));
+                        for (int i = 0; i < picks.size(); i++) {
+                            WaitlistEntry e = picks.get(i);
+                            if (e == null) continue;
+                            Seat seat = released.get(i).getSeat();
+                            String pnr = PnrGenerator.generate();
+                            promotedEntries.add(e);
+                            promotedPnrs.add(pnr);
+                            promotedRecords.add(new TicketRecord(pnr, e.getUsername(), e.getBookedBy(), train.getTrainNumber(),
+                                    seat.getSeatNumber(), date, e.getOriginIndex(), e.getDestinationIndex(), TicketRecord.ACTIVE));
+                            promotedTickets.add(new Ticket(pnr, tickets.passenger(e.getUsername()), train, seat, date,
+                                    e.getOriginIndex(), e.getDestinationIndex()));
+                            entries.add(new HistoryEntry(e.getUsername(), pnr, "PROMOTE",
+                                    "Promoted from waitlist to seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber()));
+                        }
                     }
-                } catch (SQLException | com.booking.exception.DatabaseException e) {
                 }
 
-                String insertHistory = "INSERT INTO user_history(user_id, pnr, username, action, details) VALUES(?,?,?,?,?)";
-                try (Connection conn3 = this.db.getConnection(); PreparedStatement ps3 = conn3.prepareStatement(insertHistory)) {
-                    if (userId != null) ps3.setInt(1, userId); else ps3.setNull(1, java.sql.Types.INTEGER);
-                    ps3.setString(2, ticket.getPnrNumber());
-                    ps3.setString(3, ticket.getPassenger().getUsername());
-                    ps3.setString(4, "CANCEL");
-                    ps3.setString(5, "Cancelled ticket PNR " + ticket.getPnrNumber());
-                    ps3.executeUpdate();
-                } catch (SQLException | com.booking.exception.DatabaseException e) {
+                long version = nextTicketVersion();
+                List<String> lockedPnrs = pnrsOf(locked);
+                ticketRepository.markCancelled(lockedPnrs, version);
+                if (!promotedRecords.isEmpty()) {
+                    ticketRepository.insert(promotedRecords, version);
+                    waitlistService.markPromoted(promotedEntries, promotedPnrs);
                 }
+                history.record(entries);
+                if (idempotencyKey != null) idempotency.complete(idempotencyKey, lockedPnrs);
+                return locked;
+            });
+        } catch (DatabaseException e) {
+            throw new DatabaseException("Failed to cancel tickets transactionally", e);
+        }
 
-                return true;
-            } else {
-                return false;
+        if (cancelled == null) return loadTicketsByPnr(idempotency.load(idempotencyKey, OP_CANCEL));
+        if (idempotencyKey != null) idempotency.remember(idempotencyKey, OP_CANCEL, pnrsOf(cancelled));
+        if (cancelled.isEmpty()) return cancelled;
+
+        Set<String> cancelledPnrs = new HashSet<>();
+        for (Ticket t : cancelled) cancelledPnrs.add(t.getPnrNumber().toUpperCase());
+        this.tickets.removeAll(cancelledPnrs);
+        this.tickets.addAll(promotedTickets);
+
+        Map<String, List<SeatInventory.Occupancy>> occupiedByRun = new HashMap<>();
+        Set<Seat> reassigned = new HashSet<>();
+        for (Ticket t : promotedTickets) {
+            occupiedByRun.computeIfAbsent(inventoryKey(t.getTrain(), t.getTravelDate()), k -> new ArrayList<>()).add(occupancyOf(t));
+            reassigned.add(t.getSeat());
+        }
+        for (Map.Entry<String, List<Ticket>> run : byRun.entrySet()) {
+            Ticket first = run.getValue().get(0);
+            List<SeatInventory.Occupancy> released = new ArrayList<>();
+            for (Ticket t : run.getValue()) {
+                released.add(occupancyOf(t));
+                if (!reassigned.contains(t.getSeat())) t.getSeat().unbook();
             }
-        } catch (com.booking.exception.DatabaseException | SQLException e) {
-            System.out.println("Error cancelling ticket in DB: " + e.getMessage());
-            return false;
+            inventoryFor(first.getTrain(), first.getTravelDate())
+                    .apply(released, occupiedByRun.getOrDefault(run.getKey(), Collections.emptyList()));
+            searchCache.invalidate(first.getTrain(), first.getTravelDate());
+        }
+        for (int i = 0; i < promotedEntries.size(); i++) {
+            waitlistService.onPromoted(promotedEntries.get(i));
+            Ticket t = promotedTickets.get(i);
+            System.out.println("Seat " + t.getSeat().getSeatNumber() + " reassigned to waitlisted passenger "
+                    + t.getPassenger().getUsername() + " (PNR " + t.getPnrNumber() + ").");
         }
+        return cancelled;
+    }
+
+    private static SeatInventory.Occupancy occupancyOf(Ticket t) {
+        return new SeatInventory.Occupancy(t.getTrain().indexOfSeat(t.getSeat().getSeatNumber()),
+                t.getOriginIndex(), t.getDestinationIndex());
+    }
+
+    public List<WaitlistEntry> joinWaitlist(List<String> usernames, Train train, String date, String bookedBy) {
+        return joinWaitlist(usernames, train, 0, train.getLegCount(), date, bookedBy);
+    }
+
+    public List<WaitlistEntry> joinWaitlist(List<String> usernames, Train train, int fromStop, int toStop,
+                                            String date, String bookedBy) {
+        if (date == null || !InputValidator.isValidDate(date)) {
+            throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
+        }
+        validateSegment(train, fromStop, toStop);
+        return waitlistService.join(usernames, train, fromStop, toStop, date, bookedBy);
+    }
+
+    public boolean leaveWaitlist(WaitlistEntry entry) {
+        return waitlistService.leave(entry);
+    }
+
+    public int getWaitlistPosition(WaitlistEntry entry) {
+        return waitlistService.getPosition(entry);
+    }
+
+    public List<WaitlistEntry> findWaitlistByPassenger(User passenger) {
+        return waitlistService.findByPassenger(passenger);
+    }
+
+    /**
+     * Streams tickets (any status) joined with their trains to a CSV or NDJSON file; see {@link TicketExporter}.
+     * @return number of tickets written
+     */
+    public long exportTickets(Path file, TicketExporter.Format format, boolean gzip, String fromDate, String toDate,
+                              String trainNumber) {
+        return new TicketExporter(ticketRepository, trainService).export(file, format, gzip, fromDate, toDate, trainNumber);
     }
 
     public List<Ticket> getAllTickets() {
-        return this.allTickets;
-    }
-
-    private void loadActiveTicketsFromDb() {
-        String sql = "SELECT pnr, username, train_number, seat_number, travel_date FROM tickets WHERE status = 'ACTIVE'";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String username = rs.getString("username");
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-
-                Train foundTrain = null;
-                Seat foundSeat = null;
-                for (Train t : trainService.getAllTrains()) {
-                    if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                        foundTrain = t;
-                        for (Seat s : t.getSeats()) {
-                            if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                foundSeat = s;
-                                break;
-                            }
-                        }
-                        break;
-                    }
-                }
+        return Collections.unmodifiableList(tickets.snapshot());
+    }
+
+    /**
+     * Drops in-memory state for travel dates before {@code today}: seat inventories, cached tickets and
+     * holds. Waiting passengers for those dates are taken off the waitlist.
+     * @return number of waitlist entries expired
+     */
+    int onDayRollover(String today) {
+        long epochDay = InventoryStore.epochDay(today);
+        inventoryStore.releaseBefore(epochDay);
+        tickets.removeBefore(epochDay);
+        groupCommit.dropBefore(today);
+        for (ActiveHold active : new ArrayList<>(holds.values())) {
+            if (active.hold.getTravelDate().compareTo(today) < 0) releaseHold(active.hold);
+        }
+        return waitlistService.expireBefore(today);
+    }
+
+    /**
+     * Takes the next tickets change version inside the current transaction. The version is remembered
+     * so the change feed skips rows this instance has already applied itself.
+     */
+    private long nextTicketVersion() {
+        long version = ticketRepository.nextVersion();
+        localVersions.add(version);
+        return version;
+    }
 
-                if (foundTrain != null && foundSeat != null) {
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                    this.allTickets.add(tkt);
-                    foundSeat.book();
-                } else {
-                    System.out.println("Warning: Could not resolve train/seat for ticket " + pnr);
+    /**
+     * Applies tickets stamped after the feed watermark by other application instances: new ACTIVE
+     * tickets are added to the ticket list and seat inventories, tickets that are no longer ACTIVE are
+     * dropped from them. Tickets are read in (change_version, pnr) order, {@code batchSize} at a time.
+     * @return number of tickets added or removed
+     */
+    synchronized int pollChanges(int batchSize) {
+        String today = LocalDate.now().toString();
+        int applied = 0;
+        List<TicketRecord> changed;
+        do {
+            changed = ticketRepository.findChangedSince(feedVersion, feedPnr, batchSize);
+            List<Ticket> active = new ArrayList<>();
+            Set<String> inactive = new HashSet<>();
+            for (TicketRecord r : changed) {
+                feedVersion = r.getChangeVersion();
+                feedPnr = r.getPnr();
+                if (localVersions.contains(feedVersion)) continue;
+                if (!TicketRecord.ACTIVE.equals(r.getStatus())) {
+                    inactive.add(feedPnr.toUpperCase());
+                    continue;
                 }
+                Ticket t = hydrate(r);
+                if (t != null && t.getTravelDate().compareTo(today) >= 0) active.add(t);
             }
-        } catch (SQLException e) {
-            System.out.println("Error loading active tickets from DB: " + e.getMessage());
+            if (!active.isEmpty() || !inactive.isEmpty()) applied += applyRemoteChanges(active, inactive);
+        } while (changed.size() == batchSize);
+        // versions below the watermark belong to transactions that have finished
+        localVersions.headSet(feedVersion).clear();
+        ticketRepository.acknowledge(instanceId, feedVersion);
+        return applied;
+    }
+
+    private int applyRemoteChanges(List<Ticket> active, Set<String> inactive) {
+        List<Ticket> removed = tickets.removeAll(inactive);
+        List<Ticket> added = new ArrayList<>();
+        for (Ticket t : active) {
+            if (tickets.add(t)) added.add(t);
+        }
+        for (Ticket t : removed) {
+            SeatInventory inventory = inventoryStore.find(t.getTrain(), t.getTravelDate());
+            if (inventory != null) inventory.release(t.getTrain().indexOfSeat(t.getSeat().getSeatNumber()),
+                    t.getOriginIndex(), t.getDestinationIndex());
+            t.getSeat().unbook();
+            searchCache.invalidate(t.getTrain(), t.getTravelDate());
+        }
+        for (Ticket t : added) {
+            inventoryFor(t.getTrain(), t.getTravelDate()).occupy(t.getTrain().indexOfSeat(t.getSeat().getSeatNumber()),
+                    t.getOriginIndex(), t.getDestinationIndex());
+            t.getSeat().book();
+            searchCache.invalidate(t.getTrain(), t.getTravelDate());
+        }
+        return removed.size() + added.size();
+    }
+
+    private static Seat findSeat(Train train, String seatNumber) {
+        if (train == null) return null;
+        int idx = train.indexOfSeat(seatNumber);
+        return idx >= 0 ? train.getSeats().get(idx) : null;
+    }
+
+    /** Builds a ticket from a stored record. Returns null if the train or seat is unknown. */
+    private Ticket hydrate(TicketRecord r) {
+        Train train = trainService.findTrain(r.getTrainNumber());
+        Seat seat = findSeat(train, r.getSeatNumber());
+        if (seat == null) return null;
+        return new Ticket(r.getPnr(), tickets.passenger(r.getUsername()), train, seat, r.getTravelDate(),
+                r.getFromIdx() < 0 ? 0 : r.getFromIdx(), r.getToIdx() < 0 ? train.getLegCount() : r.getToIdx());
+    }
+
+    /** Hydrates records in order, skipping (with a warning) those whose train or seat is unknown. */
+    private List<Ticket> hydrateAll(List<TicketRecord> records, String kind) {
+        List<Ticket> hydrated = new ArrayList<>(records.size());
+        for (TicketRecord r : records) {
+            Ticket t = hydrate(r);
+            if (t != null) hydrated.add(t);
+            else System.out.println("Warning: Could not resolve train/seat for " + kind + " " + r.getPnr());
         }
+        return hydrated;
+    }
+
+    /**
+     * Tickets with the given status ordered by (created_at, pnr), starting after {@code cursor}
+     * (null for the first page). Only {@code limit + 1} rows are read per call.
+     */
+    public Page<Ticket> findTicketsPage(String status, String cursor, int limit) {
+        if (limit <= 0) throw new ValidationException("Page size must be at least 1.");
+        Page<TicketRecord> page = ticketRepository.findPage(status, cursor, limit);
+        return new Page<>(hydrateAll(page.getItems(), "ticket"), page.getNextCursor());
     }
 
-   public List<Ticket> findPastTicketsByPassenger(User passenger) {
-    List<Ticket> past = new ArrayList<>();
-    String sqlBookedBy = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE booked_by = ?";
+    /**
+     * Lazily hydrated tickets booked by the passenger with the given status, in booking order. The
+     * stream may hold a database connection and must be closed, e.g. with try-with-resources.
+     */
+    public Stream<Ticket> streamTicketsByPassenger(User passenger, String status) {
+        return ticketRepository.streamByBooker(passenger.getUsername(), status).map(this::hydrate).filter(Objects::nonNull);
+    }
 
-    try (Connection c = this.db.getConnection()) {
-        boolean usedBookedBy = true;
-        PreparedStatement ps;
+    private void loadActiveTickets() {
         try {
-            ps = c.prepareStatement(sqlBookedBy);
-            ps.setString(1, passenger.getUsername());
-        } catch (SQLException se) {
-            usedBookedBy = false;
-            String sql = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE username = ?";
-            ps = c.prepareStatement(sql);
-            ps.setString(1, passenger.getUsername());
-        }
-
-        try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String username = rs.getString("username") != null ? rs.getString("username") : passenger.getUsername();
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-                String status = rs.getString("status");
-
-                LocalDate travel = null;
-                boolean isPast = false;
-                if (travelDate != null && travelDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    try {
-                        travel = LocalDate.parse(travelDate, DateTimeFormatter.ISO_LOCAL_DATE);
-                        isPast = travel.isBefore(LocalDate.now());
-                    } catch (DateTimeParseException ex) {
-                        System.out.println("[WARN] Skipping invalid date for past ticket " + pnr + ": " + travelDate);
-                        continue;
-                    }
-                } else {
-                    System.out.println("[WARN] Ignoring non-ISO date for past ticket " + pnr + ": " + travelDate);
+            for (TicketRecord r : ticketRepository.findActive()) {
+                Ticket t = hydrate(r);
+                if (t == null) {
+                    System.out.println("Warning: Could not resolve train/seat for ticket " + r.getPnr());
                     continue;
                 }
+                this.tickets.add(t);
+                t.getSeat().book();
+                inventoryFor(t.getTrain(), t.getTravelDate()).occupy(t.getTrain().indexOfSeat(t.getSeat().getSeatNumber()),
+                        t.getOriginIndex(), t.getDestinationIndex());
+            }
+        } catch (DatabaseException e) {
+            System.out.println("Error loading active tickets: " + e.getMessage());
+        }
+    }
 
-                    boolean isActive = status != null && status.trim().equalsIgnoreCase("ACTIVE");
-                    boolean isCancelled = status != null && status.trim().equalsIgnoreCase("CANCELLED");
-
-                    // Only include tickets that are active and whose travel date is before today
-                    if (isActive && isPast) {
-                    Train foundTrain = null;
-                    Seat foundSeat = null;
-                    for (Train t : trainService.getAllTrains()) {
-                        if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                            foundTrain = t;
-                            for (Seat s : t.getSeats()) {
-                                if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                    foundSeat = s;
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
+    public List<Ticket> findPastTicketsByPassenger(User passenger) {
+        return admission.admit(AdmissionController.Kind.READ, passenger.getUsername(),
+                () -> queryPastTicketsByPassenger(passenger));
+    }
 
-                    if (foundTrain != null && foundSeat != null) {
-                        User u = new User(username, "", Role.PASSENGER);
-                        Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                        past.add(tkt);
-                    } else {
-                        System.out.println("Warning: Could not resolve train/seat for past ticket " + pnr);
-                    }
-                }
-            }
+    private List<Ticket> queryPastTicketsByPassenger(User passenger) {
+        try {
+            return hydrateAll(ticketRepository.findPast(passenger.getUsername(), LocalDate.now()), "past ticket");
+        } catch (DatabaseException e) {
+            System.out.println("Error loading past tickets: " + e.getMessage());
+            return new ArrayList<>();
         }
-    } catch (SQLException | com.booking.exception.DatabaseException e) {
-        System.out.println("Error loading past tickets from DB: " + e.getMessage());
     }
 
-    return past;
-}
-    
     public List<Ticket> findCancelledTicketsByPassenger(User passenger) {
-        List<Ticket> cancelled = new ArrayList<>();
-        String sqlBookedBy = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE booked_by = ? AND status = 'CANCELLED'";
-        try (Connection c = this.db.getConnection()) {
-            boolean usedBookedBy = true;
-            PreparedStatement ps;
-            try {
-                ps = c.prepareStatement(sqlBookedBy);
-                ps.setString(1, passenger.getUsername());
-            } catch (SQLException se) {
-                usedBookedBy = false;
-                String sql = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE username = ? AND status = 'CANCELLED'";
-                ps = c.prepareStatement(sql);
-                ps.setString(1, passenger.getUsername());
-            }
-
-            try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-                while (rs.next()) {
-                    String pnr = rs.getString("pnr");
-                    String username = null;
-                    try { username = rs.getString("username"); } catch (SQLException ignore) { username = passenger.getUsername(); }
-                    String trainNumber = rs.getString("train_number");
-                    String seatNumber = rs.getString("seat_number");
-                    String travelDate = rs.getString("travel_date");
-
-                    Train foundTrain = null;
-                    Seat foundSeat = null;
-                    for (Train t : trainService.getAllTrains()) {
-                        if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                            foundTrain = t;
-                            for (Seat s : t.getSeats()) {
-                                if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                    foundSeat = s;
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
+        return admission.admit(AdmissionController.Kind.READ, passenger.getUsername(),
+                () -> queryCancelledTicketsByPassenger(passenger));
+    }
 
-                    if (foundTrain != null && foundSeat != null) {
-                        User u = new User(username != null ? username : passenger.getUsername(), "", Role.PASSENGER);
-                        Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                        cancelled.add(tkt);
-                    } else {
-                        System.out.println("Warning: Could not resolve train/seat for cancelled ticket " + pnr);
-                    }
-                }
-            }
-        } catch (SQLException | com.booking.exception.DatabaseException e) {
-            System.out.println("Error loading cancelled tickets from DB: " + e.getMessage());
+    private List<Ticket> queryCancelledTicketsByPassenger(User passenger) {
+        try {
+            return hydrateAll(ticketRepository.findCancelled(passenger.getUsername()), "cancelled ticket");
+        } catch (DatabaseException e) {
+            System.out.println("Error loading cancelled tickets: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return cancelled;
     }
 }
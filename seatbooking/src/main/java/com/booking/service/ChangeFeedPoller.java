@@ -0,0 +1,59 @@
+package com.booking.service;
+
+import com.booking.util.AppConfig;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps this instance's in-memory trains, tickets and seat inventories in step with writes made by
+ * other instances sharing the database. Every CHANGE_FEED_POLL_MS (default 1000) it reads only the
+ * trains and tickets rows whose change_version is past the last one applied, so staleness is bounded
+ * by the poll interval and no full reload is ever needed. Trains are polled first so that tickets on a
+ * newly added train can be resolved.
+ */
+public class ChangeFeedPoller implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeedPoller.class.getName());
+
+    private final TrainService trainService;
+    private final BookingService bookingService;
+    private final long intervalMs = Math.max(50, AppConfig.getInt("CHANGE_FEED_POLL_MS", 1000));
+    private final int batchSize = Math.max(1, AppConfig.getInt("CHANGE_FEED_BATCH_SIZE", 500));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "change-feed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ChangeFeedPoller(TrainService trainService, BookingService bookingService) {
+        this.trainService = trainService;
+        this.bookingService = bookingService;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void pollQuietly() {
+        try {
+            int applied = pollOnce();
+            if (applied > 0) LOGGER.fine("Applied " + applied + " change(s) from other instances");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Change feed poll failed; will retry", e);
+        }
+    }
+
+    /** @return number of trains and tickets added or removed in memory */
+    public int pollOnce() {
+        return trainService.pollChanges(batchSize) + bookingService.pollChanges(batchSize);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
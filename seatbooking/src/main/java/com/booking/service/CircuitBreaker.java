@@ -0,0 +1,95 @@
+package com.booking.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Classic three-state breaker. It opens after {@code failureThreshold} consecutive failures or as many
+ * consecutive slow calls. While open every call is refused. After {@code openMillis} it lets a single
+ * probe through (half-open); the probe's outcome closes or re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long slowCallNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int consecutiveSlowCalls;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, long slowCallMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openMillis));
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, slowCallMillis));
+    }
+
+    /** Whether a call may go ahead now. Every permitted call must be followed by a success or failure report. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) return false;
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) return false;
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long latencyNanos) {
+        if (latencyNanos > slowCallNanos) {
+            consecutiveSlowCalls++;
+            if (state == State.HALF_OPEN || consecutiveSlowCalls >= failureThreshold) {
+                trip("slow calls");
+                return;
+            }
+        } else {
+            consecutiveSlowCalls = 0;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            transition(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) trip("failures");
+    }
+
+    /** Releases a half-open probe whose outcome says nothing about the database (e.g. the caller was interrupted). */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) return State.HALF_OPEN;
+        return state;
+    }
+
+    private void trip(String reason) {
+        openedAt = System.nanoTime();
+        probeInFlight = false;
+        consecutiveFailures = 0;
+        consecutiveSlowCalls = 0;
+        if (state != State.OPEN) {
+            LOGGER.warning("Circuit '" + name + "' opened after consecutive " + reason);
+        }
+        state = State.OPEN;
+    }
+
+    private void transition(State next) {
+        if (state != next) LOGGER.info("Circuit '" + name + "' " + state + " -> " + next);
+        state = next;
+    }
+}
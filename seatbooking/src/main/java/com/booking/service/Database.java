@@ -7,15 +7,19 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
 import com.booking.exception.DatabaseException;
+import com.booking.util.AppConfig;
 
 public class Database implements DatabaseProvider {
     private final Dotenv dotenv = Dotenv.load();
     private final String url;
     private final String user;
     private final String password;
+    private volatile boolean travelDayMigrated;
 
     public Database() {
-        this.url = dotenv.get("DB_URL", "jdbc:mysql://localhost:3306/seatbooking?useSSL=false&serverTimezone=UTC");
+        int connectTimeoutMillis = Math.max(1, AppConfig.getInt("DB_CONNECT_TIMEOUT_MS", 5000));
+        this.url = withConnectTimeout(dotenv.get("DB_URL", "jdbc:mysql://localhost:3306/seatbooking?useSSL=false&serverTimezone=UTC"),
+                connectTimeoutMillis);
         this.user = dotenv.get("DB_USER", "root");
         this.password = dotenv.get("DB_PASSWORD", "");
 
@@ -24,6 +28,13 @@ public class Database implements DatabaseProvider {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("MySQL JDBC driver not found", e);
         }
+        DriverManager.setLoginTimeout(Math.toIntExact(Math.max(1L, (connectTimeoutMillis + 999L) / 1000L)));
+    }
+
+    /** Adds the driver's connect timeout to the URL unless it already sets one. */
+    private static String withConnectTimeout(String url, int millis) {
+        if (url.contains("connectTimeout=")) return url;
+        return url + (url.contains("?") ? "&" : "?") + "connectTimeout=" + millis;
     }
 
     @Override
@@ -48,7 +59,8 @@ public class Database implements DatabaseProvider {
                 + "train_number VARCHAR(50) PRIMARY KEY,"
                 + "train_name VARCHAR(255) NOT NULL,"
                 + "route TEXT NOT NULL,"
-                + "total_seats INT NOT NULL"
+                + "total_seats INT NOT NULL,"
+                + "change_version BIGINT NOT NULL DEFAULT 0"
                 + ") ENGINE=InnoDB;";
 
         String createTickets = "CREATE TABLE IF NOT EXISTS tickets ("
@@ -58,8 +70,12 @@ public class Database implements DatabaseProvider {
                 + "train_number VARCHAR(50) NOT NULL,"
                 + "seat_number VARCHAR(50) NOT NULL,"
                 + "travel_date VARCHAR(20) NOT NULL,"
+                + "travel_day DATE NULL,"
                 + "status VARCHAR(20) NOT NULL,"
-                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                + "from_idx INT DEFAULT NULL,"
+                + "to_idx INT DEFAULT NULL,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "change_version BIGINT NOT NULL DEFAULT 0"
                 + ") ENGINE=InnoDB;";
 
         String createUserHistory = "CREATE TABLE IF NOT EXISTS user_history (" +
@@ -72,11 +88,104 @@ public class Database implements DatabaseProvider {
             "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL" +
             ") ENGINE=InnoDB;";
 
+        String createWaitlist = "CREATE TABLE IF NOT EXISTS waitlist ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "travel_date VARCHAR(20) NOT NULL,"
+                + "username VARCHAR(100) NOT NULL,"
+                + "booked_by VARCHAR(100) DEFAULT NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "from_idx INT DEFAULT NULL,"
+                + "to_idx INT DEFAULT NULL,"
+                + "promoted_pnr VARCHAR(50) DEFAULT NULL,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "INDEX idx_waitlist_queue (train_number, travel_date, status, id)"
+                + ") ENGINE=InnoDB;";
+
+        String createIdempotencyKeys = "CREATE TABLE IF NOT EXISTS idempotency_keys ("
+                + "idem_key VARCHAR(100) PRIMARY KEY,"
+                + "operation VARCHAR(20) NOT NULL,"
+                + "pnrs TEXT,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                + ") ENGINE=InnoDB;";
+
+        String createTicketsArchive = "CREATE TABLE IF NOT EXISTS tickets_archive ("
+                + "pnr VARCHAR(50) PRIMARY KEY,"
+                + "username VARCHAR(100) NOT NULL,"
+                + "booked_by VARCHAR(100) DEFAULT NULL,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "seat_number VARCHAR(50) NOT NULL,"
+                + "travel_date VARCHAR(20) NOT NULL,"
+                + "travel_day DATE NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "from_idx INT DEFAULT NULL,"
+                + "to_idx INT DEFAULT NULL,"
+                + "created_at TIMESTAMP NULL DEFAULT NULL,"
+                + "archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "INDEX idx_tickets_archive_booked_by (booked_by, status),"
+                + "INDEX idx_tickets_archive_username (username, status),"
+                + "INDEX idx_tickets_archive_travel_date (travel_date)"
+                + ") ENGINE=InnoDB;";
+
+        String createTicketsQuarantine = "CREATE TABLE IF NOT EXISTS tickets_quarantine ("
+                + "pnr VARCHAR(50) PRIMARY KEY,"
+                + "username VARCHAR(100) NOT NULL,"
+                + "booked_by VARCHAR(100) DEFAULT NULL,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "seat_number VARCHAR(50) NOT NULL,"
+                + "travel_date VARCHAR(20) NOT NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "from_idx INT DEFAULT NULL,"
+                + "to_idx INT DEFAULT NULL,"
+                + "created_at TIMESTAMP NULL DEFAULT NULL,"
+                + "reason VARCHAR(255) NOT NULL,"
+                + "quarantined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                + ") ENGINE=InnoDB;";
+
+        String createUserHistoryArchive = "CREATE TABLE IF NOT EXISTS user_history_archive ("
+                + "id INT PRIMARY KEY,"
+                + "user_id INT DEFAULT NULL,"
+                + "pnr VARCHAR(50) DEFAULT NULL,"
+                + "action VARCHAR(50) NOT NULL,"
+                + "details TEXT,"
+                + "created_at TIMESTAMP NULL DEFAULT NULL,"
+                + "archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "INDEX idx_user_history_archive_pnr (pnr)"
+                + ") ENGINE=InnoDB;";
+
+        String createChangeSequence = "CREATE TABLE IF NOT EXISTS change_sequence ("
+                + "feed VARCHAR(20) PRIMARY KEY,"
+                + "version BIGINT NOT NULL"
+                + ") ENGINE=InnoDB;";
+
         try (Connection c = getConnection(); Statement s = c.createStatement()) {
             s.executeUpdate(createUsers);
             s.executeUpdate(createTrains);
             s.executeUpdate(createTickets);
             s.executeUpdate(createUserHistory);
+            s.executeUpdate(createWaitlist);
+            s.executeUpdate(createIdempotencyKeys);
+            s.executeUpdate(createTicketsArchive);
+            s.executeUpdate(createUserHistoryArchive);
+            s.executeUpdate(createTicketsQuarantine);
+            s.executeUpdate(createChangeSequence);
+            s.executeUpdate("INSERT IGNORE INTO change_sequence (feed, version) VALUES ('tickets', 0), ('trains', 0)");
+            s.executeUpdate("CREATE TABLE IF NOT EXISTS change_feed_acks ("
+                    + "feed VARCHAR(20) NOT NULL,"
+                    + "instance VARCHAR(64) NOT NULL,"
+                    + "version BIGINT NOT NULL,"
+                    + "acked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+                    + "PRIMARY KEY (feed, instance)"
+                    + ") ENGINE=InnoDB;");
+            for (String feed : new String[] {"tickets", "trains"}) {
+                s.executeUpdate("CREATE TABLE IF NOT EXISTS change_log_" + feed + " ("
+                        + "version BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                        + "created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"
+                        + ") ENGINE=InnoDB;");
+                // versions handed out before the log existed are all committed; new ones continue above them
+                s.executeUpdate("INSERT IGNORE INTO change_log_" + feed + " (version) "
+                        + "SELECT version FROM change_sequence WHERE feed = '" + feed + "' AND version > 0");
+            }
 
             try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM user_history LIKE 'user_id'")) {
                 if (!rs.next()) {
@@ -98,9 +207,48 @@ public class Database implements DatabaseProvider {
                     s.executeUpdate("ALTER TABLE tickets ADD COLUMN booked_by VARCHAR(100) DEFAULT NULL");
                 }
             }
+            try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM tickets LIKE 'from_idx'")) {
+                if (!rs.next()) {
+                    s.executeUpdate("ALTER TABLE tickets ADD COLUMN from_idx INT DEFAULT NULL, ADD COLUMN to_idx INT DEFAULT NULL");
+                }
+            }
+            try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM waitlist LIKE 'from_idx'")) {
+                if (!rs.next()) {
+                    s.executeUpdate("ALTER TABLE waitlist ADD COLUMN from_idx INT DEFAULT NULL, ADD COLUMN to_idx INT DEFAULT NULL");
+                }
+            }
+            for (String table : new String[] {"tickets", "trains"}) {
+                try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM " + table + " LIKE 'change_version'")) {
+                    if (!rs.next()) {
+                        s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN change_version BIGINT NOT NULL DEFAULT 0");
+                    }
+                }
+            }
+            ensureIndex(s, "tickets", "idx_tickets_train_date", "train_number, travel_date, status");
+            ensureIndex(s, "tickets", "idx_tickets_status_created", "status, created_at, pnr");
+            ensureIndex(s, "tickets", "idx_tickets_booked_by", "booked_by, status, created_at, pnr");
+            ensureIndex(s, "user_history", "idx_user_history_pnr", "pnr");
+
+            if (!travelDayMigrated) {
+                TravelDayMigration.run(c);
+                travelDayMigrated = true;
+            }
+            ensureIndex(s, "tickets", "idx_tickets_booked_by_day", "booked_by, status, travel_day");
+            ensureIndex(s, "tickets", "idx_tickets_username_day", "username, status, travel_day");
+            ensureIndex(s, "tickets", "idx_tickets_status_day", "status, travel_day");
+            ensureIndex(s, "tickets", "idx_tickets_train_day", "train_number, status, travel_day");
+            ensureIndex(s, "tickets", "idx_tickets_change_version", "change_version, pnr");
+            ensureIndex(s, "trains", "idx_trains_change_version", "change_version, train_number");
 
         } catch (SQLException e) {
             throw new DatabaseException("Failed to initialize database schema", e);
         }
     }
+
+    private static void ensureIndex(Statement s, String table, String name, String columns) throws SQLException {
+        try (ResultSet rs = s.executeQuery("SHOW INDEX FROM " + table + " WHERE Key_name = '" + name + "'")) {
+            if (rs.next()) return;
+        }
+        s.executeUpdate("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+    }
 }
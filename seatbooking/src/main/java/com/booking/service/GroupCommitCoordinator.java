@@ -0,0 +1,184 @@
+package com.booking.service;
+
+import com.booking.exception.OverloadException;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.util.Deadline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit for bookings on hot runs. Booking requests for the same (train, date) are queued, and
+ * the first one in an idle queue schedules a flush after a short window. The flush hands up to
+ * {@code maxBatch} requests to the writer, which books them in one transaction. A run has at most one
+ * flush in flight: requests arriving while it commits form the next batch, which is written as soon as
+ * the current one finishes. Throughput on a contended run therefore grows with the batch size instead
+ * of being bounded by commit latency.
+ */
+public class GroupCommitCoordinator {
+
+    /** One caller's booking, completed with its own tickets or rejection once its batch is written. */
+    static final class Request {
+        final List<String> usernames;
+        final int fromStop;
+        final int toStop;
+        final String bookedBy;
+        final String idempotencyKey;
+        final CompletableFuture<List<Ticket>> result = new CompletableFuture<>();
+        // what was left of the submitting operation's time budget; Long.MAX_VALUE if it had none
+        final long budgetMillis = Deadline.remainingMillis();
+        final long submittedAt = System.nanoTime();
+
+        Request(List<String> usernames, int fromStop, int toStop, String bookedBy, String idempotencyKey) {
+            this.usernames = usernames;
+            this.fromStop = fromStop;
+            this.toStop = toStop;
+            this.bookedBy = bookedBy;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        long remainingMillis(long now) {
+            if (budgetMillis == Long.MAX_VALUE) return Long.MAX_VALUE;
+            return budgetMillis - TimeUnit.NANOSECONDS.toMillis(now - submittedAt);
+        }
+    }
+
+    /** Books a batch for one run and completes every request's future; may throw to fail them all. */
+    interface BatchWriter {
+        void write(Train train, String date, List<Request> batch);
+    }
+
+    private static final class Run {
+        final Train train;
+        final String date;
+        final Deque<Request> queue = new ArrayDeque<>();
+        // guarded by this: a flush is scheduled or running
+        boolean flushing;
+
+        Run(Train train, String date) {
+            this.train = train;
+            this.date = date;
+        }
+    }
+
+    private final BatchWriter writer;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final ScheduledThreadPoolExecutor flusher;
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+
+    GroupCommitCoordinator(BatchWriter writer, long windowMillis, int maxBatch, int threads) {
+        this.writer = writer;
+        this.windowMillis = Math.max(0, windowMillis);
+        this.maxBatch = Math.max(1, maxBatch);
+        AtomicInteger seq = new AtomicInteger();
+        this.flusher = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "booking-group-commit-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static String key(Train train, String date) {
+        return train.getTrainNumber().toUpperCase() + "|" + date;
+    }
+
+    CompletableFuture<List<Ticket>> submit(Train train, String date, Request request) {
+        Run run = runs.computeIfAbsent(key(train, date), k -> new Run(train, date));
+        boolean schedule;
+        synchronized (run) {
+            run.queue.addLast(request);
+            schedule = !run.flushing;
+            run.flushing = true;
+        }
+        if (schedule) flusher.schedule(() -> flush(run), windowMillis, TimeUnit.MILLISECONDS);
+        return request.result;
+    }
+
+    private void flush(Run run) {
+        List<Request> batch = new ArrayList<>();
+        synchronized (run) {
+            while (batch.size() < maxBatch && !run.queue.isEmpty()) batch.add(run.queue.pollFirst());
+        }
+        // requests whose budget ran out in the queue are not written; the batch gets the longest budget left
+        long now = System.nanoTime();
+        long budget = 0;
+        List<Request> live = new ArrayList<>(batch.size());
+        for (Request r : batch) {
+            long remaining = r.remainingMillis(now);
+            if (remaining > 0) {
+                live.add(r);
+                budget = Math.max(budget, remaining);
+            } else {
+                r.result.completeExceptionally(new OverloadException("The booking could not be written in time. Please try again."));
+            }
+        }
+        try {
+            if (!live.isEmpty()) write(run, live, budget);
+        } catch (RuntimeException e) {
+            for (Request r : live) r.result.completeExceptionally(e);
+        } finally {
+            batches.incrementAndGet();
+            requests.addAndGet(batch.size());
+            largestBatch.accumulateAndGet(batch.size(), Math::max);
+            boolean more;
+            synchronized (run) {
+                more = !run.queue.isEmpty();
+                run.flushing = more;
+            }
+            // whatever queued up meanwhile has already waited at least one commit
+            if (more) flusher.execute(() -> flush(run));
+        }
+    }
+
+    private void write(Run run, List<Request> batch, long budgetMillis) {
+        if (budgetMillis == Long.MAX_VALUE) {
+            writer.write(run.train, run.date, batch);
+            return;
+        }
+        Deadline.within(budgetMillis, () -> {
+            writer.write(run.train, run.date, batch);
+            return null;
+        });
+    }
+
+    /** Forgets idle runs for travel dates before {@code today}. */
+    void dropBefore(String today) {
+        runs.values().removeIf(run -> {
+            synchronized (run) {
+                return !run.flushing && run.date.compareTo(today) < 0;
+            }
+        });
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public int getLargestBatch() {
+        return largestBatch.get();
+    }
+
+    /** Average number of requests written per transaction. */
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : (double) requests.get() / b;
+    }
+}
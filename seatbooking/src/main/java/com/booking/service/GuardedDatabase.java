@@ -0,0 +1,234 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.util.AppConfig;
+import com.booking.util.Deadline;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link DatabaseProvider} decorator that bounds how long callers can be stuck on the database.
+ * Connection acquisition has a deadline, every statement gets a query timeout and the socket a network
+ * timeout. Both the acquisition wait and the query timeout are cut to what is left of the caller's
+ * {@link Deadline}, if it has one. Acquisitions and statement executions feed a {@link CircuitBreaker};
+ * while it is open, {@link #getConnection()} fails immediately instead of piling more callers onto an
+ * unhealthy server.
+ *
+ * <p>Connections are opened on a small bounded pool so that a caller can stop waiting without leaving
+ * its thread stuck in the driver. When every acquirer thread is stuck and the queue is full, the server
+ * is not accepting connections, and the rejection counts as a breaker failure. The driver's own connect
+ * timeout (see {@link Database}) is what eventually frees a stuck acquirer thread.
+ */
+public class GuardedDatabase implements DatabaseProvider {
+
+    private final DatabaseProvider delegate;
+    private final long acquireTimeoutMillis;
+    private final int queryTimeoutSeconds;
+    private final CircuitBreaker breaker;
+    private final ThreadPoolExecutor acquirer;
+
+    public GuardedDatabase(DatabaseProvider delegate) {
+        this(delegate,
+                AppConfig.getInt("DB_ACQUIRE_TIMEOUT_MS", 5000),
+                AppConfig.getInt("DB_QUERY_TIMEOUT_SECONDS", 30),
+                AppConfig.getInt("DB_ACQUIRE_THREADS", 8),
+                AppConfig.getInt("DB_ACQUIRE_QUEUE", 64),
+                new CircuitBreaker("database",
+                        AppConfig.getInt("DB_BREAKER_FAILURES", 5),
+                        AppConfig.getInt("DB_BREAKER_OPEN_MS", 10_000),
+                        AppConfig.getInt("DB_BREAKER_SLOW_MS", 2000)));
+    }
+
+    public GuardedDatabase(DatabaseProvider delegate, long acquireTimeoutMillis, int queryTimeoutSeconds,
+                           int acquireThreads, int acquireQueue, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        this.breaker = breaker;
+        int threads = Math.max(1, acquireThreads);
+        this.acquirer = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, acquireQueue)), r -> {
+                    Thread t = new Thread(r, "db-acquire");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.acquirer.allowCoreThreadTimeOut(true);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public Connection getConnection() {
+        long waitMillis = Math.min(acquireTimeoutMillis, Deadline.remainingMillis());
+        if (waitMillis <= 0) {
+            throw new DatabaseException("Operation deadline passed before a database connection was requested");
+        }
+        if (!breaker.tryAcquire()) {
+            throw new DatabaseException("Database is temporarily unavailable. Please try again shortly.");
+        }
+        // Whoever flips this first owns the connection: the caller if it arrived in time, otherwise the
+        // acquiring thread, which then closes it.
+        AtomicBoolean handedOff = new AtomicBoolean();
+        long start = System.nanoTime();
+        Future<Connection> pending;
+        try {
+            pending = acquirer.submit(() -> {
+                Connection c = delegate.getConnection();
+                if (handedOff.compareAndSet(false, true)) return c;
+                closeQuietly(c);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            breaker.onFailure();
+            throw new DatabaseException("Too many database connections are being opened. Please try again shortly.", e);
+        }
+        Connection conn;
+        try {
+            conn = pending.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!handedOff.compareAndSet(false, true)) {
+                try {
+                    closeQuietly(pending.get());
+                } catch (InterruptedException | ExecutionException ignored) {
+                }
+            } else {
+                pending.cancel(true);
+                acquirer.remove((Runnable) pending);
+            }
+            // a wait cut short by the caller's own budget says nothing about the database
+            if (waitMillis < acquireTimeoutMillis) {
+                breaker.onIgnored();
+            } else {
+                breaker.onFailure();
+            }
+            throw new DatabaseException("Timed out after " + waitMillis + " ms waiting for a database connection", e);
+        } catch (ExecutionException e) {
+            breaker.onFailure();
+            if (e.getCause() instanceof DatabaseException) throw (DatabaseException) e.getCause();
+            throw new DatabaseException("Unable to obtain database connection", e.getCause());
+        } catch (InterruptedException e) {
+            handedOff.set(true);
+            breaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for a database connection", e);
+        }
+        breaker.onSuccess(System.nanoTime() - start);
+
+        try {
+            conn.setNetworkTimeout(Runnable::run, (int) TimeUnit.SECONDS.toMillis(queryTimeoutSeconds + 5L));
+        } catch (SQLException | AbstractMethodError ignored) {
+            // driver without network timeout support; query timeouts still apply
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(conn));
+    }
+
+    private static void closeQuietly(Connection c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /** Failures that point at the server or the network rather than at the statement itself. */
+    private static boolean isUnhealthy(Throwable t) {
+        if (t instanceof SQLTimeoutException || t instanceof SQLTransientConnectionException
+                || t instanceof SQLNonTransientConnectionException || t instanceof SQLRecoverableException) {
+            return true;
+        }
+        if (t instanceof SQLException) {
+            String state = ((SQLException) t).getSQLState();
+            return state != null && state.startsWith("08");
+        }
+        return false;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = GuardedDatabase.invoke(target, method, args);
+            if (result instanceof Statement) {
+                Statement st = (Statement) result;
+                st.setQueryTimeout(queryTimeoutSeconds);
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {type},
+                        new StatementHandler(st));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        StatementHandler(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) return GuardedDatabase.invoke(target, method, args);
+            long remaining = Deadline.remainingMillis();
+            if (remaining <= 0) throw new SQLTimeoutException("Operation deadline passed before the statement ran");
+            // a statement cut short by the caller's own budget says nothing about the server
+            boolean shortened = remaining < TimeUnit.SECONDS.toMillis(queryTimeoutSeconds);
+            target.setQueryTimeout(shortened ? (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999)) : queryTimeoutSeconds);
+            long start = System.nanoTime();
+            try {
+                Object result = GuardedDatabase.invoke(target, method, args);
+                breaker.onSuccess(System.nanoTime() - start);
+                return result;
+            } catch (Throwable t) {
+                if (isUnhealthy(t) && !(shortened && t instanceof SQLTimeoutException)) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess(System.nanoTime() - start);
+                }
+                throw t;
+            }
+        }
+    }
+}
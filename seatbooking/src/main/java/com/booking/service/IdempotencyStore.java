@@ -0,0 +1,118 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.repository.IdempotencyRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the outcome (the PNRs touched) of booking and cancel calls made with an idempotency key.
+ * Keys are claimed inside the caller's transaction through the idempotency repository, so a retry that races the first attempt waits for it and then sees
+ * its result. Completed keys are also kept in an in-memory TTL cache so most retries skip the database.
+ */
+class IdempotencyStore {
+
+    private static final Logger LOGGER = Logger.getLogger(IdempotencyStore.class.getName());
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_CACHED = 10_000;
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private static final class CachedResult {
+        final String operation;
+        final List<String> pnrs;
+        final long expiresAt;
+
+        CachedResult(String operation, List<String> pnrs, long expiresAt) {
+            this.operation = operation;
+            this.pnrs = pnrs;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final IdempotencyRepository repository;
+    private final long ttlMillis;
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+
+    IdempotencyStore(IdempotencyRepository repository) {
+        this(repository, DEFAULT_TTL_MILLIS);
+    }
+
+    IdempotencyStore(IdempotencyRepository repository, long ttlMillis) {
+        this.repository = repository;
+        this.ttlMillis = ttlMillis;
+        purgeExpiredRows();
+    }
+
+    static void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("Idempotency key must be 1-" + MAX_KEY_LENGTH + " characters.");
+        }
+    }
+
+    /** PNRs recorded for a key in the cache, or null if the key is not cached (or cached for another operation). */
+    List<String> cached(String key, String operation) {
+        CachedResult r = cache.get(key);
+        if (r == null) return null;
+        if (r.expiresAt < System.currentTimeMillis()) {
+            cache.remove(key, r);
+            return null;
+        }
+        if (!r.operation.equals(operation)) {
+            throw new ValidationException("Idempotency key " + key + " was already used for a " + r.operation + " request.");
+        }
+        return r.pnrs;
+    }
+
+    /**
+     * Claims the key in the caller's transaction. Returns false if the key was already claimed by a
+     * committed request, in which case the caller should roll back and use {@link #load(String, String)}.
+     */
+    boolean claim(String key, String operation) {
+        return repository.claim(key, operation);
+    }
+
+    void complete(String key, List<String> pnrs) {
+        repository.complete(key, pnrs);
+    }
+
+    /** Caches a committed result. */
+    void remember(String key, String operation, List<String> pnrs) {
+        if (cache.size() >= MAX_CACHED) purgeExpiredEntries();
+        cache.put(key, new CachedResult(operation, Collections.unmodifiableList(new ArrayList<>(pnrs)),
+                System.currentTimeMillis() + ttlMillis));
+    }
+
+    /** Reads the PNRs recorded for a committed key from the repository and caches them. */
+    List<String> load(String key, String operation) {
+        IdempotencyRepository.Outcome outcome = repository.find(key);
+        if (outcome == null) return null;
+        if (!operation.equals(outcome.getOperation())) {
+            throw new ValidationException("Idempotency key " + key + " was already used for a " + outcome.getOperation() + " request.");
+        }
+        remember(key, operation, outcome.getPnrs());
+        return outcome.getPnrs();
+    }
+
+    private void purgeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        cache.entrySet().removeIf(e -> e.getValue().expiresAt < now);
+        if (cache.size() >= MAX_CACHED) cache.clear();
+    }
+
+    private void purgeExpiredRows() {
+        try {
+            repository.purgeBefore(Instant.now().minusMillis(Math.max(ttlMillis, TimeUnit.DAYS.toMillis(1))));
+        } catch (DatabaseException e) {
+            LOGGER.log(Level.WARNING, "Could not purge expired idempotency keys", e);
+        }
+    }
+}
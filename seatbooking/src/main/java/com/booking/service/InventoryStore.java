@@ -0,0 +1,217 @@
+package com.booking.service;
+
+import com.booking.exception.ValidationException;
+import com.booking.model.Train;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Seat inventories for every (train, travel date), kept outside the Java heap. Each run owns one slab:
+ * a fixed-stride block of seat leg masks and their summary tree ({@link SeatInventory#slabBytes}),
+ * carved from large direct buffers. Runs are found through an open-addressing table keyed by (train
+ * ordinal, epoch day), so the heap cost of a run is two table slots rather than a graph of objects,
+ * and GC pauses do not grow with the booking horizon. Slabs of dates that have passed are zeroed and
+ * reused for new dates by {@link #releaseBefore}; a zeroed slab is a consistent all-free inventory.
+ * {@link SeatInventory} objects are short-lived views over a slab.
+ */
+final class InventoryStore {
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int LOCK_STRIPES = 256;
+
+    /** Open-addressing table; a key of 0 marks an empty slot. Replaced wholesale on resize and rollover. */
+    private static final class Table {
+        final long[] keys;
+        final long[] slabs;
+        final int[] strides;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            slabs = new long[capacity];
+            strides = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final int chunkBytes;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final TrainOrdinals ordinals;
+    private final Map<Long, Map<Long, List<SeatInventory.Occupancy>>> holds = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private volatile Table table = new Table(1024);
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int size;
+    private int chunkUsed;
+    private final Map<Integer, ArrayDeque<Long>> freeSlabs = new HashMap<>();
+    private long reservedBytes;
+    private long recycled;
+
+    InventoryStore(TrainOrdinals ordinals, int chunkBytes) {
+        this.ordinals = ordinals;
+        this.chunkBytes = Math.max(64 * 1024, chunkBytes & ~7);
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    static long epochDay(String travelDate) {
+        try {
+            return LocalDate.parse(travelDate).toEpochDay();
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new ValidationException("Invalid travel date: " + travelDate);
+        }
+    }
+
+    private long runKey(Train train, String travelDate) {
+        // ordinals start at 0, so shift by one to keep 0 free as the empty-slot marker
+        return ((long) (ordinals.of(train) + 1) << 32) | (epochDay(travelDate) & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int slot(Table t, long key) {
+        int i = hash(key) & t.mask;
+        while (true) {
+            long k = (long) KEYS.getAcquire(t.keys, i);
+            if (k == key || k == 0) return i;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    /** The inventory for the run, creating a zeroed slab for it on first use. */
+    SeatInventory get(Train train, String travelDate) {
+        long key = runKey(train, travelDate);
+        Table t = table;
+        int i = slot(t, key);
+        if ((long) KEYS.getAcquire(t.keys, i) == key) return view(train, travelDate, key, t.slabs[i]);
+        synchronized (this) {
+            t = table;
+            i = slot(t, key);
+            if (t.keys[i] != key) {
+                if ((size + 1) * 4 > t.keys.length * 3) {
+                    t = resize(t.keys.length * 2);
+                    i = slot(t, key);
+                }
+                int stride = SeatInventory.slabBytes(train);
+                t.slabs[i] = allocate(stride);
+                t.strides[i] = stride;
+                KEYS.setRelease(t.keys, i, key);
+                size++;
+            }
+            return view(train, travelDate, key, t.slabs[i]);
+        }
+    }
+
+    /** The inventory for the run, or null if nothing has touched it yet. */
+    SeatInventory find(Train train, String travelDate) {
+        long key = runKey(train, travelDate);
+        Table t = table;
+        int i = slot(t, key);
+        return (long) KEYS.getAcquire(t.keys, i) == key ? view(train, travelDate, key, t.slabs[i]) : null;
+    }
+
+    private SeatInventory view(Train train, String travelDate, long key, long slab) {
+        ByteBuffer chunk = chunks[(int) (slab >>> 32)];
+        return new SeatInventory(train, travelDate, chunk, (int) slab, locks[hash(key) & (LOCK_STRIPES - 1)], this, key);
+    }
+
+    /** Seats on hold in the run, by hold id; null if there are none and {@code create} is false. */
+    Map<Long, List<SeatInventory.Occupancy>> holds(long key, boolean create) {
+        return create ? holds.computeIfAbsent(key, k -> new HashMap<>()) : holds.get(key);
+    }
+
+    private Table resize(int capacity) {
+        Table old = table;
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] == 0) continue;
+            int j = slot(t, old.keys[i]);
+            t.keys[j] = old.keys[i];
+            t.slabs[j] = old.slabs[i];
+            t.strides[j] = old.strides[i];
+        }
+        table = t;
+        return t;
+    }
+
+    /** Takes a recycled slab of the same stride, or carves a new one. @return chunk index << 32 | offset */
+    private long allocate(int stride) {
+        ArrayDeque<Long> free = freeSlabs.get(stride);
+        if (free != null && !free.isEmpty()) {
+            recycled++;
+            return free.pop();
+        }
+        ByteBuffer[] current = chunks;
+        if (current.length == 0 || chunkUsed + stride > current[current.length - 1].capacity()) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(chunkBytes, stride)).order(ByteOrder.nativeOrder());
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = chunk;
+            chunks = current;
+            chunkUsed = 0;
+            reservedBytes += chunk.capacity();
+        }
+        long slab = ((long) (current.length - 1) << 32) | chunkUsed;
+        chunkUsed += stride;
+        return slab;
+    }
+
+    /**
+     * Drops every run dated before {@code epochDay}. Their slabs are zeroed and kept for reuse by later
+     * dates, so a rolling booking horizon settles at a fixed amount of direct memory.
+     * @return number of runs dropped
+     */
+    synchronized int releaseBefore(long epochDay) {
+        Table old = table;
+        Table kept = new Table(old.keys.length);
+        int dropped = 0;
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key == 0) continue;
+            if ((int) key < epochDay) {
+                ByteBuffer chunk = chunks[(int) (old.slabs[i] >>> 32)];
+                int base = (int) old.slabs[i];
+                for (int off = 0; off < old.strides[i]; off += 8) WORDS.setVolatile(chunk, base + off, 0L);
+                freeSlabs.computeIfAbsent(old.strides[i], k -> new ArrayDeque<>()).push(old.slabs[i]);
+                holds.remove(key);
+                dropped++;
+            } else {
+                int j = slot(kept, key);
+                kept.keys[j] = key;
+                kept.slabs[j] = old.slabs[i];
+                kept.strides[j] = old.strides[i];
+            }
+        }
+        size -= dropped;
+        table = kept;
+        return dropped;
+    }
+
+    synchronized int getRunCount() {
+        return size;
+    }
+
+    /** Direct memory reserved for slabs, in bytes. */
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /** Slabs handed out again after their date passed. */
+    synchronized long getRecycledSlabs() {
+        return recycled;
+    }
+}
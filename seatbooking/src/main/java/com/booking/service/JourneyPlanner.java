@@ -0,0 +1,234 @@
+package com.booking.service;
+
+import com.booking.model.Journey;
+import com.booking.model.JourneyLeg;
+import com.booking.model.Train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds journeys between two stations, including ones that change trains. Stations are interned to
+ * ids, and every station keeps a transfer table of (train, stop index) pairs calling there. A query
+ * runs a best-first search over those tables ordered by (changes, stops travelled). Labels dominated
+ * at the same station are pruned, and legs without enough free seats on the date are dropped when
+ * they are reached. New trains are appended to the tables as {@link TrainService} registers them.
+ */
+public class JourneyPlanner {
+
+    public static final int DEFAULT_MAX_CHANGES = 2;
+    public static final int DEFAULT_MAX_RESULTS = 5;
+    private static final int MAX_EXPANSIONS = 200_000;
+
+    private final BookingService bookingService;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> stationIds = new HashMap<>();
+    private final List<Train> trains = new ArrayList<>();
+    private final List<int[]> routes = new ArrayList<>();
+    /** Per station id: packed (train ordinal << 32 | stop index) of every call there. */
+    private final List<CallList> calls = new ArrayList<>();
+
+    private static final class CallList {
+        long[] items = new long[4];
+        int size;
+
+        void add(long call) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = call;
+        }
+    }
+
+    /** One leg reached by the search, chained back to the previous legs of the journey. */
+    private static final class Label {
+        final int station;
+        final int changes;
+        final int stops;
+        final int train;
+        final int board;
+        final int alight;
+        final Label prev;
+
+        Label(int station, int changes, int stops, int train, int board, int alight, Label prev) {
+            this.station = station;
+            this.changes = changes;
+            this.stops = stops;
+            this.train = train;
+            this.board = board;
+            this.alight = alight;
+            this.prev = prev;
+        }
+    }
+
+    public JourneyPlanner(TrainService trainService, BookingService bookingService) {
+        this.bookingService = bookingService;
+        trainService.addTrainListener(this::addTrains);
+        addTrains(trainService.getAllTrains());
+    }
+
+    private static String stationKey(String station) {
+        return station.trim().toLowerCase();
+    }
+
+    private void addTrains(List<Train> added) {
+        lock.writeLock().lock();
+        try {
+            for (Train train : added) {
+                List<String> route = train.getRoute();
+                if (route.size() < 2) continue;
+                int ordinal = trains.size();
+                int[] ids = new int[route.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    String stop = route.get(i) == null ? "" : route.get(i);
+                    ids[i] = stationIds.computeIfAbsent(stationKey(stop), k -> {
+                        calls.add(new CallList());
+                        return calls.size() - 1;
+                    });
+                    calls.get(ids[i]).add(((long) ordinal << 32) | i);
+                }
+                trains.add(train);
+                routes.add(ids);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Journey> plan(String startStation, String endStation, String date, int passengers) {
+        return plan(startStation, endStation, date, passengers, DEFAULT_MAX_CHANGES, DEFAULT_MAX_RESULTS);
+    }
+
+    /**
+     * Up to {@code maxResults} journeys with at most {@code maxChanges} changes, fewest changes first
+     * and then fewest stops. Each leg has at least {@code passengers} free seats on {@code date}; pass
+     * 0 to ignore availability.
+     */
+    public List<Journey> plan(String startStation, String endStation, String date, int passengers,
+                              int maxChanges, int maxResults) {
+        if (startStation == null || endStation == null || maxResults <= 0) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            Integer origin = stationIds.get(stationKey(startStation));
+            Integer target = stationIds.get(stationKey(endStation));
+            if (origin == null || target == null || origin.equals(target)) return Collections.emptyList();
+            return search(origin, target, date, passengers, Math.max(0, maxChanges), maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Journey> search(int origin, int target, String date, int passengers, int maxChanges, int maxResults) {
+        return new Search(origin, target, date, passengers, maxChanges).run(maxResults);
+    }
+
+    /** State of one query: the frontier, the per-station best labels and seat checks already made. */
+    private final class Search {
+        final int origin;
+        final int target;
+        final String date;
+        final int passengers;
+        final int maxChanges;
+        final PriorityQueue<Label> queue = new PriorityQueue<>((a, b) ->
+                a.changes != b.changes ? Integer.compare(a.changes, b.changes) : Integer.compare(a.stops, b.stops));
+        // best[station][changes]: fewest stops queued for that station with that many changes
+        final Map<Integer, int[]> best = new HashMap<>();
+        final Map<Long, Boolean> seatsOk = new HashMap<>();
+
+        Search(int origin, int target, String date, int passengers, int maxChanges) {
+            this.origin = origin;
+            this.target = target;
+            this.date = date;
+            this.passengers = passengers;
+            this.maxChanges = maxChanges;
+        }
+
+        List<Journey> run(int maxResults) {
+            List<Journey> results = new ArrayList<>();
+            Set<String> trainSequences = new HashSet<>();
+            expand(null, origin, 0);
+            int expansions = 0;
+            while (!queue.isEmpty() && results.size() < maxResults && expansions++ < MAX_EXPANSIONS) {
+                Label label = queue.poll();
+                if (label.station == target) {
+                    // the same trains changing at a different station is not a different option
+                    if (trainSequences.add(trainSequence(label))) results.add(toJourney(label));
+                    continue;
+                }
+                if (isDominated(best, label.station, label.changes, label.stops)) continue;
+                if (label.changes < maxChanges) expand(label, label.station, label.changes + 1);
+            }
+            return results;
+        }
+
+        private void expand(Label from, int station, int changes) {
+            CallList here = calls.get(station);
+            int baseStops = from == null ? 0 : from.stops;
+            for (int c = 0; c < here.size; c++) {
+                int train = (int) (here.items[c] >>> 32);
+                int board = (int) here.items[c];
+                if (from != null && train == from.train) continue;
+                int[] route = routes.get(train);
+                for (int j = board + 1; j < route.length; j++) {
+                    int next = route[j];
+                    if (next == origin) break;
+                    int stops = baseStops + (j - board);
+                    if (next != target && isDominated(best, next, changes, stops)) continue;
+                    // riding further only adds legs, so once seats run out they stay out
+                    if (!hasSeats(train, board, j)) break;
+                    if (next != target) record(best, next, changes, stops, maxChanges);
+                    queue.add(new Label(next, changes, stops, train, board, j, from));
+                }
+            }
+        }
+
+        private boolean hasSeats(int train, int board, int alight) {
+            if (passengers <= 0 || date == null) return true;
+            long key = ((long) train << 32) | ((long) board << 16) | alight;
+            return seatsOk.computeIfAbsent(key, k -> bookingService.getAvailableSeatCount(trains.get(train), date,
+                    board, alight) >= passengers);
+        }
+    }
+
+    /**
+     * Whether a label is beaten by one already queued for the station: fewer stops with no more changes,
+     * or fewer changes with no more stops. Equal labels are kept so alternative trains still show up.
+     */
+    private static boolean isDominated(Map<Integer, int[]> best, int station, int changes, int stops) {
+        int[] seen = best.get(station);
+        if (seen == null) return false;
+        for (int c = 0; c <= changes && c < seen.length; c++) {
+            if (seen[c] < stops || (c < changes && seen[c] <= stops)) return true;
+        }
+        return false;
+    }
+
+    private static void record(Map<Integer, int[]> best, int station, int changes, int stops, int maxChanges) {
+        int[] seen = best.computeIfAbsent(station, k -> {
+            int[] init = new int[maxChanges + 1];
+            Arrays.fill(init, Integer.MAX_VALUE);
+            return init;
+        });
+        seen[changes] = Math.min(seen[changes], stops);
+    }
+
+    private static String trainSequence(Label last) {
+        StringBuilder sb = new StringBuilder();
+        for (Label l = last; l != null; l = l.prev) sb.append(l.train).append(',');
+        return sb.toString();
+    }
+
+    private Journey toJourney(Label last) {
+        List<JourneyLeg> legs = new ArrayList<>();
+        for (Label l = last; l != null; l = l.prev) legs.add(new JourneyLeg(trains.get(l.train), l.board, l.alight));
+        Collections.reverse(legs);
+        return new Journey(legs);
+    }
+}
@@ -0,0 +1,240 @@
+package com.booking.service;
+
+import com.booking.model.Train;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of availability search results keyed by normalised (start, end, date). Entries live
+ * for a short TTL and are also dropped as soon as a booking, cancellation or hold changes one of the
+ * trains they list for that date, or a new train starts serving their station pair. Concurrent misses
+ * on the same key share a single load. A load that overlaps an invalidation of its own key is returned to
+ * its callers but not cached; invalidations of other keys leave it alone.
+ */
+public class SearchCache {
+
+    private static final class Key {
+        final String start;
+        final String end;
+        final String date;
+
+        Key(String start, String end, String date) {
+            this.start = start.trim().toLowerCase();
+            this.end = end.trim().toLowerCase();
+            this.date = date == null ? "" : date.trim();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return start.equals(k.start) && end.equals(k.end) && date.equals(k.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, date);
+        }
+    }
+
+    private static final class Entry {
+        final Map<Train, Integer> value;
+        final long expiresAt;
+
+        Entry(Map<Train, Integer> value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** "TRAIN|date" -> cached keys whose result lists that train, for precise invalidation. */
+    private final Map<String, Set<Key>> byRun = new HashMap<>();
+    /** Loads running now; registered and marked stale while holding the cache lock. */
+    private final Map<Key, Load> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final class Load {
+        final CompletableFuture<Map<Train, Integer>> result = new CompletableFuture<>();
+        /** Set when an invalidation hits the key while the load runs; guarded by the cache lock. */
+        boolean stale;
+    }
+
+    public SearchCache(int capacity, long ttlMillis) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    private static String runKey(String trainNumber, String date) {
+        return trainNumber.toUpperCase() + "|" + date;
+    }
+
+    Map<Train, Integer> get(String start, String end, String date, Supplier<Map<Train, Integer>> loader) {
+        Key key = new Key(start, end, date);
+        long now = System.nanoTime();
+        Load mine = null;
+        Load running;
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (now - e.expiresAt < 0) {
+                    hits.incrementAndGet();
+                    return e.value;
+                }
+                remove(key);
+                expirations.incrementAndGet();
+            }
+            running = inFlight.get(key);
+            if (running == null) {
+                mine = new Load();
+                inFlight.put(key, mine);
+            }
+        }
+
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            Map<Train, Integer> value = Collections.unmodifiableMap(new LinkedHashMap<>(loader.get()));
+            synchronized (this) {
+                if (!mine.stale && ttlNanos > 0) put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            }
+            mine.result.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private void put(Key key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        for (Train train : entry.value.keySet()) {
+            byRun.computeIfAbsent(runKey(train.getTrainNumber(), key.date), k -> new HashSet<>()).add(key);
+        }
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > capacity && eldest.hasNext()) {
+            Map.Entry<Key, Entry> victim = eldest.next();
+            eldest.remove();
+            unindex(victim.getKey(), victim.getValue());
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry e = entries.remove(key);
+        if (e != null) unindex(key, e);
+    }
+
+    private void unindex(Key key, Entry e) {
+        for (Train train : e.value.keySet()) {
+            String run = runKey(train.getTrainNumber(), key.date);
+            Set<Key> keys = byRun.get(run);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) byRun.remove(run);
+        }
+    }
+
+    /** Drops results that list {@code train} on {@code date}; call after its availability changed. */
+    synchronized void invalidate(Train train, String date) {
+        for (Map.Entry<Key, Load> load : inFlight.entrySet()) {
+            Key key = load.getKey();
+            if (key.date.equals(date) && train.hasStops(key.start, key.end)) load.getValue().stale = true;
+        }
+        Set<Key> keys = byRun.remove(runKey(train.getTrainNumber(), date));
+        if (keys == null) return;
+        for (Key key : new ArrayList<>(keys)) {
+            remove(key);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /** Drops results for station pairs that the given new trains now serve. */
+    synchronized void invalidateRoutes(List<Train> added) {
+        for (Map.Entry<Key, Load> load : inFlight.entrySet()) {
+            for (Train train : added) {
+                if (train.hasStops(load.getKey().start, load.getKey().end)) load.getValue().stale = true;
+            }
+        }
+        List<Key> stale = new ArrayList<>();
+        for (Key key : entries.keySet()) {
+            for (Train train : added) {
+                if (train.hasStops(key.start, key.end)) {
+                    stale.add(key);
+                    break;
+                }
+            }
+        }
+        for (Key key : stale) {
+            remove(key);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Lookups that missed but waited on another caller's load instead of running their own. */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get() + coalesced.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+}
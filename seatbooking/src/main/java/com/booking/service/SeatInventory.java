@@ -0,0 +1,673 @@
+package com.booking.service;
+
+import com.booking.model.Train;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seat occupancy of one train on one travel date. Each seat carries a bitmask with one bit per leg
+ * of the route (leg i runs from stop i to stop i + 1), so a seat can be sold again on legs that an
+ * earlier ticket does not cover. The masks live in an off-heap slab owned by {@link InventoryStore};
+ * this object is a cheap view over it. Every change takes the run's lock, so allocations, holds and
+ * resyncs are atomic with respect to each other; reads do not lock. Seats can also be held in memory
+ * for a pending booking; held seats count as occupied and survive {@link #syncWith} until the hold is
+ * released or converted into tickets.
+ *
+ * <p>Behind the masks the slab keeps a summary tree over buckets of sixteen seats. Every node holds the
+ * OR and the AND of the masks below it: a node whose OR misses the requested legs is entirely free
+ * there, and one whose AND hits them is entirely taken, so counts and free-run searches on any stretch
+ * skip whole subtrees. For the full route, the common case, each node also keeps the number of taken
+ * seats, the free runs at its two ends and the set of lengths of the runs inside it, so the free count
+ * is read off the root and the best-fitting run is found in O(log S) without allocating. Each change
+ * updates the nodes above the seat.
+ */
+class SeatInventory {
+
+    /** One occupied leg range of a seat, as read back from the tickets table. */
+    static final class Occupancy {
+        final int seat;
+        final int from;
+        final int to;
+
+        Occupancy(int seat, int from, int to) {
+            this.seat = seat;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int BUCKET_SHIFT = 4;
+    // a run-length set has bit (length - 1) for lengths below 64; this bit stands for all longer runs
+    private static final long LONG_RUNS = 1L << 63;
+
+    private final Train train;
+    private final String travelDate;
+    private final int totalSeats;
+    private final int legCount;
+    private final int wordsPerSeat;
+    private final ByteBuffer slab;
+    private final int base;
+    private final int summaryBase;
+    private final int buckets;
+    private final int leaves;
+    private final int levels;
+    private final int nodeWords;
+    private final Object lock;
+    private final InventoryStore store;
+    private final long runKey;
+
+    SeatInventory(Train train, String travelDate, ByteBuffer slab, int base, Object lock, InventoryStore store, long runKey) {
+        this.train = train;
+        this.travelDate = travelDate;
+        this.totalSeats = train.getSeats().size();
+        this.legCount = Math.max(1, train.getLegCount());
+        this.wordsPerSeat = (legCount + 63) >>> 6;
+        this.slab = slab;
+        this.base = base;
+        this.summaryBase = base + Math.max(1, totalSeats) * wordsPerSeat * Long.BYTES;
+        this.buckets = (totalSeats + (1 << BUCKET_SHIFT) - 1) >>> BUCKET_SHIFT;
+        this.leaves = leafCount(totalSeats);
+        this.levels = Integer.numberOfTrailingZeros(leaves);
+        this.nodeWords = 2 * wordsPerSeat + 3;
+        this.lock = lock;
+        this.store = store;
+        this.runKey = runKey;
+    }
+
+    /** Bytes of leg masks and their summary tree needed for one run of the train. */
+    static int slabBytes(Train train) {
+        int seats = train.getSeats().size();
+        int words = (Math.max(1, train.getLegCount()) + 63) >>> 6;
+        return Math.max(1, seats) * words * Long.BYTES + 2 * leafCount(seats) * (2 * words + 3) * Long.BYTES;
+    }
+
+    /** Leaves of the summary tree: buckets of seats, rounded up to a power of two. */
+    private static int leafCount(int seats) {
+        int buckets = (Math.max(1, seats) + (1 << BUCKET_SHIFT) - 1) >>> BUCKET_SHIFT;
+        return buckets == 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+    }
+
+    Train getTrain() {
+        return train;
+    }
+
+    String getTravelDate() {
+        return travelDate;
+    }
+
+    int getLegCount() {
+        return legCount;
+    }
+
+    private boolean isFullRoute(int from, int to) {
+        return from <= 0 && to >= legCount;
+    }
+
+    private int offset(int seat, int w) {
+        return base + ((seat * wordsPerSeat + w) << 3);
+    }
+
+    private long word(int seat, int w) {
+        return (long) WORDS.getVolatile(slab, offset(seat, w));
+    }
+
+    private void setWord(int seat, int w, long value) {
+        WORDS.setRelease(slab, offset(seat, w), value);
+    }
+
+    /** Mask of legs [from, to) that fall into word {@code w} of a seat. */
+    private static long wordMask(int w, int from, int to) {
+        int lo = Math.max(from - (w << 6), 0);
+        int hi = Math.min(to - (w << 6), 64);
+        if (lo >= hi) return 0L;
+        long upper = hi == 64 ? -1L : (1L << hi) - 1;
+        return upper & (-1L << lo);
+    }
+
+    // summary words of a node: OR of each mask word, AND of each mask word, free-run ends, run lengths,
+    // seats taken somewhere on the route
+    private int orSlot(int w) {
+        return w;
+    }
+
+    private int andSlot(int w) {
+        return wordsPerSeat + w;
+    }
+
+    private int endsSlot() {
+        return 2 * wordsPerSeat;
+    }
+
+    private int lengthsSlot() {
+        return 2 * wordsPerSeat + 1;
+    }
+
+    private int takenSlot() {
+        return 2 * wordsPerSeat + 2;
+    }
+
+    private int summaryOffset(int node, int slot) {
+        return summaryBase + ((node * nodeWords + slot) << 3);
+    }
+
+    private long summary(int node, int slot) {
+        return (long) WORDS.getVolatile(slab, summaryOffset(node, slot));
+    }
+
+    /** Stores a summary word; returns whether it changed. Call under the lock. */
+    private boolean setSummary(int node, int slot, long value) {
+        int off = summaryOffset(node, slot);
+        if ((long) WORDS.getVolatile(slab, off) == value) return false;
+        WORDS.setRelease(slab, off, value);
+        return true;
+    }
+
+    private int firstBucket(int node) {
+        return (node << (levels - (31 - Integer.numberOfLeadingZeros(node)))) - leaves;
+    }
+
+    /** Whether the node covers any real bucket; the tree is padded to a power of two. */
+    private boolean exists(int node) {
+        return firstBucket(node) < buckets;
+    }
+
+    private int startSeat(int node) {
+        return firstBucket(node) << BUCKET_SHIFT;
+    }
+
+    /** Real seats below the node. */
+    private int seatsIn(int node) {
+        int span = 1 << (levels - (31 - Integer.numberOfLeadingZeros(node)) + BUCKET_SHIFT);
+        return Math.min(totalSeats, startSeat(node) + span) - startSeat(node);
+    }
+
+    private static long ends(int prefix, int suffix) {
+        return (long) prefix << 32 | suffix;
+    }
+
+    private static int prefix(long ends) {
+        return (int) (ends >>> 32);
+    }
+
+    private static int suffix(long ends) {
+        return (int) ends;
+    }
+
+    /**
+     * The free-run ends of the node. They are stored as the seats outside each end run, and seats are
+     * counted as taken rather than free, so that the zeroed words of a fresh or recycled slab read as
+     * an entirely free run.
+     */
+    private long endsOf(int node) {
+        long stored = summary(node, endsSlot());
+        int seats = seatsIn(node);
+        return ends(seats - prefix(stored), seats - suffix(stored));
+    }
+
+    private long storedEnds(int node, int prefix, int suffix) {
+        int seats = seatsIn(node);
+        return ends(seats - prefix, seats - suffix);
+    }
+
+    private static long lengthBit(int length) {
+        return length >= 64 ? LONG_RUNS : 1L << (length - 1);
+    }
+
+    private boolean isSeatFree(int seat) {
+        for (int w = 0; w < wordsPerSeat; w++) {
+            if (word(seat, w) != 0) return false;
+        }
+        return true;
+    }
+
+    /** Recomputes a bucket's summary from its seats in one pass; returns whether any word changed. */
+    private boolean updateBucket(int node) {
+        int first = startSeat(node);
+        int seats = seatsIn(node);
+        boolean changed = false;
+        long taken = 0L;
+        for (int w = 0; w < wordsPerSeat; w++) {
+            long or = 0L;
+            long and = -1L;
+            for (int i = 0; i < seats; i++) {
+                long mask = word(first + i, w);
+                or |= mask;
+                and &= mask;
+                if (mask != 0) taken |= 1L << i;
+            }
+            changed |= setSummary(node, orSlot(w), or);
+            changed |= setSummary(node, andSlot(w), and);
+        }
+        int prefix = Math.min(seats, Long.numberOfTrailingZeros(taken));
+        int suffix = taken == 0 ? seats : Long.numberOfLeadingZeros(taken) - (64 - seats);
+        long lengths = 0L;
+        if (taken != 0) {
+            // free runs strictly between the first and the last taken seat
+            long inner = ~taken & ((1L << (seats - suffix)) - 1) & (-1L << prefix);
+            while (inner != 0) {
+                int start = Long.numberOfTrailingZeros(inner);
+                int length = Long.numberOfTrailingZeros(~(inner >>> start));
+                lengths |= lengthBit(length);
+                inner &= ~(((1L << length) - 1) << start);
+            }
+        }
+        changed |= setSummary(node, endsSlot(), storedEnds(node, prefix, suffix));
+        changed |= setSummary(node, lengthsSlot(), lengths);
+        changed |= setSummary(node, takenSlot(), Long.bitCount(taken));
+        return changed;
+    }
+
+    /** Recomputes an inner node's summary from its children; returns whether any word changed. */
+    private boolean updateNode(int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        boolean changed = false;
+        if (!exists(right)) {
+            for (int slot = 0; slot < nodeWords; slot++) changed |= setSummary(node, slot, summary(left, slot));
+            return changed;
+        }
+        for (int w = 0; w < wordsPerSeat; w++) {
+            changed |= setSummary(node, orSlot(w), summary(left, orSlot(w)) | summary(right, orSlot(w)));
+            changed |= setSummary(node, andSlot(w), summary(left, andSlot(w)) & summary(right, andSlot(w)));
+        }
+        long l = endsOf(left);
+        long r = endsOf(right);
+        int leftSeats = seatsIn(left);
+        int rightSeats = seatsIn(right);
+        changed |= setSummary(node, endsSlot(), storedEnds(node, prefix(l) == leftSeats ? leftSeats + prefix(r) : prefix(l),
+                suffix(r) == rightSeats ? rightSeats + suffix(l) : suffix(r)));
+        long lengths = summary(left, lengthsSlot()) | summary(right, lengthsSlot());
+        // the run across the middle is inside this node unless it reaches one of its ends
+        int middle = suffix(l) + prefix(r);
+        if (middle > 0 && suffix(l) < leftSeats && prefix(r) < rightSeats) lengths |= lengthBit(middle);
+        changed |= setSummary(node, lengthsSlot(), lengths);
+        changed |= setSummary(node, takenSlot(), summary(left, takenSlot()) + summary(right, takenSlot()));
+        return changed;
+    }
+
+    /** Updates the summary path above a changed seat, stopping where nothing changes. Call under the lock. */
+    private void refresh(int seat) {
+        int node = leaves + (seat >>> BUCKET_SHIFT);
+        if (!updateBucket(node)) return;
+        for (node >>>= 1; node >= 1; node >>>= 1) {
+            if (!updateNode(node)) return;
+        }
+    }
+
+    private boolean allFree(int node, int from, int to) {
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            if ((summary(node, orSlot(w)) & wordMask(w, from, to)) != 0) return false;
+        }
+        return true;
+    }
+
+    private boolean noneFree(int node, int from, int to) {
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            if ((summary(node, andSlot(w)) & wordMask(w, from, to)) != 0) return true;
+        }
+        return false;
+    }
+
+    private int countFree(int node, int lo, int hi, int from, int to) {
+        if (lo >= buckets || noneFree(node, from, to)) return 0;
+        int first = lo << BUCKET_SHIFT;
+        int last = Math.min(totalSeats, hi << BUCKET_SHIFT);
+        if (allFree(node, from, to)) return last - first;
+        if (node >= leaves) {
+            int count = 0;
+            for (int seat = first; seat < last; seat++) {
+                if (isRangeFree(seat, from, to)) count++;
+            }
+            return count;
+        }
+        int mid = (lo + hi) >>> 1;
+        return countFree(2 * node, lo, mid, from, to) + countFree(2 * node + 1, mid, hi, from, to);
+    }
+
+    /** The first seat at or after {@code start} that is free (or taken) on legs [from, to), or -1. */
+    private int firstSeat(int node, int lo, int hi, int start, boolean free, int from, int to) {
+        if (lo >= buckets || hi << BUCKET_SHIFT <= start) return -1;
+        if (free ? noneFree(node, from, to) : allFree(node, from, to)) return -1;
+        int first = Math.max(start, lo << BUCKET_SHIFT);
+        if (free ? allFree(node, from, to) : noneFree(node, from, to)) return first;
+        if (node >= leaves) {
+            int last = Math.min(totalSeats, hi << BUCKET_SHIFT);
+            for (int seat = first; seat < last; seat++) {
+                if (isRangeFree(seat, from, to) == free) return seat;
+            }
+            return -1;
+        }
+        int mid = (lo + hi) >>> 1;
+        int found = firstSeat(2 * node, lo, mid, start, free, from, to);
+        return found >= 0 ? found : firstSeat(2 * node + 1, mid, hi, start, free, from, to);
+    }
+
+    private int firstSeat(int start, boolean free, int from, int to) {
+        return start >= totalSeats ? -1 : firstSeat(1, 0, leaves, start, free, from, to);
+    }
+
+    private boolean isRangeFree(int seat, int from, int to) {
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            if ((word(seat, w) & wordMask(w, from, to)) != 0) return false;
+        }
+        return true;
+    }
+
+    /** Sets legs [from, to) of the seat if they are all clear. Call under the lock. */
+    private boolean claimRange(int seat, int from, int to) {
+        if (!isRangeFree(seat, from, to)) return false;
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) setWord(seat, w, word(seat, w) | wordMask(w, from, to));
+        refresh(seat);
+        return true;
+    }
+
+    /** Clears legs [from, to) of the seat. Call under the lock. */
+    private void clearRange(int seat, int from, int to) {
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) setWord(seat, w, word(seat, w) & ~wordMask(w, from, to));
+        refresh(seat);
+    }
+
+    private boolean validRange(int from, int to) {
+        return from >= 0 && to <= legCount && from < to;
+    }
+
+    int getAvailableCount() {
+        return getAvailableCount(0, legCount);
+    }
+
+    int getAvailableCount(int from, int to) {
+        if (!validRange(from, to)) return 0;
+        if (isFullRoute(from, to)) return buckets == 0 ? 0 : totalSeats - (int) summary(1, takenSlot());
+        return countFree(1, 0, leaves, from, to);
+    }
+
+    boolean isFree(int seat, int from, int to) {
+        return seat >= 0 && seat < totalSeats && validRange(from, to) && isRangeFree(seat, from, to);
+    }
+
+    /**
+     * Whether legs [from, to) of the seat would be free once legs [releasedFrom, releasedTo) are released.
+     */
+    boolean isFreeAfterRelease(int seat, int from, int to, int releasedFrom, int releasedTo) {
+        if (seat < 0 || seat >= totalSeats || !validRange(from, to)) return false;
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            long remaining = word(seat, w) & ~wordMask(w, releasedFrom, releasedTo);
+            if ((remaining & wordMask(w, from, to)) != 0) return false;
+        }
+        return true;
+    }
+
+    boolean occupy(int seat) {
+        return occupy(seat, 0, legCount);
+    }
+
+    boolean occupy(int seat, int from, int to) {
+        if (seat < 0 || seat >= totalSeats || !validRange(from, to)) return false;
+        synchronized (lock) {
+            return claimRange(seat, from, to);
+        }
+    }
+
+    void release(int seat) {
+        release(seat, 0, legCount);
+    }
+
+    void release(int seat, int from, int to) {
+        if (seat < 0 || seat >= totalSeats || !validRange(from, to)) return;
+        synchronized (lock) {
+            clearRange(seat, from, to);
+        }
+    }
+
+    /** Applies a set of releases followed by a set of new occupancies under one lock. */
+    void apply(Collection<Occupancy> released, Collection<Occupancy> occupied) {
+        synchronized (lock) {
+            for (Occupancy o : released) release(o.seat, o.from, o.to);
+            for (Occupancy o : occupied) occupy(o.seat, o.from, o.to);
+        }
+    }
+
+    int[] allocate(int count) {
+        return allocate(count, 0, legCount);
+    }
+
+    /**
+     * Reserves seats for a group of {@code count} travelling over legs [from, to): the lowest seats of
+     * the smallest free run that fits the group, otherwise the largest run and then the best fit for the
+     * rest. Runs are found through the summary tree and claimed as soon as they are picked. Returns null
+     * (and reserves nothing) if not enough seats are free.
+     */
+    int[] allocate(int count, int from, int to) {
+        if (count <= 0 || !validRange(from, to)) return null;
+        synchronized (lock) {
+            if (getAvailableCount(from, to) < count) return null;
+            int[] chosen = new int[count];
+            int filled = 0;
+            while (filled < count) {
+                long run = pickRun(count - filled, from, to);
+                if (run < 0) break;
+                int start = (int) (run >>> 32);
+                int take = Math.min(count - filled, (int) run);
+                int claimed = 0;
+                while (claimed < take && claimRange(start + claimed, from, to)) chosen[filled++] = start + claimed++;
+                if (claimed < take) break;
+            }
+            if (filled < count) {
+                // only if the summary disagreed with the masks, which every change keeps in step under the lock
+                for (int i = 0; i < filled; i++) clearRange(chosen[i], from, to);
+                return null;
+            }
+            Arrays.sort(chosen);
+            return chosen;
+        }
+    }
+
+    /**
+     * The smallest free run of at least {@code wanted} seats, otherwise the largest one, as
+     * start << 32 | length; -1 if no seat is free. Ties go to the lowest start. On a partial route the
+     * free runs are walked one by one, skipping taken and free subtrees whole.
+     */
+    private long pickRun(int wanted, int from, int to) {
+        if (isFullRoute(from, to)) return pickFullRouteRun(wanted);
+        long best = -1;
+        long largest = -1;
+        int seat = firstSeat(0, true, from, to);
+        while (seat >= 0) {
+            int end = firstSeat(seat, false, from, to);
+            if (end < 0) end = totalSeats;
+            long run = (long) seat << 32 | (end - seat);
+            if (end - seat == wanted) return run;
+            if (end - seat > wanted) best = better(best, run, false);
+            largest = better(largest, run, true);
+            seat = firstSeat(end, true, from, to);
+        }
+        return best >= 0 ? best : largest;
+    }
+
+    /** {@link #pickRun} for the full route, from the run lengths kept in the tree. */
+    private long pickFullRouteRun(int wanted) {
+        if (buckets == 0) return -1;
+        long rootEnds = endsOf(1);
+        int prefix = prefix(rootEnds);
+        int suffix = suffix(rootEnds);
+        if (prefix >= totalSeats) return totalSeats;
+        long prefixRun = prefix;
+        long suffixRun = (long) (totalSeats - suffix) << 32 | suffix;
+        long lengths = summary(1, lengthsSlot());
+
+        long best = -1;
+        if (prefix >= wanted) best = better(best, prefixRun, false);
+        if (suffix >= wanted) best = better(best, suffixRun, false);
+        long fitting = wanted >= 64 ? 0L : lengths & ~LONG_RUNS & (-1L << (wanted - 1));
+        if (fitting != 0) best = better(best, locate(1, Long.numberOfTrailingZeros(fitting) + 1), false);
+        if ((lengths & LONG_RUNS) != 0 && (best < 0 || (int) best >= 64)) best = better(best, longRun(1, wanted, false), false);
+        if (best >= 0) return best;
+
+        long largest = -1;
+        if (prefix > 0) largest = better(largest, prefixRun, true);
+        if (suffix > 0) largest = better(largest, suffixRun, true);
+        if ((lengths & LONG_RUNS) != 0) {
+            largest = better(largest, longRun(1, 0, true), true);
+        } else if (lengths != 0) {
+            largest = better(largest, locate(1, 64 - Long.numberOfLeadingZeros(lengths)), true);
+        }
+        return largest;
+    }
+
+    /** The preferable of two runs (start << 32 | length, or -1): the shorter or longer one, then the lower start. */
+    private static long better(long a, long b, boolean longer) {
+        if (b < 0) return a;
+        if (a < 0) return b;
+        int lengthA = (int) a;
+        int lengthB = (int) b;
+        if (lengthA != lengthB) return (lengthA > lengthB) == longer ? a : b;
+        return a >>> 32 <= b >>> 32 ? a : b;
+    }
+
+    /** The lowest run of exactly {@code length} (below 64) free seats inside the node, or -1. */
+    private long locate(int node, int length) {
+        long bit = lengthBit(length);
+        if (node >= leaves) {
+            int first = startSeat(node);
+            int last = first + seatsIn(node);
+            int run = 0;
+            for (int seat = first; seat < last; seat++) {
+                if (isSeatFree(seat)) {
+                    run++;
+                    continue;
+                }
+                if (run == length && seat - run > first) return (long) (seat - run) << 32 | length;
+                run = 0;
+            }
+            return -1;
+        }
+        int left = 2 * node;
+        int right = left + 1;
+        if (!exists(right)) return locate(left, length);
+        if ((summary(left, lengthsSlot()) & bit) != 0) return locate(left, length);
+        long middle = middleRun(left, right);
+        if (middle >= 0 && (int) middle == length) return middle;
+        return (summary(right, lengthsSlot()) & bit) != 0 ? locate(right, length) : -1;
+    }
+
+    /**
+     * Among the runs of 64 or more free seats inside the node, the shortest one of at least
+     * {@code wanted} seats, or the longest one; -1 if there is none. There are at most S / 64 of them.
+     */
+    private long longRun(int node, int wanted, boolean longest) {
+        if (node >= leaves) return -1;
+        int left = 2 * node;
+        int right = left + 1;
+        if (!exists(right)) return longRun(left, wanted, longest);
+        long found = -1;
+        if ((summary(left, lengthsSlot()) & LONG_RUNS) != 0) found = longRun(left, wanted, longest);
+        long middle = middleRun(left, right);
+        if (middle >= 0 && (int) middle >= 64 && (int) middle >= wanted) found = better(found, middle, longest);
+        if ((summary(right, lengthsSlot()) & LONG_RUNS) != 0) found = better(found, longRun(right, wanted, longest), longest);
+        return found;
+    }
+
+    /** The run across the boundary of two sibling nodes if it lies inside their parent, or -1. */
+    private long middleRun(int left, int right) {
+        int leftSuffix = suffix(endsOf(left));
+        int rightPrefix = prefix(endsOf(right));
+        if (leftSuffix + rightPrefix == 0 || leftSuffix >= seatsIn(left) || rightPrefix >= seatsIn(right)) return -1;
+        return (long) (startSeat(right) - leftSuffix) << 32 | (leftSuffix + rightPrefix);
+    }
+
+    /** Allocates seats like {@link #allocate(int, int, int)} and records them under {@code holdId}. */
+    int[] hold(long holdId, int count, int from, int to) {
+        synchronized (lock) {
+            int[] seats = allocate(count, from, to);
+            if (seats == null) return null;
+            List<Occupancy> held = new ArrayList<>(seats.length);
+            for (int seat : seats) held.add(new Occupancy(seat, from, to));
+            store.holds(runKey, true).put(holdId, held);
+            return seats;
+        }
+    }
+
+    void releaseHold(long holdId) {
+        synchronized (lock) {
+            Map<Long, List<Occupancy>> holds = store.holds(runKey, false);
+            List<Occupancy> held = holds == null ? null : holds.remove(holdId);
+            if (held == null) return;
+            for (Occupancy o : held) release(o.seat, o.from, o.to);
+        }
+    }
+
+    /** Forgets a hold whose seats are now backed by ticket rows; the legs stay occupied. */
+    void convertHold(long holdId) {
+        synchronized (lock) {
+            Map<Long, List<Occupancy>> holds = store.holds(runKey, false);
+            if (holds != null) holds.remove(holdId);
+        }
+    }
+
+    /**
+     * The held seats, or null if the hold is unknown or any of its seats overlaps one of the booked
+     * ranges (another instance sold it in the meantime).
+     */
+    int[] heldSeats(long holdId, Collection<Occupancy> booked) {
+        synchronized (lock) {
+            Map<Long, List<Occupancy>> holds = store.holds(runKey, false);
+            List<Occupancy> held = holds == null ? null : holds.get(holdId);
+            if (held == null) return null;
+            Map<Integer, Occupancy> bySeat = new HashMap<>();
+            for (Occupancy o : held) bySeat.put(o.seat, o);
+            for (Occupancy b : booked) {
+                Occupancy h = bySeat.get(b.seat);
+                if (h != null && b.from < h.to && h.from < b.to) return null;
+            }
+            int[] seats = new int[held.size()];
+            for (int i = 0; i < seats.length; i++) seats[i] = held.get(i).seat;
+            return seats;
+        }
+    }
+
+    /**
+     * Makes this inventory match the given occupancy, plus any seats still on hold, if it has drifted
+     * from it, e.g. after another application instance booked or cancelled on the same train and date.
+     * Only words that differ are rewritten. Single-seat changes take the same lock, so none of them can
+     * land between reading a word and rewriting it.
+     */
+    void syncWith(Collection<Occupancy> booked) {
+        synchronized (lock) {
+            List<Occupancy> occupancy = new ArrayList<>(booked);
+            Map<Long, List<Occupancy>> holds = store.holds(runKey, false);
+            if (holds != null) {
+                for (List<Occupancy> held : holds.values()) occupancy.addAll(held);
+            }
+            long[] expected = new long[totalSeats * wordsPerSeat];
+            for (Occupancy o : occupancy) {
+                int from = Math.max(0, o.from);
+                int to = Math.min(legCount, o.to);
+                if (o.seat < 0 || o.seat >= totalSeats || from >= to) continue;
+                for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+                    expected[o.seat * wordsPerSeat + w] |= wordMask(w, from, to);
+                }
+            }
+            for (int seat = 0; seat < totalSeats; seat++) {
+                boolean changed = false;
+                for (int w = 0; w < wordsPerSeat; w++) {
+                    long want = expected[seat * wordsPerSeat + w];
+                    if (word(seat, w) != want) {
+                        setWord(seat, w, want);
+                        changed = true;
+                    }
+                }
+                if (changed) refresh(seat);
+            }
+        }
+    }
+}
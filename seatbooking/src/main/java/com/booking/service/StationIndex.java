@@ -0,0 +1,172 @@
+package com.booking.service;
+
+import com.booking.model.Train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Station names drawn from every train route. The index is a sorted array of lower-cased names, so
+ * completing a prefix is a binary search plus a short scan. Results are ranked by how many trains call
+ * at the station. Typo suggestions use a banded edit distance, which gives up on a name as soon
+ * as it is certain to exceed the bound. Readers work on an immutable snapshot; added trains are merged
+ * into a new snapshot.
+ */
+public class StationIndex {
+
+    private static final class Snapshot {
+        final String[] keys;
+        final String[] names;
+        final int[] trainCounts;
+
+        Snapshot(String[] keys, String[] names, int[] trainCounts) {
+            this.keys = keys;
+            this.names = names;
+            this.trainCounts = trainCounts;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0], new int[0]);
+
+    public StationIndex(TrainService trainService) {
+        trainService.addTrainListener(this::addTrains);
+        addTrains(trainService.getAllTrains());
+    }
+
+    private static String key(String station) {
+        return station.trim().toLowerCase();
+    }
+
+    private synchronized void addTrains(List<Train> added) {
+        Snapshot current = snapshot;
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < current.keys.length; i++) {
+            counts.put(current.keys[i], current.trainCounts[i]);
+            names.put(current.keys[i], current.names[i]);
+        }
+        boolean changed = false;
+        for (Train train : added) {
+            LinkedHashSet<String> stops = new LinkedHashSet<>();
+            for (String stop : train.getRoute()) {
+                if (stop != null && !stop.isBlank()) stops.add(stop.trim());
+            }
+            for (String stop : stops) {
+                String k = key(stop);
+                names.putIfAbsent(k, stop);
+                counts.merge(k, 1, Integer::sum);
+                changed = true;
+            }
+        }
+        if (!changed) return;
+        String[] keys = counts.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        String[] display = new String[keys.length];
+        int[] trainCounts = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            display[i] = names.get(keys[i]);
+            trainCounts[i] = counts.get(keys[i]);
+        }
+        snapshot = new Snapshot(keys, display, trainCounts);
+    }
+
+    public int size() {
+        return snapshot.keys.length;
+    }
+
+    /** The station's name as spelled in the catalogue, or null if no train calls there. */
+    public String resolve(String input) {
+        if (input == null) return null;
+        Snapshot s = snapshot;
+        int i = Arrays.binarySearch(s.keys, key(input));
+        return i >= 0 ? s.names[i] : null;
+    }
+
+    /** Stations starting with {@code prefix}, busiest first, at most {@code limit}. */
+    public List<String> complete(String prefix, int limit) {
+        if (prefix == null || limit <= 0) return Collections.emptyList();
+        String p = key(prefix);
+        if (p.isEmpty()) return Collections.emptyList();
+        Snapshot s = snapshot;
+        int lo = Arrays.binarySearch(s.keys, p);
+        if (lo < 0) lo = -lo - 1;
+        int hi = lo;
+        while (hi < s.keys.length && s.keys[hi].startsWith(p)) hi++;
+        Integer[] order = new Integer[hi - lo];
+        for (int i = 0; i < order.length; i++) order[i] = lo + i;
+        Arrays.sort(order, (a, b) -> s.trainCounts[a] != s.trainCounts[b]
+                ? Integer.compare(s.trainCounts[b], s.trainCounts[a]) : Integer.compare(a, b));
+        List<String> result = new ArrayList<>(Math.min(limit, order.length));
+        for (int i = 0; i < order.length && result.size() < limit; i++) result.add(s.names[order[i]]);
+        return result;
+    }
+
+    /**
+     * Stations within a small edit distance of {@code input} (1 for short names, 2 otherwise), closest
+     * first and then busiest. Prefix completions are listed ahead of typo matches.
+     */
+    public List<String> suggest(String input, int limit) {
+        if (input == null || limit <= 0) return Collections.emptyList();
+        String q = key(input);
+        if (q.isEmpty()) return Collections.emptyList();
+        int maxDistance = q.length() <= 4 ? 1 : 2;
+        Snapshot s = snapshot;
+
+        LinkedHashSet<String> result = new LinkedHashSet<>(complete(input, limit));
+        List<int[]> matches = new ArrayList<>();
+        for (int i = 0; i < s.keys.length; i++) {
+            int d = boundedDistance(q, s.keys[i], maxDistance);
+            if (d <= maxDistance) matches.add(new int[] {d, i});
+        }
+        matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : Integer.compare(s.trainCounts[b[1]], s.trainCounts[a[1]]));
+        for (int[] m : matches) {
+            if (result.size() >= limit) break;
+            result.add(s.names[m[1]]);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Edit distance between {@code a} and {@code b} counting insertions, deletions, substitutions and
+     * swaps of adjacent letters (optimal string alignment), or {@code max + 1} once it must exceed
+     * {@code max}. Only the diagonal band of width 2 * max + 1 is computed.
+     */
+    static int boundedDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int big = max + 1;
+        int[] before = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j <= max ? j : big;
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            Arrays.fill(curr, big);
+            curr[0] = i <= max ? i : big;
+            int rowMin = curr[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, before[j - 2] + 1);
+                }
+                curr[j] = Math.min(v, big);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > max) return big;
+            int[] tmp = before;
+            before = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return Math.min(prev[m], big);
+    }
+}
@@ -0,0 +1,421 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.SeatsUnavailableException;
+import com.booking.exception.ValidationException;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.util.AppConfig;
+import com.booking.util.InputValidator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Surge handling for scheduled booking-window openings, when almost all traffic hits a few trains
+ * within seconds. A surge names the trains, the travel date and the moment the window opens.
+ * SURGE_PREWARM_SECONDS (default 60) before the opening, the seat inventory of every run is created and
+ * reconciled with storage, so the first bookings find it ready. Bookings go through the run's
+ * group-commit queue, which has a single writer per run; from the opening until the surge closes, a
+ * request for more seats than its stretch has left, counting seats already queued on the same or any
+ * overlapping stretch, is answered sold-out at once instead of queueing. {@link Surge#report()} gives
+ * throughput and fairness figures at any time, and the report is logged when the surge closes.
+ */
+public class SurgeMode implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SurgeMode.class.getName());
+
+    public enum State { SCHEDULED, WARM, OPEN, CLOSED }
+
+    private enum Result { BOOKED, SOLD_OUT, REJECTED, FAILED }
+
+    private static final class Outcome {
+        final String segment;
+        final long seq;
+        final int seats;
+        final Result result;
+        final long startedAt;
+        final long doneAt;
+
+        Outcome(String segment, long seq, int seats, Result result, long startedAt, long doneAt) {
+            this.segment = segment;
+            this.seq = seq;
+            this.seats = seats;
+            this.result = result;
+            this.startedAt = startedAt;
+            this.doneAt = doneAt;
+        }
+    }
+
+    /** Throughput and fairness of one surge. */
+    public static class Report {
+        private long requests;
+        private long booked;
+        private long tickets;
+        private long soldOutFast;
+        private long rejected;
+        private long failed;
+        private long elapsedMillis;
+        private double p50Millis;
+        private double p99Millis;
+        private double maxMillis;
+        private long fifoInversions;
+        private final Map<String, Long> soldOutAfterMillis = new LinkedHashMap<>();
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getBooked() {
+            return booked;
+        }
+
+        public long getTickets() {
+            return tickets;
+        }
+
+        /** Requests answered sold-out before reaching the queue. */
+        public long getSoldOutFast() {
+            return soldOutFast;
+        }
+
+        /** Requests that were queued but found no seats when their batch was written. */
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /** From the first request to the last answer. */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getTicketsPerSecond() {
+            return elapsedMillis == 0 ? 0 : tickets * 1000.0 / elapsedMillis;
+        }
+
+        public double getRequestsPerSecond() {
+            return elapsedMillis == 0 ? 0 : requests * 1000.0 / elapsedMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        /**
+         * Bookings that succeeded although an earlier request on the same stretch, for no more seats,
+         * had been turned away. Zero means requests were served strictly in arrival order.
+         */
+        public long getFifoInversions() {
+            return fifoInversions;
+        }
+
+        /** Per train, milliseconds from the opening to its first sold-out answer. */
+        public Map<String, Long> getSoldOutAfterMillis() {
+            return soldOutAfterMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests + ", booked=" + booked + ", tickets=" + tickets
+                    + ", soldOutFast=" + soldOutFast + ", rejected=" + rejected + ", failed=" + failed
+                    + ", elapsedMs=" + elapsedMillis
+                    + ", ticketsPerSecond=" + String.format("%.1f", getTicketsPerSecond())
+                    + ", requestsPerSecond=" + String.format("%.1f", getRequestsPerSecond())
+                    + ", p50Ms=" + String.format("%.1f", p50Millis) + ", p99Ms=" + String.format("%.1f", p99Millis)
+                    + ", maxMs=" + String.format("%.1f", maxMillis)
+                    + ", fifoInversions=" + fifoInversions + ", soldOutAfterMs=" + soldOutAfterMillis;
+        }
+    }
+
+    /**
+     * Seats of admitted bookings on one train that are not settled yet, per leg and per stretch; guarded
+     * by itself. A booking stays counted until its future completes, by which time its seats are either
+     * taken in the inventory or given back, so no seat is ever missing from both.
+     */
+    private static final class Queued {
+        final int[] perLeg;
+        final int[][] perStretch;
+
+        Queued(int legs) {
+            this.perLeg = new int[legs];
+            this.perStretch = new int[legs + 1][legs + 1];
+        }
+
+        /**
+         * Most seats a new booking on [from, to) can still get once the queue is written. A seat for it
+         * must be free on every leg and not wanted there by a queued booking, and every queued booking
+         * that spans the whole stretch takes seats that would have suited it.
+         */
+        int room(int freeOnStretch, int[] freePerLeg, int from, int to) {
+            int room = freeOnStretch;
+            for (int a = 0; a <= from; a++) {
+                for (int b = to; b < perStretch.length; b++) room -= perStretch[a][b];
+            }
+            for (int leg = from; leg < to; leg++) room = Math.min(room, freePerLeg[leg - from] - perLeg[leg]);
+            return room;
+        }
+
+        void add(int from, int to, int seats) {
+            for (int leg = from; leg < to; leg++) perLeg[leg] += seats;
+            perStretch[from][to] += seats;
+        }
+    }
+
+    /** One scheduled surge. */
+    public final class Surge {
+        private final List<Train> trains;
+        private final String travelDate;
+        private final Instant opensAt;
+        private final Instant closesAt;
+        private volatile State state = State.SCHEDULED;
+        private final Map<String, Queued> queuedSeats = new ConcurrentHashMap<>();
+        private final Map<String, Long> soldOutAt = new ConcurrentHashMap<>();
+        private final AtomicLong arrivals = new AtomicLong();
+        private final ConcurrentLinkedQueue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+        private Surge(List<Train> trains, String travelDate, Instant opensAt, Instant closesAt) {
+            this.trains = trains;
+            this.travelDate = travelDate;
+            this.opensAt = opensAt;
+            this.closesAt = closesAt;
+        }
+
+        public List<Train> getTrains() {
+            return trains;
+        }
+
+        public String getTravelDate() {
+            return travelDate;
+        }
+
+        public Instant getOpensAt() {
+            return opensAt;
+        }
+
+        public Instant getClosesAt() {
+            return closesAt;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        private synchronized void warm() {
+            if (state != State.SCHEDULED) return;
+            for (Train train : trains) {
+                try {
+                    bookingService.prewarm(train, travelDate);
+                } catch (DatabaseException e) {
+                    LOGGER.log(Level.WARNING, "Could not pre-warm " + train.getTrainNumber() + " for " + travelDate, e);
+                }
+            }
+            state = State.WARM;
+            LOGGER.info("Surge for " + travelDate + " pre-warmed " + trains.size() + " train(s)");
+        }
+
+        private synchronized void open() {
+            if (state == State.CLOSED) return;
+            if (state == State.SCHEDULED) warm();
+            for (Train train : trains) active.put(runKey(train, travelDate), this);
+            state = State.OPEN;
+            LOGGER.info("Surge for " + travelDate + " is open");
+        }
+
+        /** Ends the surge now; bookings for its trains go back to the normal path. */
+        public synchronized void close() {
+            if (state == State.CLOSED) return;
+            boolean wasOpen = state == State.OPEN;
+            for (Train train : trains) active.remove(runKey(train, travelDate), this);
+            state = State.CLOSED;
+            if (wasOpen) LOGGER.info("Surge for " + travelDate + " closed: " + report());
+        }
+
+        /**
+         * Admits a booking of {@code seats} on the stretch, or answers sold-out straight away. Admitted
+         * bookings are handed to {@code enqueue}.
+         */
+        CompletableFuture<List<Ticket>> book(Train train, int fromStop, int toStop, int seats,
+                                             Supplier<CompletableFuture<List<Ticket>>> enqueue) {
+            long startedAt = System.nanoTime();
+            long seq = arrivals.incrementAndGet();
+            String segment = train.getTrainNumber().toUpperCase() + "|" + fromStop + "|" + toStop;
+            Queued queued = queuedSeats.computeIfAbsent(train.getTrainNumber().toUpperCase(),
+                    k -> new Queued(Math.max(1, train.getLegCount())));
+
+            // seats already allocated are gone from the inventory, unsettled ones are counted in the gate;
+            // both are read under the gate's lock, so a booking settling meanwhile is seen in one of them
+            int room;
+            synchronized (queued) {
+                int free = bookingService.getAvailableSeatCount(train, travelDate, fromStop, toStop);
+                int[] freePerLeg = new int[toStop - fromStop];
+                for (int leg = fromStop; leg < toStop; leg++) {
+                    freePerLeg[leg - fromStop] = bookingService.getAvailableSeatCount(train, travelDate, leg, leg + 1);
+                }
+                room = queued.room(free, freePerLeg, fromStop, toStop);
+                if (seats <= room) queued.add(fromStop, toStop, seats);
+            }
+            if (seats > room) {
+                soldOutAt.putIfAbsent(train.getTrainNumber(), Math.max(0, Duration.between(opensAt, Instant.now()).toMillis()));
+                outcomes.add(new Outcome(segment, seq, seats, Result.SOLD_OUT, startedAt, System.nanoTime()));
+                return CompletableFuture.failedFuture(new SeatsUnavailableException(seats, Math.max(0, room)));
+            }
+
+            Runnable release = () -> {
+                synchronized (queued) {
+                    queued.add(fromStop, toStop, -seats);
+                }
+            };
+            CompletableFuture<List<Ticket>> result;
+            try {
+                result = enqueue.get();
+            } catch (RuntimeException e) {
+                release.run();
+                throw e;
+            }
+            result.whenComplete((tickets, e) -> {
+                release.run();
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                Result r = cause == null ? Result.BOOKED
+                        : cause instanceof SeatsUnavailableException ? Result.REJECTED : Result.FAILED;
+                outcomes.add(new Outcome(segment, seq, seats, r, startedAt, System.nanoTime()));
+            });
+            return result;
+        }
+
+        /** Figures for the requests answered so far. */
+        public Report report() {
+            List<Outcome> all = new ArrayList<>(outcomes);
+            all.sort(Comparator.comparingLong(o -> o.seq));
+            Report report = new Report();
+            report.requests = all.size();
+            long firstStarted = Long.MAX_VALUE;
+            long lastDone = Long.MIN_VALUE;
+            long[] latencies = new long[all.size()];
+            Map<String, Integer> smallestTurnedAway = new HashMap<>();
+            for (int i = 0; i < all.size(); i++) {
+                Outcome o = all.get(i);
+                latencies[i] = o.doneAt - o.startedAt;
+                firstStarted = Math.min(firstStarted, o.startedAt);
+                lastDone = Math.max(lastDone, o.doneAt);
+                switch (o.result) {
+                    case BOOKED:
+                        report.booked++;
+                        report.tickets += o.seats;
+                        Integer turnedAway = smallestTurnedAway.get(o.segment);
+                        if (turnedAway != null && o.seats >= turnedAway) report.fifoInversions++;
+                        break;
+                    case SOLD_OUT:
+                    case REJECTED:
+                        if (o.result == Result.SOLD_OUT) report.soldOutFast++; else report.rejected++;
+                        smallestTurnedAway.merge(o.segment, o.seats, Math::min);
+                        break;
+                    default:
+                        report.failed++;
+                }
+            }
+            Arrays.sort(latencies);
+            report.elapsedMillis = all.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(lastDone - firstStarted);
+            report.p50Millis = percentileMillis(latencies, 0.50);
+            report.p99Millis = percentileMillis(latencies, 0.99);
+            report.maxMillis = latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6;
+            for (Train train : trains) {
+                Long at = soldOutAt.get(train.getTrainNumber());
+                if (at != null) report.soldOutAfterMillis.put(train.getTrainNumber(), at);
+            }
+            return report;
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+    }
+
+    private static String runKey(Train train, String date) {
+        return train.getTrainNumber().toUpperCase() + "|" + date;
+    }
+
+    private final BookingService bookingService;
+    private final long prewarmMillis;
+    private final Map<String, Surge> active = new ConcurrentHashMap<>();
+    private final List<Surge> surges = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "booking-surge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    SurgeMode(BookingService bookingService) {
+        this.bookingService = bookingService;
+        this.prewarmMillis = TimeUnit.SECONDS.toMillis(Math.max(0, AppConfig.getInt("SURGE_PREWARM_SECONDS", 60)));
+    }
+
+    /**
+     * Schedules a surge for the trains on {@code travelDate}, open from {@code opensAt} for
+     * {@code duration}. An opening in the past starts the surge at once.
+     */
+    public Surge schedule(List<Train> trains, String travelDate, Instant opensAt, Duration duration) {
+        if (trains == null || trains.isEmpty()) throw new ValidationException("No trains given for the surge.");
+        if (travelDate == null || !InputValidator.isValidDate(travelDate)) {
+            throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
+        }
+        if (duration == null || duration.isNegative() || duration.isZero()) {
+            throw new ValidationException("Surge duration must be positive.");
+        }
+        Surge surge = new Surge(new ArrayList<>(trains), travelDate, opensAt, opensAt.plus(duration));
+        surges.add(surge);
+        long untilOpen = Duration.between(Instant.now(), opensAt).toMillis();
+        // one scheduler thread runs these in order, so the surge is always warm before it opens
+        scheduler.schedule(surge::warm, Math.max(0, untilOpen - prewarmMillis), TimeUnit.MILLISECONDS);
+        scheduler.schedule(surge::open, Math.max(0, untilOpen), TimeUnit.MILLISECONDS);
+        scheduler.schedule(surge::close, Math.max(0, untilOpen + duration.toMillis()), TimeUnit.MILLISECONDS);
+        return surge;
+    }
+
+    /** Every surge scheduled since startup, oldest first. */
+    public List<Surge> getSurges() {
+        return surges;
+    }
+
+    /** The open surge covering the run, or null. */
+    Surge find(Train train, String date) {
+        return active.isEmpty() ? null : active.get(runKey(train, date));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,140 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.model.Train;
+import com.booking.repository.TicketRecord;
+import com.booking.repository.TicketRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tickets joined with their trains to a file as the repository hands them over, one row at a
+ * time, so memory use does not grow with the number of tickets.
+ */
+public class TicketExporter {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] COLUMNS = {"pnr", "username", "booked_by", "train_number", "train_name",
+            "seat_number", "travel_date", "origin", "destination", "status", "created_at"};
+
+    private final TicketRepository tickets;
+    private final TrainService trainService;
+
+    public TicketExporter(TicketRepository tickets, TrainService trainService) {
+        this.tickets = tickets;
+        this.trainService = trainService;
+    }
+
+    /**
+     * Exports tickets matching the optional filters (null or blank means no filter).
+     * Dates are inclusive and in YYYY-MM-DD form.
+     * @return number of tickets written
+     */
+    public long export(Path file, Format format, boolean gzip, String fromDate, String toDate, String trainNumber) {
+        long rows;
+        try (Writer out = openWriter(file, gzip)) {
+            if (format == Format.CSV) out.write(String.join(",", COLUMNS) + "\n");
+            String[] values = new String[COLUMNS.length];
+            rows = tickets.forEach(fromDate, toDate, trainNumber, t -> {
+                fill(t, values);
+                try {
+                    if (format == Format.CSV) writeCsv(out, values); else writeJson(out, values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (DatabaseException e) {
+            throw new DatabaseException("Failed to export tickets", e);
+        } catch (IOException e) {
+            throw new ValidationException("Could not write export file " + file + ": " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw new ValidationException("Could not write export file " + file + ": " + e.getCause().getMessage(), e.getCause());
+        }
+        return rows;
+    }
+
+    private static Writer openWriter(Path file, boolean gzip) throws IOException {
+        OutputStream os = Files.newOutputStream(file);
+        if (gzip) os = new GZIPOutputStream(os, BUFFER_SIZE);
+        return new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private void fill(TicketRecord t, String[] values) {
+        Train train = trainService.findTrain(t.getTrainNumber());
+        List<String> stops = train == null ? List.of() : train.getRoute();
+        values[0] = t.getPnr();
+        values[1] = t.getUsername();
+        values[2] = t.getBookedBy();
+        values[3] = t.getTrainNumber();
+        values[4] = train == null ? null : train.getTrainName();
+        values[5] = t.getSeatNumber();
+        values[6] = t.getTravelDate();
+
+        int from = t.getFromIdx() < 0 ? 0 : t.getFromIdx();
+        int to = t.getToIdx() < 0 ? stops.size() - 1 : t.getToIdx();
+        values[7] = from < stops.size() ? stops.get(from) : null;
+        values[8] = to >= 0 && to < stops.size() ? stops.get(to) : null;
+
+        values[9] = t.getStatus();
+        values[10] = t.getCreatedAt() == null ? null : t.getCreatedAt().toString();
+    }
+
+    private static void writeCsv(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            String v = values[i];
+            if (v == null) continue;
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(v.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(v);
+            }
+        }
+        out.write('\n');
+    }
+
+    private static void writeJson(Writer out, String[] values) throws IOException {
+        out.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            out.write('"');
+            out.write(COLUMNS[i]);
+            out.write("\":");
+            String v = values[i];
+            if (v == null) {
+                out.write("null");
+                continue;
+            }
+            out.write('"');
+            for (int k = 0; k < v.length(); k++) {
+                char ch = v.charAt(k);
+                switch (ch) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (ch < 0x20) out.write(String.format("\\u%04x", (int) ch)); else out.write(ch);
+                }
+            }
+            out.write('"');
+        }
+        out.write("}\n");
+    }
+}
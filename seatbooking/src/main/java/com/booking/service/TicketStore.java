@@ -0,0 +1,162 @@
+package com.booking.service;
+
+import com.booking.model.Role;
+import com.booking.model.Seat;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The active tickets this instance knows about, kept as compact records. A record stores the train
+ * ordinal, seat index, travel date as an epoch day and the leg range as primitives. It shares a
+ * single interned passenger {@link User} with every other ticket of the same username, so no per-row
+ * User, date string or username copy is kept; a passenger is forgotten with their last held ticket.
+ * {@link Ticket} objects are built on demand when a caller
+ * asks for one. Only ACTIVE tickets are held (cancelled and completed ones are removed), so the status
+ * is implied rather than stored. Records are keyed by upper-case PNR, in insertion order.
+ */
+final class TicketStore {
+
+    private static final class Record {
+        final String pnr;
+        final User passenger;
+        final int train;
+        final int seat;
+        final int epochDay;
+        final short from;
+        final short to;
+
+        Record(String pnr, User passenger, int train, int seat, int epochDay, short from, short to) {
+            this.pnr = pnr;
+            this.passenger = passenger;
+            this.train = train;
+            this.seat = seat;
+            this.epochDay = epochDay;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /** An interned passenger and the number of held tickets that share it. */
+    private static final class Passenger {
+        final User user;
+        int tickets;
+
+        Passenger(User user) {
+            this.user = user;
+        }
+    }
+
+    private final TrainOrdinals trains;
+    // guarded by this
+    private final Map<String, Passenger> passengers = new HashMap<>();
+    // guarded by this
+    private final Map<String, Record> byPnr = new LinkedHashMap<>();
+
+    TicketStore(TrainOrdinals trains) {
+        this.trains = trains;
+    }
+
+    private static String nameOf(String username) {
+        return username == null ? "" : username;
+    }
+
+    /** The shared passenger object for a username, or a new one if no held ticket has that passenger. */
+    synchronized User passenger(String username) {
+        String name = nameOf(username);
+        Passenger p = passengers.get(name);
+        return p != null ? p.user : new User(name, "", Role.PASSENGER);
+    }
+
+    private User intern(String username) {
+        Passenger p = passengers.computeIfAbsent(nameOf(username), k -> new Passenger(new User(k, "", Role.PASSENGER)));
+        p.tickets++;
+        return p.user;
+    }
+
+    private void release(Record r) {
+        String name = r.passenger.getUsername();
+        Passenger p = passengers.get(name);
+        if (p != null && --p.tickets == 0) passengers.remove(name);
+    }
+
+    private Record compact(Ticket t) {
+        Train train = t.getTrain();
+        return new Record(t.getPnrNumber(), intern(t.getPassenger().getUsername()), trains.of(train),
+                train.indexOfSeat(t.getSeat().getSeatNumber()), (int) InventoryStore.epochDay(t.getTravelDate()),
+                (short) t.getOriginIndex(), (short) t.getDestinationIndex());
+    }
+
+    private Ticket expand(Record r) {
+        Train train = trains.train(r.train);
+        Seat seat = train.getSeats().get(r.seat);
+        return new Ticket(r.pnr, r.passenger, train, seat, LocalDate.ofEpochDay(r.epochDay).toString(), r.from, r.to);
+    }
+
+    /** @return false if a ticket with the same PNR is already held */
+    synchronized boolean add(Ticket ticket) {
+        String pnr = ticket.getPnrNumber().toUpperCase();
+        if (byPnr.containsKey(pnr)) return false;
+        byPnr.put(pnr, compact(ticket));
+        return true;
+    }
+
+    synchronized void addAll(List<Ticket> tickets) {
+        for (Ticket t : tickets) add(t);
+    }
+
+    synchronized boolean contains(String pnr) {
+        return byPnr.containsKey(pnr.toUpperCase());
+    }
+
+    synchronized Ticket get(String pnr) {
+        Record r = byPnr.get(pnr.toUpperCase());
+        return r == null ? null : expand(r);
+    }
+
+    /** Removes the given upper-case PNRs. @return the tickets that were held */
+    synchronized List<Ticket> removeAll(Set<String> pnrs) {
+        List<Ticket> removed = new ArrayList<>();
+        for (String pnr : pnrs) {
+            Record r = byPnr.remove(pnr);
+            if (r != null) {
+                release(r);
+                removed.add(expand(r));
+            }
+        }
+        return removed;
+    }
+
+    /** Drops tickets travelling before {@code epochDay}. @return number removed */
+    synchronized int removeBefore(long epochDay) {
+        int removed = 0;
+        for (Iterator<Record> it = byPnr.values().iterator(); it.hasNext(); ) {
+            Record r = it.next();
+            if (r.epochDay < epochDay) {
+                it.remove();
+                release(r);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized List<Ticket> snapshot() {
+        List<Ticket> all = new ArrayList<>(byPnr.size());
+        for (Record r : byPnr.values()) all.add(expand(r));
+        return all;
+    }
+
+    synchronized int size() {
+        return byPnr.size();
+    }
+}
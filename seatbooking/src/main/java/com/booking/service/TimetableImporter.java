@@ -0,0 +1,402 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.model.Train;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Streams a timetable into the trains table. A CSV file has the columns
+ * {@code train_number,train_name,route,total_seats}, where route stops are separated by '|'
+ * (or the whole route is quoted and comma-separated); a header row is optional. An NDJSON file has one
+ * object per line with the same keys, where {@code route} is either an array of stops or a string
+ * like the CSV column.
+ */
+public class TimetableImporter {
+
+    public enum Format { CSV, NDJSON }
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final TrainService trainService;
+    private final int chunkSize;
+
+    public TimetableImporter(TrainService trainService) {
+        this(trainService, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TimetableImporter(TrainService trainService, int chunkSize) {
+        if (chunkSize <= 0) throw new ValidationException("Chunk size must be at least 1.");
+        this.trainService = trainService;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Result of validating one input row: either a train or an error message. */
+    private static final class ParsedRow {
+        final long lineNumber;
+        final Train train;
+        final String error;
+
+        ParsedRow(long lineNumber, Train train, String error) {
+            this.lineNumber = lineNumber;
+            this.train = train;
+            this.error = error;
+        }
+    }
+
+    public ImportReport importCsv(Path file) {
+        return importFile(file, Format.CSV);
+    }
+
+    public ImportReport importFile(Path file, Format format) {
+        ImportReport report = new ImportReport();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>(chunkSize);
+            List<Long> lineNumbers = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                if (format == Format.CSV && lineNumber == 1 && line.toLowerCase().startsWith("train_number")) continue;
+                lines.add(line);
+                lineNumbers.add(lineNumber);
+                if (lines.size() == chunkSize) {
+                    importChunk(lines, lineNumbers, format, report);
+                    lines.clear();
+                    lineNumbers.clear();
+                }
+            }
+            if (!lines.isEmpty()) importChunk(lines, lineNumbers, format, report);
+        } catch (IOException e) {
+            throw new ValidationException("Could not read timetable file " + file + ": " + e.getMessage(), e);
+        }
+        report.finish();
+        return report;
+    }
+
+    private void importChunk(List<String> lines, List<Long> lineNumbers, Format format, ImportReport report) {
+        List<ParsedRow> parsed = IntStream.range(0, lines.size())
+                .parallel()
+                .mapToObj(i -> format == Format.CSV ? parseCsvRow(lineNumbers.get(i), lines.get(i))
+                        : parseJsonRow(lineNumbers.get(i), lines.get(i)))
+                .collect(Collectors.toList());
+        report.rowsRead += parsed.size();
+
+        Map<String, Train> unique = new LinkedHashMap<>();
+        for (ParsedRow row : parsed) {
+            if (row.error != null) {
+                report.recordInvalid("line " + row.lineNumber + ": " + row.error);
+                continue;
+            }
+            String key = row.train.getTrainNumber().toUpperCase();
+            if (unique.containsKey(key) || trainService.findTrain(key) != null) {
+                report.duplicates++;
+                continue;
+            }
+            unique.put(key, row.train);
+        }
+
+        List<Train> candidates = new ArrayList<>(unique.values());
+        try {
+            List<Train> inserted = trainService.importTrains(candidates);
+            report.imported += inserted.size();
+            report.duplicates += candidates.size() - inserted.size();
+        } catch (DatabaseException e) {
+            report.failed += candidates.size();
+            report.note("lines " + lineNumbers.get(0) + "-" + lineNumbers.get(lineNumbers.size() - 1)
+                    + ": batch failed: " + e.getMessage());
+        }
+    }
+
+    private ParsedRow parseCsvRow(long lineNumber, String line) {
+        List<String> cols = splitCsv(line);
+        if (cols.size() != 4) {
+            return new ParsedRow(lineNumber, null, "expected 4 columns but found " + cols.size());
+        }
+        return toRow(lineNumber, cols.get(0), cols.get(1), splitRoute(cols.get(2)), cols.get(3));
+    }
+
+    private ParsedRow parseJsonRow(long lineNumber, String line) {
+        Map<String, Object> fields;
+        try {
+            fields = new JsonLine(line).object();
+        } catch (IllegalArgumentException e) {
+            return new ParsedRow(lineNumber, null, "invalid JSON: " + e.getMessage());
+        }
+        Object number = fields.get("train_number");
+        Object name = fields.get("train_name");
+        Object route = fields.get("route");
+        Object seats = fields.get("total_seats");
+        if (!(number instanceof String)) return new ParsedRow(lineNumber, null, "invalid train number");
+        if (!(name instanceof String)) return new ParsedRow(lineNumber, null, "invalid train name");
+        List<String> stops = new ArrayList<>();
+        if (route instanceof String) {
+            stops = splitRoute((String) route);
+        } else if (route instanceof List) {
+            for (Object stop : (List<?>) route) {
+                if (!(stop instanceof String)) return new ParsedRow(lineNumber, null, "route stops must be strings");
+                if (!((String) stop).isBlank()) stops.add(((String) stop).trim());
+            }
+        }
+        return toRow(lineNumber, (String) number, (String) name, stops, seats == null ? "" : seats.toString());
+    }
+
+    private static List<String> splitRoute(String routeCol) {
+        String separator = routeCol.contains("|") ? "\\|" : ",";
+        return Arrays.stream(routeCol.split(separator))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static ParsedRow toRow(long lineNumber, String numberCol, String nameCol, List<String> route, String seatsCol) {
+        String number = numberCol.trim();
+        String name = nameCol.trim();
+        if (number.isEmpty() || number.length() > 50) return new ParsedRow(lineNumber, null, "invalid train number");
+        if (name.isEmpty() || name.length() > 255) return new ParsedRow(lineNumber, null, "invalid train name");
+        if (route.size() < 2) return new ParsedRow(lineNumber, null, "route must contain at least two stops");
+
+        int seats;
+        try {
+            seats = Integer.parseInt(seatsCol.trim());
+        } catch (NumberFormatException e) {
+            return new ParsedRow(lineNumber, null, "total_seats is not a number");
+        }
+        if (seats < 1 || seats > 10000) return new ParsedRow(lineNumber, null, "total_seats must be between 1 and 10000");
+
+        return new ParsedRow(lineNumber, new Train(number, name, route, seats), null);
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (ch == ',' && !quoted) {
+                cols.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        cols.add(cur.toString());
+        return cols;
+    }
+
+    /**
+     * Reads the single JSON object on one NDJSON line. Strings come back as String, arrays as List,
+     * objects as Map, and numbers and literals as their source text (null for {@code null}).
+     */
+    private static final class JsonLine {
+        private final String text;
+        private int pos;
+
+        JsonLine(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            skipSpace();
+            Map<String, Object> fields = readObject();
+            skipSpace();
+            if (pos < text.length()) throw error("unexpected text after the object");
+            return fields;
+        }
+
+        private Map<String, Object> readObject() {
+            expect('{');
+            Map<String, Object> fields = new LinkedHashMap<>();
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return fields;
+            }
+            while (true) {
+                skipSpace();
+                String key = readString();
+                skipSpace();
+                expect(':');
+                fields.put(key, readValue());
+                skipSpace();
+                if (peek() == '}') {
+                    pos++;
+                    return fields;
+                }
+                expect(',');
+            }
+        }
+
+        private List<Object> readArray() {
+            expect('[');
+            List<Object> items = new ArrayList<>();
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return items;
+            }
+            while (true) {
+                items.add(readValue());
+                skipSpace();
+                if (peek() == ']') {
+                    pos++;
+                    return items;
+                }
+                expect(',');
+            }
+        }
+
+        private Object readValue() {
+            skipSpace();
+            char ch = peek();
+            if (ch == '{') return readObject();
+            if (ch == '[') return readArray();
+            if (ch == '"') return readString();
+            int start = pos;
+            while (pos < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(pos)) >= 0) pos++;
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) throw error("unexpected character '" + ch + "'");
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) throw error("unterminated string");
+                char ch = text.charAt(pos++);
+                if (ch == '"') return out.toString();
+                if (ch != '\\') {
+                    out.append(ch);
+                    continue;
+                }
+                if (pos >= text.length()) throw error("unterminated string");
+                char esc = text.charAt(pos++);
+                switch (esc) {
+                    case '"': case '\\': case '/': out.append(esc); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) throw error("bad \\u escape");
+                        try {
+                            out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: throw error("bad escape \\" + esc);
+                }
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private char peek() {
+            if (pos >= text.length()) throw error("unexpected end of line");
+            return text.charAt(pos);
+        }
+
+        private void expect(char ch) {
+            if (peek() != ch) throw error("expected '" + ch + "' at column " + (pos + 1));
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message);
+        }
+    }
+
+    public static class ImportReport {
+        private final long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private long rowsRead;
+        private long imported;
+        private long duplicates;
+        private long invalid;
+        private long failed;
+        private final List<String> errors = new ArrayList<>();
+
+        private void recordInvalid(String message) {
+            invalid++;
+            note(message);
+        }
+
+        private void note(String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(message);
+        }
+
+        private void finish() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+
+        public double getRowsPerSecond() {
+            double secs = getElapsedSeconds();
+            return secs > 0 ? rowsRead / secs : rowsRead;
+        }
+
+        public void print() {
+            System.out.println("Rows read: " + rowsRead);
+            System.out.println("Imported: " + imported);
+            System.out.println("Duplicates skipped: " + duplicates);
+            System.out.println("Invalid rows: " + invalid);
+            if (failed > 0) System.out.println("Rows in failed batches: " + failed);
+            System.out.println(String.format("Elapsed: %.2f s (%.0f rows/s)", getElapsedSeconds(), getRowsPerSecond()));
+            for (String e : errors) System.out.println("  " + e);
+        }
+    }
+}
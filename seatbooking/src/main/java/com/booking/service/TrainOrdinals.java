@@ -0,0 +1,34 @@
+package com.booking.service;
+
+import com.booking.model.Train;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dense int ids for trains, handed out on first use, so compact in-memory structures can refer to a
+ * train with an int instead of an object reference or its number.
+ */
+final class TrainOrdinals {
+
+    private final Map<String, Integer> byNumber = new ConcurrentHashMap<>();
+    private final List<Train> byOrdinal = new CopyOnWriteArrayList<>();
+
+    int of(Train train) {
+        Integer ordinal = byNumber.get(train.getTrainNumber().toUpperCase());
+        return ordinal != null ? ordinal : assign(train);
+    }
+
+    private synchronized int assign(Train train) {
+        return byNumber.computeIfAbsent(train.getTrainNumber().toUpperCase(), k -> {
+            byOrdinal.add(train);
+            return byOrdinal.size() - 1;
+        });
+    }
+
+    Train train(int ordinal) {
+        return byOrdinal.get(ordinal);
+    }
+}
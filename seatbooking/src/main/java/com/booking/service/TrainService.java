@@ -2,14 +2,20 @@ package com.booking.service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
+import com.booking.model.Page;
 import com.booking.model.Train;
 import com.booking.model.Seat;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import com.booking.repository.TrainRepository;
+import com.booking.repository.Versioned;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.booking.exception.DatabaseException;
@@ -20,28 +26,78 @@ public class TrainService {
 
     private static final Logger LOGGER = Logger.getLogger(TrainService.class.getName());
 
-    private final DatabaseProvider db;
+    private final TrainRepository repository;
     private final List<Train> trains;
+    private final ConcurrentSkipListMap<String, Train> trainIndex = new ConcurrentSkipListMap<>();
+    private final Map<String, List<Train>> stationIndex = new ConcurrentHashMap<>();
+    private final List<TrainListener> listeners = new CopyOnWriteArrayList<>();
+    // change feed watermark: last (change_version, train_number) applied
+    private long feedVersion;
+    private String feedTrainNumber = "";
+
+    /** Notified after trains are added to the catalogue, e.g. to drop cached search results. */
+    public interface TrainListener {
+        void onTrainsAdded(List<Train> added);
+    }
 
-    public TrainService(DatabaseProvider db) {
-        this.db = db;
-        this.trains = new ArrayList<>();
+    public TrainService(TrainRepository repository) {
+        this.repository = repository;
+        this.trains = new CopyOnWriteArrayList<>();
 
         try {
-            this.db.init();
+            feedVersion = repository.currentVersion();
         } catch (DatabaseException e) {
-            LOGGER.log(Level.SEVERE, "Failed to initialize DB schema for TrainService", e);
-            throw e;
+            LOGGER.log(Level.WARNING, "Could not read the trains change version; the feed starts from zero", e);
         }
-
-        loadTrainsFromDb();
+        loadTrains();
         if (this.trains.isEmpty()) {
             initializeTrains();
             this.trains.clear();
-            loadTrainsFromDb();
+            loadTrains();
         }
     }
 
+    public void addTrainListener(TrainListener listener) {
+        listeners.add(listener);
+    }
+
+    private static String stationKey(String station) {
+        return station.trim().toLowerCase();
+    }
+
+    /**
+     * Adds trains to the catalogue and its number/station indexes in one step. Train numbers already in
+     * the catalogue are skipped, so a train seen both locally and on the change feed is added once.
+     * @return the trains actually added
+     */
+    private synchronized List<Train> registerTrains(List<Train> candidates) {
+        List<Train> added = new ArrayList<>(candidates.size());
+        for (Train train : candidates) {
+            if (!trainIndex.containsKey(train.getTrainNumber().toUpperCase())) added.add(train);
+        }
+        if (added.isEmpty()) return added;
+        Map<String, List<Train>> byStation = new HashMap<>();
+        for (Train train : added) {
+            trainIndex.put(train.getTrainNumber().toUpperCase(), train);
+            for (String stop : new LinkedHashSet<>(train.getRoute())) {
+                if (stop == null || stop.isBlank()) continue;
+                byStation.computeIfAbsent(stationKey(stop), k -> new ArrayList<>()).add(train);
+            }
+        }
+        for (Map.Entry<String, List<Train>> e : byStation.entrySet()) {
+            stationIndex.computeIfAbsent(e.getKey(), k -> new CopyOnWriteArrayList<>()).addAll(e.getValue());
+        }
+        this.trains.addAll(added);
+        for (TrainListener listener : listeners) {
+            try {
+                listener.onTrainsAdded(Collections.unmodifiableList(added));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Train listener failed", e);
+            }
+        }
+        return added;
+    }
+
     private void initializeTrains() {
         Train t1 = new Train("T123", "City Express", Arrays.asList("Mumbai", "Pune", "Delhi"), 50);
         Train t2 = new Train("T456", "Deccan Queen", Arrays.asList("Mumbai", "Thane", "Pune"), 80);
@@ -52,59 +108,42 @@ public class TrainService {
         this.trains.add(t3);
     }
 
-    private void loadTrainsFromDb() {
-        String sql = "SELECT train_number, train_name, route, total_seats FROM trains";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                String number = rs.getString("train_number");
-                String name = rs.getString("train_name");
-                String routeCsv = rs.getString("route");
-                int totalSeats = rs.getInt("total_seats");
-
-                List<String> route = new ArrayList<>();
-                if (routeCsv != null && !routeCsv.isEmpty()) {
-                    route = Arrays.stream(routeCsv.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toList());
-                }
-
-                Train t = new Train(number, name, route, totalSeats);
-                this.trains.add(t);
-            }
+    private void loadTrains() {
+        try {
+            registerTrains(repository.findAll());
+        } catch (DatabaseException e) {
+            LOGGER.log(Level.SEVERE, "Error loading trains", e);
+        }
+    }
 
-            try (PreparedStatement ps2 = c.prepareStatement("SELECT train_number, seat_number FROM tickets WHERE status = 'ACTIVE'"); ResultSet rs2 = ps2.executeQuery()) {
-                while (rs2.next()) {
-                    String tnum = rs2.getString("train_number");
-                    String seatNum = rs2.getString("seat_number");
-
-                    for (Train train : this.trains) {
-                        if (train.getTrainNumber().equalsIgnoreCase(tnum)) {
-                            for (Seat seat : train.getSeats()) {
-                                if (seat.getSeatNumber().equalsIgnoreCase(seatNum)) {
-                                    seat.book();
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
-                }
-            } catch (SQLException ex) {
-                LOGGER.log(Level.WARNING, "Error marking booked seats from tickets", ex);
+    /**
+     * Reads trains stamped after the feed watermark, e.g. added by another application instance, and
+     * registers the ones this instance does not know yet.
+     * @return number of trains added to the catalogue
+     */
+    synchronized int pollChanges(int batchSize) {
+        int added = 0;
+        List<Versioned<Train>> changed;
+        do {
+            changed = repository.findChangedSince(feedVersion, feedTrainNumber, batchSize);
+            List<Train> batch = new ArrayList<>(changed.size());
+            for (Versioned<Train> change : changed) {
+                batch.add(change.getValue());
+                feedVersion = change.getVersion();
+                feedTrainNumber = change.getValue().getTrainNumber();
             }
-
-        } catch (DatabaseException | SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error loading trains from DB", e);
-        }
+            added += registerTrains(batch).size();
+        } while (changed.size() == batchSize);
+        return added;
     }
 
     public List<Train> searchTrains(String startStation, String endStation) {
         String start = startStation == null ? "" : startStation.trim();
         String end = endStation == null ? "" : endStation.trim();
         List<Train> availableTrains = new ArrayList<>();
-        for (Train train : this.trains) {
+        if (start.isEmpty() || end.isEmpty()) return availableTrains;
+        List<Train> candidates = stationIndex.getOrDefault(stationKey(start), Collections.emptyList());
+        for (Train train : candidates) {
             if (train.hasStops(start, end)) {
                 availableTrains.add(train);
             }
@@ -112,6 +151,11 @@ public class TrainService {
         return availableTrains;
     }
 
+    public Train findTrain(String trainNumber) {
+        if (trainNumber == null) return null;
+        return trainIndex.get(trainNumber.trim().toUpperCase());
+    }
+
     public void displaySeats(Train train) {
         System.out.println("Available seats for " + train.getTrainName() + ":");
         for (Seat seat : train.getSeats()) {
@@ -139,33 +183,57 @@ public class TrainService {
         if (normalizedRoute.size() < 2) {
             throw new ValidationException("A train route must contain at least two stops.");
         }
-        for (Train train : this.trains) {
-            if (train.getTrainNumber().equalsIgnoreCase(trainNumber)) {
+        if (findTrain(trainNumber) != null) {
+            System.out.println("Error: Train Number already exists.");
+            return false;
+        }
+        try {
+            Train newTrain = new Train(trainNumber, trainName, normalizedRoute, totalSeats);
+            if (!repository.add(newTrain)) {
                 System.out.println("Error: Train Number already exists.");
                 return false;
             }
-        }
-        String sql = "INSERT INTO trains (train_number, train_name, route, total_seats) VALUES (?, ?, ?, ?)";
-        String routeCsv = String.join(",", normalizedRoute);
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, trainNumber);
-            ps.setString(2, trainName);
-            ps.setString(3, routeCsv);
-            ps.setInt(4, totalSeats);
-            ps.executeUpdate();
-
-            Train newTrain = new Train(trainNumber, trainName, route, totalSeats);
-            this.trains.add(newTrain);
+            registerTrains(Collections.singletonList(newTrain));
             System.out.println("Train " + trainName + " added successfully.");
             return true;
-        } catch (DatabaseException | SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error adding train to DB", e);
+        } catch (DatabaseException e) {
+            LOGGER.log(Level.SEVERE, "Error adding train", e);
             System.out.println("Error adding train to DB: " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Stores a chunk of already validated trains in one atomic step. Train numbers that already exist
+     * are skipped. The in-memory catalogue is updated once, after the chunk is stored.
+     * @return the trains that were actually inserted
+     */
+    List<Train> importTrains(List<Train> chunk) {
+        if (chunk.isEmpty()) return new ArrayList<>();
+        return registerTrains(repository.addAll(chunk));
+    }
+
     public List<Train> getAllTrains() {
-        return this.trains;
+        return Collections.unmodifiableList(this.trains);
+    }
+
+    /**
+     * Trains ordered by train number, starting after {@code afterTrainNumber} (null for the first page).
+     */
+    public Page<Train> getTrainsPage(String afterTrainNumber, int limit) {
+        if (limit <= 0) throw new ValidationException("Page size must be at least 1.");
+        Map<String, Train> tail = afterTrainNumber == null
+                ? trainIndex
+                : trainIndex.tailMap(afterTrainNumber.trim().toUpperCase(), false);
+        List<Train> items = new ArrayList<>(limit);
+        String next = null;
+        for (Map.Entry<String, Train> e : tail.entrySet()) {
+            if (items.size() == limit) {
+                next = items.get(limit - 1).getTrainNumber().toUpperCase();
+                break;
+            }
+            items.add(e.getValue());
+        }
+        return new Page<>(items, next);
     }
 }
@@ -0,0 +1,127 @@
+package com.booking.service;
+
+import com.booking.util.AppConfig;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Re-runs a whole transaction when the database aborted it because of lock contention: MySQL deadlocks
+ * (error 1213), lock wait timeouts (1205), or any serialization failure (SQLState 40001). Each attempt
+ * must start its own transaction and undo its in-memory effects on failure, which the booking and
+ * cancellation paths already do. Attempts are bounded. Between attempts the caller sleeps for a random
+ * time of up to base * 2^attempt ms, capped at the maximum ("full jitter"), so transactions that
+ * collided do not collide again in lockstep.
+ */
+public class TransactionRetry {
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionRetry.class.getName());
+
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder wastedNanos = new LongAdder();
+
+    public TransactionRetry() {
+        this(AppConfig.getInt("TX_RETRY_ATTEMPTS", 4), AppConfig.getInt("TX_RETRY_BASE_MS", 20),
+                AppConfig.getInt("TX_RETRY_MAX_MS", 500));
+    }
+
+    public TransactionRetry(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    /** Runs {@code transaction}, retrying it while it fails with a retryable error. */
+    public <T> T execute(String operation, Supplier<T> transaction) {
+        transactions.increment();
+        long wasted = 0;
+        for (int attempt = 1; ; attempt++) {
+            long started = System.nanoTime();
+            try {
+                T result = transaction.get();
+                if (attempt > 1) {
+                    recovered.increment();
+                    wastedNanos.add(wasted);
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    wastedNanos.add(wasted);
+                    throw e;
+                }
+                wasted += System.nanoTime() - started;
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    wastedNanos.add(wasted);
+                    LOGGER.warning(operation + " still contended after " + attempt + " attempt(s): " + e.getMessage());
+                    throw e;
+                }
+                long sleepMs = ThreadLocalRandom.current().nextLong(Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20)) + 1);
+                retries.increment();
+                LOGGER.fine(operation + " hit " + e.getMessage() + "; retrying in " + sleepMs + " ms");
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    wastedNanos.add(wasted);
+                    throw e;
+                }
+                wasted += TimeUnit.MILLISECONDS.toNanos(sleepMs);
+            }
+        }
+    }
+
+    /** Whether {@code t}, or anything in its cause chain, is a deadlock, lock wait timeout or serialization failure. */
+    public static boolean isRetryable(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransactionRollbackException) return true;
+            if (cause instanceof SQLException) {
+                for (SQLException e = (SQLException) cause; e != null; e = e.getNextException()) {
+                    if (e.getErrorCode() == ER_LOCK_DEADLOCK || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                            || "40001".equals(e.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getTransactions() {
+        return transactions.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /** Transactions that succeeded after at least one retry. */
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    /** Transactions that were still failing when the attempts ran out. */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    /** Time spent in failed attempts and backoff, in milliseconds. */
+    public long getWastedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wastedNanos.sum());
+    }
+}
@@ -0,0 +1,124 @@
+package com.booking.service;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Online migration from the VARCHAR travel_date to a typed travel_day DATE column. The column and its
+ * indexes are added without a table copy where the server allows it. Rows still missing travel_day are
+ * then backfilled in keyset batches, each in its own transaction, so the migration can stop and resume
+ * at any point. Live tickets whose travel_date does not parse are moved to tickets_quarantine for manual
+ * repair instead of being skipped on every read.
+ */
+final class TravelDayMigration {
+
+    private static final Logger LOGGER = Logger.getLogger(TravelDayMigration.class.getName());
+    private static final int BATCH_SIZE = 1000;
+    private static final String TICKET_COLUMNS = "pnr, username, booked_by, train_number, seat_number, travel_date, status, from_idx, to_idx, created_at";
+
+    private TravelDayMigration() {
+    }
+
+    static void run(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            addColumn(s, "tickets");
+            addColumn(s, "tickets_archive");
+        }
+        int quarantined = backfill(c, "tickets", true);
+        backfill(c, "tickets_archive", false);
+        if (quarantined > 0) {
+            LOGGER.warning(quarantined + " ticket(s) with a malformed travel_date were moved to tickets_quarantine");
+        }
+    }
+
+    private static void addColumn(Statement s, String table) throws SQLException {
+        try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM " + table + " LIKE 'travel_day'")) {
+            if (rs.next()) return;
+        }
+        try {
+            s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN travel_day DATE NULL, ALGORITHM=INPLACE, LOCK=NONE");
+        } catch (SQLException e) {
+            s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN travel_day DATE NULL");
+        }
+    }
+
+    /** @return rows quarantined */
+    private static int backfill(Connection c, String table, boolean quarantine) throws SQLException {
+        String select = "SELECT pnr, travel_date FROM " + table + " WHERE travel_day IS NULL AND pnr > ? ORDER BY pnr LIMIT " + BATCH_SIZE;
+        String update = "UPDATE " + table + " SET travel_day = ? WHERE pnr = ?";
+        String copy = "INSERT INTO tickets_quarantine (" + TICKET_COLUMNS + ", reason) SELECT " + TICKET_COLUMNS + ", ? FROM " + table + " WHERE pnr = ?";
+        String delete = "DELETE FROM " + table + " WHERE pnr = ?";
+        String last = "";
+        int quarantined = 0;
+        while (true) {
+            List<String[]> rows = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(select)) {
+                ps.setString(1, last);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) rows.add(new String[] {rs.getString("pnr"), rs.getString("travel_date")});
+                }
+            }
+            if (rows.isEmpty()) return quarantined;
+            last = rows.get(rows.size() - 1)[0];
+
+            c.setAutoCommit(false);
+            try (PreparedStatement psUpdate = c.prepareStatement(update);
+                 PreparedStatement psCopy = c.prepareStatement(copy);
+                 PreparedStatement psDelete = c.prepareStatement(delete)) {
+                int bad = 0;
+                for (String[] row : rows) {
+                    LocalDate day = parse(row[1]);
+                    if (day != null) {
+                        psUpdate.setDate(1, Date.valueOf(day));
+                        psUpdate.setString(2, row[0]);
+                        psUpdate.addBatch();
+                    } else if (quarantine) {
+                        psCopy.setString(1, "Unparseable travel_date '" + row[1] + "'");
+                        psCopy.setString(2, row[0]);
+                        psCopy.addBatch();
+                        psDelete.setString(1, row[0]);
+                        psDelete.addBatch();
+                        bad++;
+                    }
+                }
+                psUpdate.executeBatch();
+                if (bad > 0) {
+                    psCopy.executeBatch();
+                    psDelete.executeBatch();
+                }
+                c.commit();
+                quarantined += bad;
+            } catch (SQLException e) {
+                try { c.rollback(); } catch (SQLException ignored) { }
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** The DATE value dual-written next to travel_date, or null if the string is not an ISO date. */
+    static Date toSqlDate(String travelDate) {
+        LocalDate day = parse(travelDate);
+        return day == null ? null : Date.valueOf(day);
+    }
+
+    private static LocalDate parse(String value) {
+        if (value == null) return null;
+        try {
+            return LocalDate.parse(value.trim(), DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.model.WaitlistEntry;
+import com.booking.repository.WaitlistRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FIFO waitlist per (train, travel date). The repository is the source of truth; the in-memory
+ * queues mirror the WAITING entries so positions can be answered without a query.
+ */
+public class WaitlistService {
+
+    private static final Logger LOGGER = Logger.getLogger(WaitlistService.class.getName());
+
+    private final WaitlistRepository repository;
+    private final TrainService trainService;
+    private final Map<String, Deque<WaitlistEntry>> queues = new ConcurrentHashMap<>();
+
+    public WaitlistService(TrainService trainService, WaitlistRepository repository) {
+        this.trainService = trainService;
+        this.repository = repository;
+        loadWaiting();
+    }
+
+    private static String key(String trainNumber, String travelDate) {
+        return trainNumber.toUpperCase() + "|" + travelDate;
+    }
+
+    private Deque<WaitlistEntry> queue(String trainNumber, String travelDate) {
+        return queues.computeIfAbsent(key(trainNumber, travelDate), k -> new ArrayDeque<>());
+    }
+
+    private void loadWaiting() {
+        try {
+            for (WaitlistEntry entry : repository.findWaiting(trainService::findTrain)) {
+                Deque<WaitlistEntry> q = queue(entry.getTrain().getTrainNumber(), entry.getTravelDate());
+                synchronized (q) {
+                    q.addLast(entry);
+                }
+            }
+        } catch (DatabaseException e) {
+            LOGGER.log(Level.WARNING, "Error loading waitlist", e);
+        }
+    }
+
+    public List<WaitlistEntry> join(List<String> usernames, Train train, int fromStop, int toStop, String date, String bookedBy) {
+        if (usernames == null || usernames.isEmpty()) throw new ValidationException("No usernames provided");
+        List<WaitlistEntry> added = repository.add(usernames, train, fromStop, toStop, date, bookedBy);
+
+        Deque<WaitlistEntry> q = queue(train.getTrainNumber(), date);
+        synchronized (q) {
+            q.addAll(added);
+        }
+        return added;
+    }
+
+    /** Decides whether a waiting passenger's journey fits the released seat at {@code releasedIndex}. */
+    interface SeatFit {
+        boolean fits(int releasedIndex, int fromStop, int toStop);
+
+        /** Told about each pick, so that later fits in the same pass can leave its journey alone. */
+        default void picked(int releasedIndex, int fromStop, int toStop) {
+        }
+    }
+
+    /**
+     * Locks the waiting rows for (train, date) inside the caller's transaction and, for each of the
+     * {@code releasedCount} released seats in order, picks the earliest waiting passenger whose journey
+     * fits it. The returned list has one slot per released seat, null where nobody fits. Rows are not
+     * changed until {@link #markPromoted(List, List)} is called.
+     */
+    List<WaitlistEntry> selectForRelease(Train train, String date, int releasedCount, SeatFit fit) {
+        List<WaitlistEntry> waiting = new ArrayList<>(repository.lockWaiting(train, date));
+
+        List<WaitlistEntry> chosen = new ArrayList<>(releasedCount);
+        for (int i = 0; i < releasedCount; i++) {
+            WaitlistEntry pick = null;
+            Iterator<WaitlistEntry> it = waiting.iterator();
+            while (it.hasNext()) {
+                WaitlistEntry e = it.next();
+                if (fit.fits(i, e.getOriginIndex(), e.getDestinationIndex())) {
+                    pick = e;
+                    it.remove();
+                    fit.picked(i, e.getOriginIndex(), e.getDestinationIndex());
+                    break;
+                }
+            }
+            chosen.add(pick);
+        }
+        return chosen;
+    }
+
+    void markPromoted(List<WaitlistEntry> promoted, List<String> pnrs) {
+        if (promoted.isEmpty()) return;
+        repository.markPromoted(promoted, pnrs);
+    }
+
+    /** Closes every waiting entry for (train, date) inside the caller's transaction, e.g. when the run is cancelled. */
+    int closeAll(Train train, String date) {
+        return repository.closeAll(train, date);
+    }
+
+    /** Marks waiting entries for dates before {@code today} EXPIRED and drops their queues. */
+    int expireBefore(String today) {
+        int expired = repository.expireBefore(today);
+        queues.keySet().removeIf(key -> key.substring(key.indexOf('|') + 1).compareTo(today) < 0);
+        return expired;
+    }
+
+    void onClosed(Train train, String date) {
+        Deque<WaitlistEntry> q = queues.get(key(train.getTrainNumber(), date));
+        if (q == null) return;
+        synchronized (q) {
+            q.clear();
+        }
+    }
+
+    void onPromoted(WaitlistEntry promoted) {
+        removeFromQueue(promoted);
+    }
+
+    public boolean leave(WaitlistEntry entry) {
+        try {
+            if (!repository.cancel(entry.getId())) return false;
+        } catch (DatabaseException e) {
+            System.out.println("Error leaving waitlist: " + e.getMessage());
+            return false;
+        }
+        removeFromQueue(entry);
+        return true;
+    }
+
+    private void removeFromQueue(WaitlistEntry entry) {
+        Deque<WaitlistEntry> q = queue(entry.getTrain().getTrainNumber(), entry.getTravelDate());
+        synchronized (q) {
+            Iterator<WaitlistEntry> it = q.iterator();
+            while (it.hasNext()) {
+                if (it.next().getId() == entry.getId()) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 1-based WL position of the entry, or -1 if it is no longer waiting
+     */
+    public int getPosition(WaitlistEntry entry) {
+        Deque<WaitlistEntry> q = queue(entry.getTrain().getTrainNumber(), entry.getTravelDate());
+        synchronized (q) {
+            int pos = 1;
+            for (WaitlistEntry e : q) {
+                if (e.getId() == entry.getId()) return pos;
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    public int getWaitlistLength(Train train, String date) {
+        Deque<WaitlistEntry> q = queues.get(key(train.getTrainNumber(), date));
+        if (q == null) return 0;
+        synchronized (q) {
+            return q.size();
+        }
+    }
+
+    public List<WaitlistEntry> findByPassenger(User passenger) {
+        List<WaitlistEntry> result = new ArrayList<>();
+        String name = passenger.getUsername();
+        for (Deque<WaitlistEntry> q : queues.values()) {
+            synchronized (q) {
+                for (WaitlistEntry e : q) {
+                    if (name.equalsIgnoreCase(e.getBookedBy()) || name.equalsIgnoreCase(e.getUsername())) {
+                        result.add(e);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
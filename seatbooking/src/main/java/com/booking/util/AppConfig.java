@@ -40,6 +40,20 @@ public final class AppConfig {
         return getenv("DB_PASSWORD", "");
     }
 
+    public static String getString(String name, String fallback) {
+        return getenv(name, fallback);
+    }
+
+    public static int getInt(String name, int fallback) {
+        String v = getenv(name, null);
+        if (v == null) return fallback;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     public static String getAppName() {
         return getenv("APP_NAME", "SeatManagement");
     }
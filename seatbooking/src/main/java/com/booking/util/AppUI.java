@@ -4,31 +4,98 @@ import com.booking.model.User;
 import com.booking.model.Train;
 import com.booking.model.Seat;
 import com.booking.model.Ticket;
+import com.booking.model.Journey;
+import com.booking.model.JourneyLeg;
+import com.booking.model.Page;
 import com.booking.model.Role;
+import com.booking.model.SeatHold;
+import com.booking.model.WaitlistEntry;
+import com.booking.service.ArchivalService;
+import com.booking.service.AsyncBookingService;
 import com.booking.service.AuthProvider;
 import com.booking.service.TrainService;
 import com.booking.service.BookingService;
+import com.booking.service.JourneyPlanner;
+import com.booking.service.StationIndex;
+import com.booking.service.SurgeMode;
+import com.booking.service.SearchCache;
+import com.booking.service.GroupCommitCoordinator;
+import com.booking.service.TransactionRetry;
+import com.booking.service.TicketExporter;
+import com.booking.service.TimetableImporter;
+import com.booking.exception.DatabaseException;
+import com.booking.exception.OverloadException;
+import com.booking.exception.SeatsUnavailableException;
 import com.booking.exception.ValidationException;
 import com.booking.util.InputValidator;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class AppUI {
 
     private final AuthProvider authService;
     private final TrainService trainService;
     private final BookingService bookingService;
+    private final AsyncBookingService asyncService;
+    private final JourneyPlanner journeyPlanner;
+    private final StationIndex stationIndex;
     private final Scanner scanner;
+    private ArchivalService archivalService;
+
+    private static final int PAGE_SIZE = 20;
+    private static final DateTimeFormatter CALENDAR_DAY = DateTimeFormatter.ofPattern("EEE dd MMM");
 
     public AppUI(AuthProvider authService, TrainService trainService, BookingService bookingService, Scanner scanner) {
+        this(authService, trainService, bookingService, new AsyncBookingService(trainService, bookingService), scanner);
+    }
+
+    public AppUI(AuthProvider authService, TrainService trainService, BookingService bookingService,
+                 AsyncBookingService asyncService, Scanner scanner) {
+        this(authService, trainService, bookingService, asyncService,
+                new JourneyPlanner(trainService, bookingService), scanner);
+    }
+
+    public AppUI(AuthProvider authService, TrainService trainService, BookingService bookingService,
+                 AsyncBookingService asyncService, JourneyPlanner journeyPlanner, Scanner scanner) {
         this.authService = authService;
         this.trainService = trainService;
         this.bookingService = bookingService;
+        this.asyncService = asyncService;
+        this.journeyPlanner = journeyPlanner;
+        this.stationIndex = new StationIndex(trainService);
         this.scanner = scanner;
     }
 
+    public void setArchivalService(ArchivalService archivalService) {
+        this.archivalService = archivalService;
+    }
+
+    /** Waits for an async result, rethrowing the service's own exception rather than a CompletionException. */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new DatabaseException("Request did not complete: " + e.getCause(), e.getCause());
+        }
+    }
+
     public void run() {
         User loggedInUser = null;
 
@@ -77,9 +144,16 @@ public class AppUI {
             System.out.println("1. Add New Train");
             System.out.println("2. View All Trains");
             System.out.println("3. Check Passenger Details (View All Bookings)");
-            System.out.println("4. Logout");
+            System.out.println("4. Import Timetable (CSV/NDJSON)");
+            System.out.println("5. Export Tickets");
+            System.out.println("6. Cancel All Bookings for a Train/Date");
+            System.out.println("7. View Search Cache Stats");
+            System.out.println("8. Archive Completed/Cancelled Tickets Now");
+            System.out.println("9. View Transaction Retry Stats");
+            System.out.println("10. Surge Mode (Booking-Window Openings)");
+            System.out.println("11. Logout");
 
-            int choice = ConsoleHelper.promptInt(scanner, "Please choose an option: ", 1, 4);
+            int choice = ConsoleHelper.promptInt(scanner, "Please choose an option: ", 1, 11);
 
             switch (choice) {
                 case 1:
@@ -92,6 +166,27 @@ public class AppUI {
                     handleViewAllBookings();
                     break;
                 case 4:
+                    handleImportTimetable();
+                    break;
+                case 5:
+                    handleExportTickets();
+                    break;
+                case 6:
+                    handleCancelTrainRun();
+                    break;
+                case 7:
+                    handleSearchCacheStats();
+                    break;
+                case 8:
+                    handleRunArchival();
+                    break;
+                case 9:
+                    handleRetryStats();
+                    break;
+                case 10:
+                    handleSurgeMode();
+                    break;
+                case 11:
                     System.out.println("Logging out admin...");
                     return;
                 default:
@@ -118,65 +213,140 @@ public class AppUI {
         trainService.addTrain(trainNumber, trainName, route, totalSeats);
     }
 
+    private void handleImportTimetable() {
+        ConsoleHelper.printHeader("Import Timetable");
+        System.out.println("CSV columns: train_number,train_name,route,total_seats (route stops separated by '|')");
+        System.out.println("NDJSON: one object per line with the same keys; route may be an array of stops");
+        String path = ConsoleHelper.prompt(scanner, "Enter path to timetable file: ").trim();
+        if (path.isEmpty()) {
+            System.out.println("Import cancelled.");
+            return;
+        }
+        String fmt = ConsoleHelper.prompt(scanner, "Format (csv/ndjson) [csv]: ").trim();
+        TimetableImporter.Format format = fmt.equalsIgnoreCase("ndjson") ? TimetableImporter.Format.NDJSON : TimetableImporter.Format.CSV;
+        try {
+            TimetableImporter.ImportReport report = new TimetableImporter(trainService).importFile(Paths.get(path), format);
+            System.out.println("Import finished.");
+            report.print();
+        } catch (ValidationException | InvalidPathException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
+    private void handleExportTickets() {
+        ConsoleHelper.printHeader("Export Tickets");
+        String path = ConsoleHelper.prompt(scanner, "Enter output file path: ").trim();
+        if (path.isEmpty()) {
+            System.out.println("Export cancelled.");
+            return;
+        }
+        String fmt = ConsoleHelper.prompt(scanner, "Format (csv/ndjson) [csv]: ").trim();
+        TicketExporter.Format format = fmt.equalsIgnoreCase("ndjson") ? TicketExporter.Format.NDJSON : TicketExporter.Format.CSV;
+        boolean gzip = ConsoleHelper.prompt(scanner, "Compress with gzip? (yes/no): ").trim().equalsIgnoreCase("yes");
+        String fromDate = ConsoleHelper.prompt(scanner, "From date (YYYY-MM-DD, empty for no limit): ").trim();
+        String toDate = ConsoleHelper.prompt(scanner, "To date (YYYY-MM-DD, empty for no limit): ").trim();
+        if ((!fromDate.isEmpty() && !InputValidator.isValidDate(fromDate)) || (!toDate.isEmpty() && !InputValidator.isValidDate(toDate))) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+            return;
+        }
+        String trainNumber = ConsoleHelper.prompt(scanner, "Train number (empty for all trains): ").trim();
+
+        long start = System.nanoTime();
+        try {
+            long rows = bookingService.exportTickets(Paths.get(path), format, gzip, fromDate, toDate, trainNumber);
+            double secs = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.println(String.format("Exported %d ticket(s) to %s in %.2f s.", rows, path, secs));
+        } catch (ValidationException | DatabaseException | InvalidPathException e) {
+            System.out.println("Export failed: " + e.getMessage());
+        }
+    }
+
     private void handleViewAllTrains() {
         System.out.println("\n--- All Trains in System ---");
-        List<Train> trains = trainService.getAllTrains();
-        if (trains.isEmpty()) {
+        Page<Train> page = trainService.getTrainsPage(null, PAGE_SIZE);
+        if (page.getItems().isEmpty()) {
             System.out.println("No trains have been added to the system yet.");
             return;
         }
-        for (Train train : trains) {
-            System.out.println("--------------------");
-            System.out.println("Train Name: " + train.getTrainName());
-            System.out.println("Train Number: " + train.getTrainNumber());
-            System.out.println("Route: " + String.join(" -> ", train.getRoute()));
-            System.out.println("Total Seats: " + train.getSeats().size());
-            System.out.println("Booked Seats: " + train.getBookedSeatCount());
-            System.out.println("Available Seats: " + train.getAvailableSeatCount());
-            List<String> booked = train.getSeats().stream().filter(Seat::isBooked).map(Seat::getSeatNumber).toList();
-            if (!booked.isEmpty()) {
-                System.out.println("Booked Seat Numbers: " + String.join(", ", booked));
+        while (true) {
+            for (Train train : page.getItems()) {
+                System.out.println("--------------------");
+                System.out.println("Train Name: " + train.getTrainName());
+                System.out.println("Train Number: " + train.getTrainNumber());
+                System.out.println("Route: " + String.join(" -> ", train.getRoute()));
+                System.out.println("Total Seats: " + train.getSeats().size());
+                System.out.println("Booked Seats: " + train.getBookedSeatCount());
+                System.out.println("Available Seats: " + train.getAvailableSeatCount());
+                List<String> booked = train.getSeats().stream().filter(Seat::isBooked).map(Seat::getSeatNumber).toList();
+                if (!booked.isEmpty()) {
+                    System.out.println("Booked Seat Numbers: " + String.join(", ", booked));
+                }
             }
+            if (!page.hasNext() || !promptNextPage()) return;
+            page = trainService.getTrainsPage(page.getNextCursor(), PAGE_SIZE);
         }
     }
 
     private void handleViewAllBookings() {
         System.out.println("\n--- All Passenger Bookings ---");
-        List<Ticket> allTickets = bookingService.getAllTickets();
-        if (allTickets.isEmpty()) {
-            System.out.println("No tickets have been booked in the system yet.");
-        } else {
-            System.out.println("Total bookings: " + allTickets.size());
-            for (Ticket ticket : allTickets) {
-                ticket.displayTicketDetails();
+        try {
+            Page<Ticket> page = bookingService.findTicketsPage("ACTIVE", null, PAGE_SIZE);
+            if (page.getItems().isEmpty()) {
+                System.out.println("No tickets have been booked in the system yet.");
+                return;
+            }
+            int shown = 0;
+            while (true) {
+                for (Ticket ticket : page.getItems()) {
+                    ticket.displayTicketDetails();
+                }
+                shown += page.getItems().size();
+                System.out.println("Showing bookings 1-" + shown);
+                if (!page.hasNext() || !promptNextPage()) return;
+                page = bookingService.findTicketsPage("ACTIVE", page.getNextCursor(), PAGE_SIZE);
             }
+        } catch (DatabaseException e) {
+            System.out.println("Error loading bookings: " + e.getMessage());
         }
     }
 
+    private boolean promptNextPage() {
+        String answer = ConsoleHelper.prompt(scanner, "Press Enter for the next page or 'q' to stop: ").trim();
+        return !answer.equalsIgnoreCase("q");
+    }
+
     private void showPassengerMenu(User passenger) {
         while (true) {
             System.out.println("1. Book New Ticket");
             System.out.println("2. View My Bookings");
             System.out.println("3. Cancel Ticket");
-            System.out.println("4. Logout");
-
-            int choice = ConsoleHelper.promptInt(scanner, "Please choose an option: ", 1, 4);
-
-            switch (choice) {
-                case 1:
-                    handleBookTicket(passenger);
-                    break;
-                case 2:
-                    handleViewBookings(passenger);
-                    break;
-                case 3:
-                    handleCancelTicket(passenger);
-                    break;
-                case 4:
-                    System.out.println("Logging out " + passenger.getUsername() + "...");
-                    return;
-                default:
-                    System.out.println("Invalid choice.");
+            System.out.println("4. Availability Calendar");
+            System.out.println("5. Logout");
+
+            int choice = ConsoleHelper.promptInt(scanner, "Please choose an option: ", 1, 5);
+
+            try {
+                switch (choice) {
+                    case 1:
+                        handleBookTicket(passenger);
+                        break;
+                    case 2:
+                        handleViewBookings(passenger);
+                        break;
+                    case 3:
+                        handleCancelTicket(passenger);
+                        break;
+                    case 4:
+                        handleAvailabilityCalendar();
+                        break;
+                    case 5:
+                        System.out.println("Logging out " + passenger.getUsername() + "...");
+                        return;
+                    default:
+                        System.out.println("Invalid choice.");
+                }
+            } catch (OverloadException oe) {
+                System.out.println(oe.getMessage());
             }
         }
     }
@@ -191,71 +361,254 @@ public class AppUI {
             System.out.println("Travel date cannot be before today.");
             return;
         }
-        String startStation = ConsoleHelper.prompt(scanner, "Enter Start Station (e.g., Mumbai, Delhi): ");
-        String endStation = ConsoleHelper.prompt(scanner, "Enter End Station (e.g., Pune, Jaipur): ");
+        String startStation = promptStation("Enter Start Station (e.g., Mumbai, Delhi): ");
+        String endStation = promptStation("Enter End Station (e.g., Pune, Jaipur): ");
 
-        List<Train> availableTrains = trainService.searchTrains(startStation, endStation);
-        if (availableTrains.isEmpty()) {
-            System.out.println("No trains found for your route. Returning to menu.");
+        Map<Train, Integer> availability = bookingService.searchTrainsWithAvailability(startStation, endStation, date);
+        if (availability.isEmpty()) {
+            System.out.println("No direct trains found for your route.");
+            offerConnectingJourneys(passenger, startStation, endStation, date);
             return;
         }
 
+        List<Train> availableTrains = new ArrayList<>(availability.keySet());
         System.out.println("Available Trains:");
         for (int i = 0; i < availableTrains.size(); i++) {
             Train train = availableTrains.get(i);
-            System.out.println((i + 1) + ". " + train.getTrainName() + " (" + train.getTrainNumber() + ")");
+            System.out.println((i + 1) + ". " + train.getTrainName() + " (" + train.getTrainNumber() + ") - "
+                    + availability.get(train) + " seat(s) free " + startStation.trim() + " -> " + endStation.trim());
         }
         int trainChoice = ConsoleHelper.promptInt(scanner, "Select a train (enter number): ", 1,
                 availableTrains.size());
         Train selectedTrain = availableTrains.get(trainChoice - 1);
+        int fromStop = selectedTrain.indexOfStop(startStation);
+        int toStop = selectedTrain.indexOfStop(endStation);
 
-        int available = selectedTrain.getAvailableSeatCount();
+        int available = bookingService.getAvailableSeatCount(selectedTrain, date, fromStop, toStop);
         System.out.println("Available seats: " + available);
         if (available <= 0) {
-            System.out.println("No seats available on this train. Returning to menu.");
+            offerWaitlist(passenger, selectedTrain, fromStop, toStop, date, null);
             return;
         }
 
         int seatsToBook = ConsoleHelper.promptInt(scanner, "How many seats would you like to book? ", 1, available);
+        SeatHold hold;
+        try {
+            hold = bookingService.holdSeats(selectedTrain, seatsToBook, fromStop, toStop, date, passenger.getUsername());
+        } catch (SeatsUnavailableException se) {
+            System.out.println("Booking failed: " + se.getMessage());
+            offerWaitlist(passenger, selectedTrain, fromStop, toStop, date, null);
+            return;
+        } catch (ValidationException ve) {
+            System.out.println("Booking failed: " + ve.getMessage());
+            return;
+        }
+        List<String> heldSeats = new ArrayList<>();
+        for (Seat seat : hold.getSeats()) heldSeats.add(seat.getSeatNumber());
+        System.out.println("Seats " + String.join(", ", heldSeats) + " are held for you until "
+                + LocalTime.ofInstant(hold.getExpiresAt(), ZoneId.systemDefault()).withNano(0) + ".");
+
         String confirmation = ConsoleHelper.prompt(scanner,
                 "Confirm booking of " + seatsToBook + " seat(s) on " + selectedTrain.getTrainName() + "? (yes/no): ");
         if (!confirmation.equalsIgnoreCase("yes")) {
+            bookingService.releaseHold(hold);
             System.out.println("Booking cancelled.");
             return;
         }
 
+        List<String> usernames = promptPassengerUsernames(passenger, seatsToBook);
+        String idempotencyKey = UUID.randomUUID().toString();
+        while (true) {
+            try {
+                List<Ticket> newTickets = bookingService.confirmHold(hold, usernames, idempotencyKey);
+                if (newTickets == null || newTickets.isEmpty()) {
+                    System.out.println("Booking failed. No tickets were created.");
+                } else {
+                    System.out.println("\nBooking successful! Created " + newTickets.size() + " ticket(s):");
+                    for (Ticket t : newTickets)
+                        t.displayTicketDetails();
+                }
+                return;
+            } catch (SeatsUnavailableException se) {
+                System.out.println("Booking failed: " + se.getMessage());
+                offerWaitlist(passenger, selectedTrain, fromStop, toStop, date, usernames);
+                return;
+            } catch (ValidationException ve) {
+                System.out.println("Booking failed: " + ve.getMessage());
+                return;
+            } catch (DatabaseException | OverloadException de) {
+                System.out.println("Booking could not be confirmed: " + de.getMessage());
+                String retry = ConsoleHelper.prompt(scanner, "Retry the same booking? (yes/no): ");
+                if (!retry.equalsIgnoreCase("yes")) {
+                    bookingService.releaseHold(hold);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Reads a station name, offering completions and close matches when it is not an exact station. */
+    private String promptStation(String message) {
+        while (true) {
+            String input = ConsoleHelper.prompt(scanner, message);
+            String exact = stationIndex.resolve(input);
+            if (exact != null) return exact;
+            List<String> options = stationIndex.suggest(input, 5);
+            if (options.isEmpty()) {
+                System.out.println("No station matches '" + input.trim() + "'.");
+                return input;
+            }
+            System.out.println("Did you mean:");
+            for (int i = 0; i < options.size(); i++) System.out.println("  " + (i + 1) + ". " + options.get(i));
+            System.out.println("  0. Enter a different name");
+            int choice = ConsoleHelper.promptInt(scanner, "Choose a station: ", 0, options.size());
+            if (choice > 0) return options.get(choice - 1);
+        }
+    }
+
+    private List<String> promptPassengerUsernames(User passenger, int count) {
+        List<String> usernames = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            String u = ConsoleHelper
+                    .prompt(scanner,
+                            "Enter passenger username for ticket " + i + " (leave empty to book for yourself): ")
+                    .trim();
+            if (u.isEmpty())
+                u = passenger.getUsername();
+            usernames.add(u);
+        }
+        return usernames;
+    }
+
+    private void offerConnectingJourneys(User passenger, String startStation, String endStation, String date) {
+        String answer = ConsoleHelper.prompt(scanner, "Search journeys with changes? (yes/no): ");
+        if (!answer.equalsIgnoreCase("yes")) return;
+        int seats = ConsoleHelper.promptInt(scanner, "How many seats would you like to book? ", 1, 10);
+        List<Journey> journeys = journeyPlanner.plan(startStation, endStation, date, seats);
+        if (journeys.isEmpty()) {
+            System.out.println("No connecting journeys with enough free seats were found.");
+            return;
+        }
+        System.out.println("Connecting journeys:");
+        for (int i = 0; i < journeys.size(); i++) {
+            Journey j = journeys.get(i);
+            System.out.println((i + 1) + ". " + j + " [" + j.getChanges() + " change(s), " + j.getTotalStops() + " stop(s)]");
+        }
+        int pick = ConsoleHelper.promptInt(scanner, "Select a journey (enter number): ", 1, journeys.size());
+        Journey journey = journeys.get(pick - 1);
+
+        List<SeatHold> holds = new ArrayList<>();
         try {
-            java.util.List<String> usernames = new java.util.ArrayList<>();
-            for (int i = 1; i <= seatsToBook; i++) {
-                String u = ConsoleHelper
-                        .prompt(scanner,
-                                "Enter passenger username for ticket " + i + " (leave empty to book for yourself): ")
-                        .trim();
-                if (u.isEmpty())
-                    u = passenger.getUsername();
-                usernames.add(u);
+            for (JourneyLeg leg : journey.getLegs()) {
+                holds.add(bookingService.holdSeats(leg.getTrain(), seats, leg.getOriginIndex(),
+                        leg.getDestinationIndex(), date, passenger.getUsername()));
             }
+        } catch (ValidationException e) {
+            holds.forEach(bookingService::releaseHold);
+            System.out.println("Booking failed: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < holds.size(); i++) {
+            List<String> seatNumbers = new ArrayList<>();
+            for (Seat seat : holds.get(i).getSeats()) seatNumbers.add(seat.getSeatNumber());
+            System.out.println("Leg " + (i + 1) + ": " + journey.getLegs().get(i) + " - seats " + String.join(", ", seatNumbers));
+        }
+        String confirmation = ConsoleHelper.prompt(scanner, "Confirm booking of all legs? (yes/no): ");
+        if (!confirmation.equalsIgnoreCase("yes")) {
+            holds.forEach(bookingService::releaseHold);
+            System.out.println("Booking cancelled.");
+            return;
+        }
 
-            List<Ticket> newTickets = bookingService.createTicketsForUsernames(usernames, selectedTrain, date,
+        List<String> usernames = promptPassengerUsernames(passenger, seats);
+        for (int i = 0; i < holds.size(); i++) {
+            try {
+                List<Ticket> tickets = bookingService.confirmHold(holds.get(i), usernames, UUID.randomUUID().toString());
+                System.out.println("\nLeg " + (i + 1) + " booked:");
+                for (Ticket t : tickets) t.displayTicketDetails();
+            } catch (ValidationException | DatabaseException | OverloadException e) {
+                System.out.println("Leg " + (i + 1) + " could not be booked: " + e.getMessage());
+                for (int k = i; k < holds.size(); k++) bookingService.releaseHold(holds.get(k));
+                if (i > 0) System.out.println("Earlier legs remain booked; cancel them from My Bookings if needed.");
+                return;
+            }
+        }
+    }
+
+    private void offerWaitlist(User passenger, Train train, int fromStop, int toStop, String date,
+                               List<String> usernames) {
+        String answer = ConsoleHelper.prompt(scanner,
+                "No seats available on this train for " + date + ". Join the waitlist? (yes/no): ");
+        if (!answer.equalsIgnoreCase("yes")) {
+            System.out.println("Returning to menu.");
+            return;
+        }
+        if (usernames == null) {
+            int count = ConsoleHelper.promptInt(scanner, "How many passengers to waitlist? ", 1, 10);
+            usernames = promptPassengerUsernames(passenger, count);
+        }
+        try {
+            List<WaitlistEntry> entries = bookingService.joinWaitlist(usernames, train, fromStop, toStop, date,
                     passenger.getUsername());
-            if (newTickets == null || newTickets.isEmpty()) {
-                System.out.println("Booking failed. No tickets were created.");
-            } else {
-                System.out.println("\nBooking successful! Created " + newTickets.size() + " ticket(s):");
-                for (Ticket t : newTickets)
-                    t.displayTicketDetails();
+            System.out.println("Added to waitlist for " + train.getTrainName() + " on " + date + ":");
+            for (WaitlistEntry e : entries) {
+                System.out.println("  " + e.getUsername() + " - WL " + bookingService.getWaitlistPosition(e));
             }
-        } catch (ValidationException ve) {
-            System.out.println("Booking failed: " + ve.getMessage());
+        } catch (ValidationException | DatabaseException e) {
+            System.out.println("Could not join waitlist: " + e.getMessage());
+        }
+    }
+
+    private void handleAvailabilityCalendar() {
+        ConsoleHelper.printHeader("Availability Calendar");
+        String startStation = promptStation("Enter Start Station: ");
+        String endStation = promptStation("Enter End Station: ");
+        int days = ConsoleHelper.promptInt(scanner, "Number of days to show (1-120): ", 1, 120);
+
+        Map<Train, Map<LocalDate, Integer>> calendar = bookingService.getAvailabilityCalendar(startStation,
+                endStation, LocalDate.now(), days);
+        if (calendar.isEmpty()) {
+            System.out.println("No trains found for your route.");
+            return;
+        }
+        for (Map.Entry<Train, Map<LocalDate, Integer>> entry : calendar.entrySet()) {
+            Train train = entry.getKey();
+            System.out.println("\n" + train.getTrainName() + " (" + train.getTrainNumber() + ") - seats free "
+                    + startStation.trim() + " -> " + endStation.trim());
+            int col = 0;
+            StringBuilder line = new StringBuilder();
+            for (Map.Entry<LocalDate, Integer> day : entry.getValue().entrySet()) {
+                line.append(String.format("  %s %-5s", day.getKey().format(CALENDAR_DAY), day.getValue()));
+                if (++col % 7 == 0) {
+                    System.out.println(line);
+                    line.setLength(0);
+                }
+            }
+            if (line.length() > 0) System.out.println(line);
         }
     }
 
     private void handleViewBookings(User passenger) {
         ConsoleHelper.printHeader("My Bookings");
 
-    List<Ticket> upcoming = bookingService.findTicketsByPassenger(passenger);
-    List<Ticket> cancelled = bookingService.findCancelledTicketsByPassenger(passenger);
-    List<Ticket> past = bookingService.findPastTicketsByPassenger(passenger);
+        CompletableFuture<List<Ticket>> upcomingF = asyncService.findTicketsByPassengerAsync(passenger);
+        CompletableFuture<List<Ticket>> cancelledF = asyncService.findCancelledTicketsByPassengerAsync(passenger);
+        CompletableFuture<List<Ticket>> pastF = asyncService.findPastTicketsByPassengerAsync(passenger);
+        CompletableFuture<List<WaitlistEntry>> waitlistedF = asyncService.findWaitlistByPassengerAsync(passenger);
+
+        List<Ticket> upcoming;
+        List<Ticket> cancelled;
+        List<Ticket> past;
+        List<WaitlistEntry> waitlisted;
+        try {
+            upcoming = await(upcomingF);
+            cancelled = await(cancelledF);
+            past = await(pastF);
+            waitlisted = await(waitlistedF);
+        } catch (DatabaseException e) {
+            System.out.println("Could not load your bookings: " + e.getMessage());
+            return;
+        }
 
         System.out.println("\nUpcoming / Active Journeys:");
         if (upcoming == null || upcoming.isEmpty()) {
@@ -275,6 +628,17 @@ public class AppUI {
             }
         }
         
+        System.out.println("\nWaitlisted:");
+        if (waitlisted.isEmpty()) {
+            System.out.println("  (none)");
+        } else {
+            for (WaitlistEntry e : waitlisted) {
+                System.out.println("  " + e.getUsername() + " | Train: " + e.getTrain().getTrainName() + " ("
+                        + e.getTrain().getTrainNumber() + ") | Date: " + e.getTravelDate() + " | WL "
+                        + bookingService.getWaitlistPosition(e));
+            }
+        }
+
         System.out.println("\nCancelled Journeys:");
         if (cancelled == null || cancelled.isEmpty()) {
             System.out.println("  (none)");
@@ -297,44 +661,193 @@ public class AppUI {
         for (int i = 0; i < myTickets.size(); i++) {
             Ticket t = myTickets.get(i);
             System.out.println((i + 1) + ") PNR: " + t.getPnrNumber() + " | Train: " + t.getTrain().getTrainName()
-                    + " (" + t.getTrain().getTrainNumber() + ") | Seat: " + t.getSeat().getSeatNumber() + " | Date: "
-                    + t.getTravelDate());
+                    + " (" + t.getTrain().getTrainNumber() + ") | " + t.getOrigin() + " -> " + t.getDestination()
+                    + " | Seat: " + t.getSeat().getSeatNumber() + " | Date: " + t.getTravelDate());
         }
 
-        String sel = ConsoleHelper.prompt(scanner, "Select a ticket to cancel (enter number) or 'q' to go back: ")
-                .trim();
+        String sel = ConsoleHelper.prompt(scanner,
+                "Select ticket(s) to cancel (e.g. 2 or 1,3,4 or 'all') or 'q' to go back: ").trim();
         if (sel.equalsIgnoreCase("q") || sel.isEmpty()) {
             System.out.println("Cancellation aborted.");
             return;
         }
 
-        int idx;
-        try {
-            idx = Integer.parseInt(sel);
-        } catch (NumberFormatException e) {
-            System.out.println("Invalid selection.");
+        List<Ticket> selected = new ArrayList<>();
+        if (sel.equalsIgnoreCase("all")) {
+            selected.addAll(myTickets);
+        } else {
+            for (String part : sel.split(",")) {
+                int idx;
+                try {
+                    idx = Integer.parseInt(part.trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid selection.");
+                    return;
+                }
+                if (idx < 1 || idx > myTickets.size()) {
+                    System.out.println("Invalid selection.");
+                    return;
+                }
+                Ticket t = myTickets.get(idx - 1);
+                if (!selected.contains(t)) selected.add(t);
+            }
+        }
+
+        if (selected.size() == 1) {
+            Ticket ticket = selected.get(0);
+            System.out.println("Found ticket:");
+            ticket.displayTicketDetails();
+            String confirmation = ConsoleHelper.prompt(scanner, "Are you sure you want to cancel this ticket? (yes/no): ");
+
+            if (confirmation.equalsIgnoreCase("yes")) {
+                if (bookingService.cancelTicket(ticket)) {
+                    System.out.println("Ticket " + ticket.getPnrNumber() + " has been successfully cancelled.");
+                    System.out.println("Seat " + ticket.getSeat().getSeatNumber() + " is now available.");
+                } else {
+                    System.out.println("Error: Could not cancel ticket.");
+                }
+            } else {
+                System.out.println("Cancellation aborted.");
+            }
+            return;
+        }
+
+        String confirmation = ConsoleHelper.prompt(scanner,
+                "Are you sure you want to cancel these " + selected.size() + " tickets? (yes/no): ");
+        if (!confirmation.equalsIgnoreCase("yes")) {
+            System.out.println("Cancellation aborted.");
             return;
         }
+        List<String> pnrs = new ArrayList<>();
+        for (Ticket t : selected) pnrs.add(t.getPnrNumber());
+        try {
+            List<Ticket> cancelled = bookingService.cancelTickets(pnrs);
+            System.out.println("Cancelled " + cancelled.size() + " of " + selected.size() + " ticket(s).");
+        } catch (DatabaseException e) {
+            System.out.println("Error: Could not cancel tickets: " + e.getMessage());
+        }
+    }
 
-        if (idx < 1 || idx > myTickets.size()) {
-            System.out.println("Invalid selection.");
+    private void handleRunArchival() {
+        if (archivalService == null) {
+            System.out.println("Archival is not configured.");
             return;
         }
+        try {
+            ArchivalService.Report report = archivalService.runOnce();
+            System.out.println("Marked " + report.getCompleted() + " past ticket(s) completed; archived "
+                    + report.getArchivedTickets() + " ticket(s) and " + report.getArchivedHistory()
+                    + " history row(s); expired " + report.getExpiredWaitlist() + " waitlist entr(ies).");
+        } catch (DatabaseException e) {
+            System.out.println("Archival failed: " + e.getMessage());
+        }
+    }
 
-        Ticket ticket = myTickets.get(idx - 1);
-        System.out.println("Found ticket:");
-        ticket.displayTicketDetails();
-        String confirmation = ConsoleHelper.prompt(scanner, "Are you sure you want to cancel this ticket? (yes/no): ");
+    private void handleSearchCacheStats() {
+        SearchCache cache = bookingService.getSearchCache();
+        System.out.println("\n--- Search Cache ---");
+        System.out.println("Entries: " + cache.size());
+        System.out.println("Hits: " + cache.getHits() + " | Misses: " + cache.getMisses()
+                + " | Coalesced: " + cache.getCoalesced());
+        System.out.printf("Hit ratio: %.1f%%%n", cache.getHitRatio() * 100);
+        System.out.println("Evictions: " + cache.getEvictions() + " | Expired: " + cache.getExpirations()
+                + " | Invalidated: " + cache.getInvalidations());
+    }
 
-        if (confirmation.equalsIgnoreCase("yes")) {
-            if (bookingService.cancelTicket(ticket)) {
-                System.out.println("Ticket " + ticket.getPnrNumber() + " has been successfully cancelled.");
-                System.out.println("Seat " + ticket.getSeat().getSeatNumber() + " is now available.");
-            } else {
-                System.out.println("Error: Could not cancel ticket.");
+    private void handleRetryStats() {
+        TransactionRetry retry = bookingService.getTransactionRetry();
+        System.out.println("\n--- Transaction Retries ---");
+        System.out.println("Transactions: " + retry.getTransactions() + " | Retries: " + retry.getRetries());
+        System.out.println("Recovered: " + retry.getRecovered() + " | Gave up: " + retry.getExhausted());
+        System.out.println("Time lost to contention: " + retry.getWastedMillis() + " ms");
+        GroupCommitCoordinator groupCommit = bookingService.getGroupCommit();
+        System.out.println("Group commits: " + groupCommit.getBatches() + " | Bookings: " + groupCommit.getRequests()
+                + " | Average batch: " + String.format("%.1f", groupCommit.getAverageBatchSize())
+                + " | Largest: " + groupCommit.getLargestBatch());
+    }
+
+    private void handleSurgeMode() {
+        ConsoleHelper.printHeader("Surge Mode");
+        SurgeMode surgeMode = bookingService.getSurgeMode();
+        DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+        List<SurgeMode.Surge> surges = surgeMode.getSurges();
+        if (surges.isEmpty()) System.out.println("No surges scheduled.");
+        for (SurgeMode.Surge surge : surges) {
+            StringBuilder trains = new StringBuilder();
+            for (Train train : surge.getTrains()) {
+                if (trains.length() > 0) trains.append(", ");
+                trains.append(train.getTrainNumber());
             }
-        } else {
+            System.out.println("\n" + trains + " on " + surge.getTravelDate() + " - " + surge.getState()
+                    + " (opens " + timeFormat.format(surge.getOpensAt()) + ", closes " + timeFormat.format(surge.getClosesAt()) + ")");
+            if (surge.getState() == SurgeMode.State.OPEN || surge.getState() == SurgeMode.State.CLOSED) {
+                SurgeMode.Report report = surge.report();
+                System.out.println("  Requests: " + report.getRequests() + " | Booked: " + report.getBooked()
+                        + " | Tickets: " + report.getTickets() + " | Sold out at once: " + report.getSoldOutFast()
+                        + " | Rejected: " + report.getRejected() + " | Failed: " + report.getFailed());
+                System.out.println(String.format("  Throughput: %.1f tickets/s | Latency p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                        report.getTicketsPerSecond(), report.getP50Millis(), report.getP99Millis(), report.getMaxMillis()));
+                System.out.println("  FIFO inversions: " + report.getFifoInversions() + " | Sold out after (ms): "
+                        + report.getSoldOutAfterMillis());
+            }
+        }
+
+        String answer = ConsoleHelper.prompt(scanner, "\nSchedule a new surge? (yes/no): ").trim();
+        if (!answer.equalsIgnoreCase("yes")) return;
+        List<Train> trains = new ArrayList<>();
+        for (String number : ConsoleHelper.prompt(scanner, "Train numbers (comma-separated): ").split(",")) {
+            if (number.isBlank()) continue;
+            Train train = trainService.findTrain(number.trim());
+            if (train == null) {
+                System.out.println("Error: Train " + number.trim() + " not found.");
+                return;
+            }
+            trains.add(train);
+        }
+        String date = ConsoleHelper.prompt(scanner, "Travel date (YYYY-MM-DD): ").trim();
+        String opens = ConsoleHelper.prompt(scanner, "Window opens today at (HH:mm, empty for now): ").trim();
+        Instant opensAt;
+        try {
+            opensAt = opens.isEmpty() ? Instant.now()
+                    : LocalDate.now().atTime(LocalTime.parse(opens)).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid time. Please use HH:mm.");
+            return;
+        }
+        int minutes = ConsoleHelper.promptInt(scanner, "Surge duration in minutes (1-240): ", 1, 240);
+        try {
+            SurgeMode.Surge surge = surgeMode.schedule(trains, date, opensAt, Duration.ofMinutes(minutes));
+            System.out.println("Surge scheduled for " + trains.size() + " train(s) on " + surge.getTravelDate()
+                    + ", opening " + timeFormat.format(surge.getOpensAt()) + ".");
+        } catch (ValidationException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void handleCancelTrainRun() {
+        ConsoleHelper.printHeader("Cancel All Bookings for a Train");
+        String trainNumber = ConsoleHelper.prompt(scanner, "Enter Train Number: ").trim();
+        Train train = trainService.findTrain(trainNumber);
+        if (train == null) {
+            System.out.println("Error: Train " + trainNumber + " not found.");
+            return;
+        }
+        String date = ConsoleHelper.prompt(scanner, "Enter Date (YYYY-MM-DD): ").trim();
+        if (!InputValidator.isValidDate(date)) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+            return;
+        }
+        String confirmation = ConsoleHelper.prompt(scanner, "Cancel ALL bookings and waitlist entries on "
+                + train.getTrainName() + " (" + train.getTrainNumber() + ") for " + date + "? (yes/no): ");
+        if (!confirmation.equalsIgnoreCase("yes")) {
             System.out.println("Cancellation aborted.");
+            return;
+        }
+        try {
+            int cancelled = bookingService.cancelAllBookings(train, date);
+            System.out.println("Cancelled " + cancelled + " booking(s) on " + train.getTrainNumber() + " for " + date + ".");
+        } catch (ValidationException | DatabaseException e) {
+            System.out.println("Error: Could not cancel bookings: " + e.getMessage());
         }
     }
 }
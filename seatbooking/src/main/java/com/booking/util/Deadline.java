@@ -0,0 +1,41 @@
+package com.booking.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time budget of the operation running on the current thread. Code that waits on something slow, such
+ * as the database, asks how much of the budget is left instead of applying only its own fixed timeout.
+ * Nested budgets never extend an outer one. Threads with no budget report {@link Long#MAX_VALUE}.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Long> EXPIRES_AT = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /** Runs {@code work} with at most {@code millis} milliseconds left on this thread's budget. */
+    public static <T> T within(long millis, Supplier<T> work) {
+        Long outer = EXPIRES_AT.get();
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        if (outer != null && outer - expiresAt < 0) return work.get();
+        EXPIRES_AT.set(expiresAt);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                EXPIRES_AT.remove();
+            } else {
+                EXPIRES_AT.set(outer);
+            }
+        }
+    }
+
+    /** Milliseconds left of this thread's budget, never negative; {@link Long#MAX_VALUE} if it has none. */
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT.get();
+        if (expiresAt == null) return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+}
@@ -0,0 +1,137 @@
+package com.booking.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timer for large numbers of short-lived timeouts. Timeouts hash into one of {@code wheelSize} buckets
+ * by deadline, and each tick only touches the bucket under the hand, so scheduling and cancelling are
+ * O(1) and expiry never walks the whole set. Deadlines are accurate to one tick. Tasks run on the
+ * wheel's single worker thread and must be quick.
+ */
+public final class HashedTimingWheel implements AutoCloseable {
+
+    public interface Timeout {
+        /** @return true if the task had not run yet and now never will */
+        boolean cancel();
+
+        boolean isExpired();
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(HashedTimingWheel.class.getName());
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<Entry>> wheel;
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = size - 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) wheel.add(new ArrayList<>());
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) throw new IllegalStateException("Timing wheel has been stopped");
+        Entry e = new Entry(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+        incoming.add(e);
+        return e;
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep = deadline - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                    continue;
+                }
+            }
+            placeIncoming();
+            expire(wheel.get((int) (tick & mask)), deadline);
+            tick++;
+        }
+    }
+
+    private void placeIncoming() {
+        for (Entry e; (e = incoming.poll()) != null; ) {
+            if (e.state.get() != PENDING) continue;
+            long due = e.deadline / tickNanos;
+            e.rounds = Math.max(0, (due - tick) / wheel.size());
+            wheel.get((int) (Math.max(due, tick) & mask)).add(e);
+        }
+    }
+
+    private void expire(List<Entry> bucket, long now) {
+        for (Iterator<Entry> it = bucket.iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (e.state.get() == CANCELLED) {
+                it.remove();
+            } else if (e.rounds > 0) {
+                e.rounds--;
+            } else if (e.deadline <= now) {
+                it.remove();
+                if (e.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        e.task.run();
+                    } catch (RuntimeException ex) {
+                        LOGGER.log(Level.WARNING, "Timer task failed", ex);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private static final class Entry implements Timeout {
+        final Runnable task;
+        final long deadline;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        long rounds;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+}
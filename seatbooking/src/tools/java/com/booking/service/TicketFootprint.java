@@ -0,0 +1,84 @@
+package com.booking.service;
+
+import com.booking.model.Role;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the heap retained by in-memory tickets, comparing one Ticket with its own User and strings
+ * per row (how tickets used to be loaded) against {@link TicketStore}, including its interned
+ * passengers and PNR index. No database is needed. It lives outside the main sources, in the same
+ * package so it can reach the store; from the seatbooking directory, after {@code mvn compile}:
+ *
+ * <pre>
+ * javac -cp target/classes -d target/tools src/tools/java/com/booking/service/TicketFootprint.java
+ * java -Xmx4g -cp target/classes:target/tools com.booking.service.TicketFootprint [tickets] [passengers]
+ * </pre>
+ */
+public final class TicketFootprint {
+
+    private static final int TRAINS = 500;
+    private static final int SEATS_PER_TRAIN = 200;
+    private static final int DAYS = 120;
+
+    private TicketFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int passengers = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        List<Train> trains = new ArrayList<>(TRAINS);
+        for (int i = 0; i < TRAINS; i++) {
+            trains.add(new Train("T" + i, "Train " + i, Arrays.asList("A" + i, "B" + i, "C" + i, "D" + i), SEATS_PER_TRAIN));
+        }
+        LocalDate start = LocalDate.now();
+
+        long baseline = usedHeap();
+        List<Ticket> perRow = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // fresh strings per row, as a JDBC driver hands them out
+            Train train = trains.get(i % TRAINS);
+            perRow.add(new Ticket(pnr(i), new User(new String("user" + (i % passengers)), "", Role.PASSENGER), train,
+                    train.getSeats().get((i / TRAINS) % SEATS_PER_TRAIN),
+                    start.plusDays((i / (TRAINS * SEATS_PER_TRAIN)) % DAYS).toString(), 0, train.getLegCount()));
+        }
+        long perRowBytes = usedHeap() - baseline;
+        System.out.println("Ticket + User per row: " + describe(perRowBytes, perRow.size()));
+
+        TicketStore store = new TicketStore(new TrainOrdinals());
+        perRow.forEach(store::add);
+        perRow = null;
+        long storeBytes = usedHeap() - baseline;
+        System.out.println("TicketStore records:   " + describe(storeBytes, store.size()));
+        System.out.printf("Saved per million tickets: %.1f MB%n",
+                (perRowBytes - storeBytes) * (1_000_000.0 / count) / (1024 * 1024));
+    }
+
+    private static String pnr(int i) {
+        return String.format("PNR%09d", i);
+    }
+
+    private static String describe(long bytes, int tickets) {
+        return String.format("%,d tickets, %.1f MB, %d bytes/ticket", tickets, bytes / (1024.0 * 1024), bytes / Math.max(1, tickets));
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}